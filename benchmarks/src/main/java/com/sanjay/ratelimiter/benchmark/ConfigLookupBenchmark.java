@@ -0,0 +1,72 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RateLimiterProperties#getConfigFor} with {@code endpoints} endpoints configured, for a
+ * configured endpoint and for one falling back to the default. Looked-up paths are distinct string
+ * instances from the configured ones, as paths of incoming requests are.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar ConfigLookupBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigLookupBenchmark {
+
+    @Param({"10", "1000"})
+    int endpoints;
+
+    RateLimiterProperties properties;
+
+    String[] configured;
+
+    String[] unconfigured;
+
+    @Setup
+    public void setUp() {
+        properties = new RateLimiterProperties();
+        configured = new String[endpoints];
+        unconfigured = new String[endpoints];
+        for (int i = 0; i < endpoints; i++) {
+            properties.getEndpoints().put("/api/v1/resource-" + i, new RateLimiterProperties.RateLimitConfig());
+            configured[i] = "/api/v1/resource-" + i;
+            unconfigured[i] = "/api/v2/resource-" + i;
+        }
+    }
+
+    /** Per-thread path sequence, so threads do not share a random generator */
+    @State(Scope.Thread)
+    public static class Requests {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public RateLimiterProperties.RateLimitConfig configured(Requests requests) {
+        return properties.getConfigFor(configured[requests.random.nextInt(endpoints)]);
+    }
+
+    @Benchmark
+    public RateLimiterProperties.RateLimitConfig unconfigured(Requests requests) {
+        return properties.getConfigFor(unconfigured[requests.random.nextInt(endpoints)]);
+    }
+}
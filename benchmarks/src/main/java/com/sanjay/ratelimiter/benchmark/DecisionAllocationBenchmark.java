@@ -0,0 +1,104 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.LocalScriptExecutor;
+import com.sanjay.ratelimiter.service.BlockedKeyCache;
+import com.sanjay.ratelimiter.service.GlobalQuotaLease;
+import com.sanjay.ratelimiter.service.GlobalShardRouter;
+import com.sanjay.ratelimiter.service.HeavyHitterDetector;
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the local part of a decision: the deny cache lookup and building the script's keys and
+ * arguments, up to the bytes handed to Redis. With {@code local=false} the script itself is not run,
+ * the executor returns a fixed result, so {@code -prof gc} shows what a decision allocates in this
+ * process, metrics included. With {@code local=true} the script runs in-process on the
+ * {@link LocalScriptExecutor}, and the whole decision is measured:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar DecisionAllocationBenchmark -prof gc
+ * </pre>
+ *
+ * {@code AllocationBudgetTests} holds {@code gc.alloc.rate.norm} of {@link #decide} within a budget for each executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionAllocationBenchmark {
+
+    /** Allowed decision of the user tier, as the script returns it */
+    private static final List<Long> ALLOWED = List.of(1L, 3L, 100L, 99L, 60_000L, 0L);
+
+    @Param({"SLIDING_LOG", "TOKEN_BUCKET"})
+    RateLimitAlgorithm algorithm;
+
+    @Param({"false", "true"})
+    boolean local;
+
+    RateLimiterService service;
+
+    RateLimiterService.Evaluation evaluation;
+
+    @Setup
+    public void setUp() {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        properties.getDefaultConfig().setAlgorithm(algorithm);
+        properties.getGlobal().setAlgorithm(algorithm);
+        if (local) {
+            // The same user all the time, allowed for a day of requests at any rate the benchmark reaches
+            for (RateLimiterProperties.RateLimitConfig config : new RateLimiterProperties.RateLimitConfig[] {
+                    properties.getGlobal(), properties.getDefaultConfig()}) {
+                config.setWindowDuration(86_400);
+                config.setRequestLimit(1_000_000_000_000L);
+            }
+        }
+        RedisScriptExecutor executor = local ? new LocalScriptExecutor(new AtomicStateStore(1024)) : new RedisScriptExecutor() {
+            @Override
+            public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+                return ALLOWED;
+            }
+
+            @Override
+            public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+                return ALLOWED;
+            }
+        };
+        service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties, executor,
+                new GlobalQuotaLease(properties, executor), new GlobalShardRouter(properties),
+                new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+    }
+
+    @Benchmark
+    public RateLimitDecision decide() {
+        return service.decide("user-4711", "/api/data", 1);
+    }
+
+    @Benchmark
+    public RateLimiterService.Evaluation prepare() {
+        return service.prepare("user-4711", "/api/data", 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process Redis stand-in (jedis-mock, which runs the Lua scripts on LuaJ) and a
+ * {@link RedisScriptExecutor} talking to it through a Jedis pool over loopback.
+ *
+ * <p>It is far slower than Redis: jedis-mock interprets a script anew on every call, which takes
+ * milliseconds. Its numbers only compare with earlier runs of the same benchmark, but the whole
+ * client path and the real scripts run, so a script doing more work shows up in them.
+ */
+final class InProcessRedis implements AutoCloseable {
+
+    private final RedisServer server;
+
+    private final JedisPool pool;
+
+    private final Executor executor = new Executor();
+
+    private InProcessRedis(RedisServer server, JedisPool pool) {
+        this.server = server;
+        this.pool = pool;
+    }
+
+    /**
+     * Starts a server on a free port, with a pool large enough for {@code clients} threads.
+     */
+    static InProcessRedis start(int clients) {
+        try {
+            RedisServer server = RedisServer.newRedisServer().start();
+            JedisPoolConfig config = new JedisPoolConfig();
+            config.setMaxTotal(clients);
+            config.setMaxIdle(clients);
+            return new InProcessRedis(server, new JedisPool(config, server.getHost(), server.getBindPort()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the in-process Redis", e);
+        }
+    }
+
+    RedisScriptExecutor executor() {
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        try {
+            server.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not stop the in-process Redis", e);
+        }
+    }
+
+    /**
+     * Loads every script once and runs it by its digest afterwards.
+     */
+    private final class Executor implements RedisScriptExecutor {
+
+        private final Map<LuaScript, byte[]> digests = new ConcurrentHashMap<>();
+
+        @Override
+        public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+            byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+            for (int i = 0; i < keys.size(); i++) {
+                keysAndArgs[i] = RedisBytes.of(keys.get(i));
+            }
+            for (int i = 0; i < args.size(); i++) {
+                keysAndArgs[keys.size() + i] = RedisBytes.of(args.get(i));
+            }
+            return execute(script, keys.size(), keysAndArgs);
+        }
+
+        @Override
+        public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+            try (Jedis jedis = pool.getResource()) {
+                byte[] sha = digests.computeIfAbsent(script, s -> jedis.scriptLoad(RedisBytes.of(s.source())));
+                return (List<?>) jedis.evalsha(sha, keyCount, keysAndArgs);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.service.BlockedKeyCache;
+import com.sanjay.ratelimiter.service.GlobalQuotaLease;
+import com.sanjay.ratelimiter.service.GlobalShardRouter;
+import com.sanjay.ratelimiter.service.HeavyHitterDetector;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the keys and arguments of a decision, over many users: the per-request part of
+ * {@link RateLimiterService#prepare} once endpoint keys and tier arguments are cached. Sliding window
+ * counters take two keys per tier, sharding adds the shard lookup.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar KeyConstructionBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyConstructionBenchmark {
+
+    @Param({"SLIDING_LOG", "SLIDING_WINDOW_COUNTER"})
+    RateLimitAlgorithm algorithm;
+
+    @Param({"false", "true"})
+    boolean sharded;
+
+    RateLimiterService service;
+
+    String[] users;
+
+    @Setup
+    public void setUp() {
+        RateLimiterProperties properties = RateLimiterServiceBenchmark.properties(algorithm);
+        properties.getSharding().setEnabled(sharded);
+        RedisScriptExecutor executor = (script, keys, args) -> {
+            throw new UnsupportedOperationException("Keys are built only");
+        };
+        service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties, executor,
+                new GlobalQuotaLease(properties, executor), new GlobalShardRouter(properties),
+                new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+        users = RateLimiterServiceBenchmark.users();
+    }
+
+    /** Per-thread user sequence, so threads do not share a random generator */
+    @State(Scope.Thread)
+    public static class Requests {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public RateLimiterService.Evaluation prepare(Requests requests) {
+        return service.prepare(users[requests.random.nextInt(users.length)], "/api/data", 1);
+    }
+}
@@ -0,0 +1,265 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for {@code GET /api/limit} of a running instance: sends {@code rate}
+ * requests per second on a fixed schedule, whether or not earlier requests have been answered.
+ *
+ * <p>Latency is measured from the time a request was due to be sent, not from when it was sent, and
+ * recorded in an HdrHistogram. A stalled server therefore shows up as the latency every request due
+ * during the stall would have seen; a closed-loop client like {@code LimitEndpointBenchmark} stops
+ * sending during the stall and leaves it out (coordinated omission).
+ * The uncorrected service time, from the actual send, is reported alongside for comparison.
+ * Every completed request is measured, failures and timeouts included, so a server that fails fast
+ * or times out cannot improve the percentiles; failed requests also get a latency histogram of their own.
+ * Throughput is counted over the measured time, from the first request until the last one completed.
+ * Requests still outstanding a minute after the last one was due are counted as errors, with the
+ * latency they had reached by then, rather than left out.
+ *
+ * <p>Users and endpoints are drawn independently from {@code users} and {@code endpoints} keys, either
+ * {@code uniform} or {@code zipf} with the given exponent, where the k-th most frequent key is drawn
+ * with a probability proportional to 1/k^exponent. At most {@code maxInFlight} requests are outstanding;
+ * a request due while all are taken is sent late and still measured from when it was due.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.sanjay.ratelimiter.benchmark.LoadGenerator \
+ *     [baseUrl] [rate] [seconds] [warmupSeconds] [users] [endpoints] [zipf|uniform] [exponent] [maxInFlight]
+ * </pre>
+ *
+ * <p>Arguments are positional, a missing one takes its default:
+ * <pre>
+ * http://localhost:8081 1000 60 10 1000000 10 zipf 1.0 10000
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String baseUrl = arg(args, 0, "http://localhost:8081");
+        int rate = Integer.parseInt(arg(args, 1, "1000"));
+        int seconds = Integer.parseInt(arg(args, 2, "60"));
+        int warmupSeconds = Integer.parseInt(arg(args, 3, "10"));
+        int users = Integer.parseInt(arg(args, 4, "1000000"));
+        int endpoints = Integer.parseInt(arg(args, 5, "10"));
+        String distribution = arg(args, 6, "zipf");
+        double exponent = Double.parseDouble(arg(args, 7, "1.0"));
+        int maxInFlight = Integer.parseInt(arg(args, 8, "10000"));
+
+        Keys userKeys = Keys.of(distribution, users, exponent);
+        Keys endpointKeys = Keys.of(distribution, endpoints, exponent);
+        String[] endpointParams = new String[endpoints];
+        Arrays.setAll(endpointParams, i -> URLEncoder.encode("/bench/" + i, StandardCharsets.UTF_8));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Run.Target target = new Run.Target(client, baseUrl, userKeys, endpointKeys, endpointParams);
+
+        new Run(target, rate, maxInFlight).execute(warmupSeconds);
+        Run run = new Run(target, rate, maxInFlight);
+        run.execute(seconds);
+
+        System.out.printf("%s/api/limit, %d req/s for %ds, %s over %d users and %d endpoints%n",
+                baseUrl, rate, seconds, userKeys, users, endpoints);
+        long answered = run.allowed.sum() + run.denied.sum();
+        System.out.printf("sent: %d, at most %.2f ms behind schedule%n", run.sent.sum(), run.maxLagNanos / 1e6);
+        double elapsedSeconds = run.elapsedNanos / 1e9;
+        System.out.printf("throughput: %.0f req/s over %.1fs (%d allowed, %d denied, %d errors, %d unanswered),"
+                        + " %.1f%% allowed%n",
+                answered / elapsedSeconds, elapsedSeconds, run.allowed.sum(), run.denied.sum(), run.errors.sum(),
+                run.unanswered.sum(), answered == 0 ? 0 : 100.0 * run.allowed.sum() / answered);
+        print("latency ms (from schedule, corrected)", run.latency);
+        print("service time ms (from send, uncorrected)", run.serviceTime);
+        if (run.errors.sum() > 0) {
+            print("error latency ms (from schedule, corrected)", run.errorLatency);
+        }
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    private static void print(String label, Histogram histogram) {
+        System.out.printf("%s: p50=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", label,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    /** One measurement: requests are due at fixed intervals from the start */
+    private static final class Run {
+
+        /** Where requests go and what they carry, shared by the warm-up and the measurement */
+        record Target(HttpClient client, String baseUrl, Keys users, Keys endpoints, String[] endpointParams) {
+        }
+
+        private final Target target;
+        private final int rate;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        private final SplittableRandom random = new SplittableRandom();
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder denied = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        /** Errors that were still unanswered when the run gave up waiting for them */
+        private final LongAdder unanswered = new LongAdder();
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final Histogram serviceTime = new ConcurrentHistogram(3);
+        private final Histogram errorLatency = new ConcurrentHistogram(3);
+
+        /** Due and send times of the requests not answered yet, by request number */
+        private final Map<Long, long[]> outstanding = new ConcurrentHashMap<>();
+
+        /** Longest a request was sent after it was due, to tell a slow generator from a slow server */
+        private long maxLagNanos;
+
+        /** Time from the first request until the last one completed or timed out */
+        private long elapsedNanos;
+
+        Run(Target target, int rate, int maxInFlight) {
+            this.target = target;
+            this.rate = rate;
+            this.maxInFlight = maxInFlight;
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        void execute(int seconds) throws InterruptedException {
+            long start = System.nanoTime();
+            long requests = (long) rate * seconds;
+            for (long i = 0; i < requests; i++) {
+                long due = start + (long) (i * 1e9 / rate);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(i, due);
+            }
+            // Wait for the last responses; requests time out on their own, and any still outstanding after
+            // a minute are counted as errors rather than dropped from the results
+            if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+                long now = System.nanoTime();
+                for (Long number : outstanding.keySet()) {
+                    long[] times = outstanding.remove(number);
+                    if (times != null) {
+                        unanswered.increment();
+                        record(now, times[0], times[1], 0);
+                    }
+                }
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        private void send(long number, long due) {
+            String user = "bench-" + target.users.next(random);
+            String endpoint = target.endpointParams[target.endpoints.next(random)];
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create(target.baseUrl + "/api/limit?userId=" + user + "&endpoint=" + endpoint))
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            inFlight.acquireUninterruptibly();
+            sent.increment();
+            long sentAt = System.nanoTime();
+            maxLagNanos = Math.max(maxLagNanos, sentAt - due);
+            outstanding.put(number, new long[] {due, sentAt});
+            target.client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                // Already counted as unanswered if the run stopped waiting for it
+                if (outstanding.remove(number) != null) {
+                    record(System.nanoTime(), due, sentAt, failure != null ? 0 : response.statusCode());
+                }
+                inFlight.release();
+            });
+        }
+
+        /** Records a request answered with {@code status} at {@code now}, 0 if it failed or was not answered */
+        private void record(long now, long due, long sentAt, int status) {
+            latency.recordValue(now - due);
+            serviceTime.recordValue(now - sentAt);
+            switch (status) {
+                case 200 -> allowed.increment();
+                case 429 -> denied.increment();
+                default -> {
+                    errors.increment();
+                    errorLatency.recordValue(now - due);
+                }
+            }
+        }
+    }
+
+    /** Distribution of key indexes in {@code [0, n)} */
+    private interface Keys {
+
+        int next(SplittableRandom random);
+
+        static Keys of(String distribution, int n, double exponent) {
+            return switch (distribution) {
+                case "uniform" -> new Keys() {
+                    @Override
+                    public int next(SplittableRandom random) {
+                        return random.nextInt(n);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "uniform";
+                    }
+                };
+                case "zipf" -> new Zipf(n, exponent);
+                default -> throw new IllegalArgumentException("Unknown distribution " + distribution + ", use zipf or uniform");
+            };
+        }
+    }
+
+    /** Zipf distribution, drawn by binary search in its cumulative distribution */
+    private static final class Zipf implements Keys {
+
+        private final double[] cumulative;
+
+        private final double exponent;
+
+        Zipf(int n, double exponent) {
+            this.exponent = exponent;
+            this.cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+
+        @Override
+        public String toString() {
+            return "zipf(" + exponent + ")";
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.LocalRateLimiter;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions per second of the local engine, from many keys (little contention) down to a single key
+ * every thread competes for. Run with more threads and the GC profiler to see the scaling and that
+ * a decision allocates nothing:
+ *
+ * <pre>
+ * mvn -pl benchmarks -am package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar LocalRateLimiterBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalRateLimiterBenchmark {
+
+    /** Number of distinct keys the requests spread over */
+    @Param({"1", "1000000"})
+    int keys;
+
+    @Param({"TOKEN_BUCKET", "GCRA"})
+    RateLimitAlgorithm algorithm;
+
+    LocalRateLimiter limiter;
+
+    long[] hashes;
+
+    @Setup
+    public void setUp() {
+        limiter = new LocalRateLimiter(new AtomicStateStore(keys * 2));
+        hashes = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            hashes[i] = LocalRateLimiter.hash("rate_limit:user:" + i + ":/api/limit");
+        }
+    }
+
+    /** Per-thread key sequence, so threads do not share a random generator */
+    @State(Scope.Thread)
+    public static class Keys {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public long acquire(Keys keys) {
+        long key = hashes[keys.random.nextInt(hashes.length)];
+        return limiter.acquire(key, algorithm, 60_000, 1_000, 1, System.currentTimeMillis());
+    }
+}
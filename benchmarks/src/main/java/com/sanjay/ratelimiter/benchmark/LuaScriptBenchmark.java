@@ -0,0 +1,108 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a single script execution on an {@link InProcessRedis}, without the service around it:
+ * the decision script for every algorithm, and the global lease script.
+ *
+ * <p>Keys and arguments of the decision script are built before each call, outside the measurement,
+ * so that every call sees the current time as a real one would.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar LuaScriptBenchmark -rf json -rff scripts.json
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LuaScriptBenchmark {
+
+    private static final byte[] LEASE_KEY = RedisBytes.of("rate_limit:global:tb");
+
+    private static final byte[] LEASE_WINDOW = RedisBytes.of(1_000);
+
+    private static final byte[] LEASE_LIMIT = RedisBytes.of(1_000_000);
+
+    private static final byte[] NOTHING = RedisBytes.of(0);
+
+    private static final byte[] LEASE_CHUNK = RedisBytes.of(100);
+
+    InProcessRedis redis;
+
+    RedisScriptExecutor executor;
+
+    @Setup
+    public void setUp() {
+        redis = InProcessRedis.start(RateLimiterServiceBenchmark.CONNECTIONS);
+        executor = redis.executor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        redis.close();
+    }
+
+    /** Keys and arguments of the next decision of this thread */
+    @State(Scope.Thread)
+    public static class Decision {
+
+        @Param({"SLIDING_LOG", "TOKEN_BUCKET", "GCRA", "SLIDING_WINDOW_COUNTER"})
+        RateLimitAlgorithm algorithm;
+
+        final SplittableRandom random = new SplittableRandom();
+
+        RateLimiterService service;
+
+        String[] users;
+
+        RateLimiterService.Evaluation evaluation;
+
+        @Setup
+        public void setUp(LuaScriptBenchmark benchmark) {
+            service = RateLimiterServiceBenchmark.service(
+                    RateLimiterServiceBenchmark.properties(algorithm), benchmark.executor);
+            users = RateLimiterServiceBenchmark.users();
+        }
+
+        @Setup(Level.Invocation)
+        public void next() {
+            evaluation = service.prepare(users[random.nextInt(users.length)], "/api/data", 1);
+        }
+    }
+
+    @Benchmark
+    public List<?> rateLimiter(Decision decision) {
+        return executor.execute(LuaScript.RATE_LIMITER, decision.evaluation.keyCount(), decision.evaluation.keysAndArgs());
+    }
+
+    @Benchmark
+    public List<?> globalLease() {
+        return executor.execute(LuaScript.GLOBAL_LEASE, 1, new byte[][] {
+                LEASE_KEY, RedisBytes.of(System.currentTimeMillis()), LEASE_WINDOW, LEASE_LIMIT, NOTHING, LEASE_CHUNK});
+    }
+}
@@ -0,0 +1,132 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.LocalScriptExecutor;
+import com.sanjay.ratelimiter.service.BlockedKeyCache;
+import com.sanjay.ratelimiter.service.GlobalQuotaLease;
+import com.sanjay.ratelimiter.service.GlobalShardRouter;
+import com.sanjay.ratelimiter.service.HeavyHitterDetector;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions per second of {@link RateLimiterService} end to end: config lookup, keys and arguments,
+ * the script and its result. {@code LOCAL} runs the script on the local engine, {@code REDIS} runs the
+ * Lua script on an {@link InProcessRedis}. The deny cache is off, so every decision runs the script.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar RateLimiterServiceBenchmark -t 8 -rf json -rff service.json
+ * </pre>
+ *
+ * {@link ScalingRun} runs it at 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterServiceBenchmark {
+
+    public enum Backend {
+        LOCAL, REDIS
+    }
+
+    /** Number of distinct users the requests spread over */
+    static final int USERS = 10_000;
+
+    /** More than the most threads {@link ScalingRun} uses, so that no thread waits for a connection */
+    static final int CONNECTIONS = 128;
+
+    @Param({"LOCAL", "REDIS"})
+    Backend backend;
+
+    @Param({"SLIDING_LOG", "TOKEN_BUCKET", "GCRA", "SLIDING_WINDOW_COUNTER"})
+    RateLimitAlgorithm algorithm;
+
+    InProcessRedis redis;
+
+    RateLimiterService service;
+
+    String[] users;
+
+    @Setup
+    public void setUp() {
+        RedisScriptExecutor executor;
+        if (backend == Backend.REDIS) {
+            redis = InProcessRedis.start(CONNECTIONS);
+            executor = redis.executor();
+        } else {
+            executor = new LocalScriptExecutor(new AtomicStateStore(4 * USERS));
+        }
+        service = service(properties(algorithm), executor);
+        users = users();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+
+    /** Per-thread user sequence, so threads do not share a random generator */
+    @State(Scope.Thread)
+    public static class Requests {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public boolean isAllowed(Requests requests) {
+        return service.isAllowed(users[requests.random.nextInt(USERS)], "/api/data");
+    }
+
+    /**
+     * Limits every tier to a million requests a second, so that decisions are mostly allowed and
+     * go all the way through the script.
+     */
+    static RateLimiterProperties properties(RateLimitAlgorithm algorithm) {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        for (RateLimiterProperties.RateLimitConfig config : new RateLimiterProperties.RateLimitConfig[] {
+                properties.getGlobal(), properties.getDefaultConfig()}) {
+            config.setAlgorithm(algorithm);
+            config.setWindowDuration(1);
+            config.setRequestLimit(1_000_000);
+        }
+        properties.getDenyCache().setEnabled(false);
+        return properties;
+    }
+
+    static RateLimiterService service(RateLimiterProperties properties, RedisScriptExecutor executor) {
+        return new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties, executor,
+                new GlobalQuotaLease(properties, executor), new GlobalShardRouter(properties),
+                new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+    }
+
+    static String[] users() {
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "user-" + i;
+        }
+        return users;
+    }
+}
@@ -0,0 +1,56 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs benchmarks at 1, 2, 4 ... 64 threads and writes the results of all thread counts to one JSON
+ * file, {@code jmh-scaling.json} unless given with {@code -rff}. Every entry carries its
+ * {@code threads}, so the file can be compared run to run. While running, the file holds the last
+ * thread count finished. Other arguments are JMH's:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.sanjay.ratelimiter.benchmark.ScalingRun \
+ *     RateLimiterServiceBenchmark.isAllowed -p backend=LOCAL -rff scaling.json
+ * </pre>
+ *
+ * Without a benchmark pattern it runs {@link RateLimiterServiceBenchmark}.
+ */
+public final class ScalingRun {
+
+    private static final int MAX_THREADS = 64;
+
+    private ScalingRun() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, FileNotFoundException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        String result = options.getResult().orElse("jmh-scaling.json");
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            OptionsBuilder run = new OptionsBuilder();
+            run.parent(options).threads(threads).resultFormat(ResultFormatType.JSON).result(result);
+            if (options.getIncludes().isEmpty()) {
+                run.include(RateLimiterServiceBenchmark.class.getSimpleName());
+            }
+            results.addAll(new Runner(run.build()).run());
+        }
+
+        try (PrintStream out = new PrintStream(result)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results of all thread counts written to " + result);
+    }
+}
@@ -0,0 +1,153 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.DirectStateStore;
+import com.sanjay.ratelimiter.local.LimiterStateStore;
+import com.sanjay.ratelimiter.local.LocalRateLimiter;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Memory per key and garbage collection cost of the local key-state stores, with {@code keys} keys live.
+ *
+ * <p>{@code OBJECTS} is the usual map of boxed keys, for comparison. Setup prints the heap and direct
+ * memory each store takes per key; {@code fullGc} measures a full collection with the store live, and
+ * {@code acquire} runs decisions over all keys (add {@code -prof gc} for collection counts and times):
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar StateStoreBenchmark -prof gc
+ * java -jar benchmarks/target/benchmarks.jar StateStoreBenchmark -p keys=1000000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=1g"})
+public class StateStoreBenchmark {
+
+    public enum Store {
+        OBJECTS, HEAP, OFF_HEAP
+    }
+
+    @Param({"10000000"})
+    int keys;
+
+    @Param({"OBJECTS", "HEAP", "OFF_HEAP"})
+    Store store;
+
+    LocalRateLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        LimiterStateStore states = switch (store) {
+            case OBJECTS -> new ObjectStateStore(keys);
+            case HEAP -> new AtomicStateStore(keys);
+            case OFF_HEAP -> new DirectStateStore(keys);
+        };
+        limiter = new LocalRateLimiter(states);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys; i++) {
+            limiter.acquire(key(i), RateLimitAlgorithm.TOKEN_BUCKET, 60_000, 1_000, 1, now);
+        }
+        System.out.printf("%n%s: %.1f heap bytes and %.1f direct bytes per key%n", store,
+                (double) (usedHeap() - heapBefore) / keys, (double) (usedDirect() - directBefore) / keys);
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long acquire(Keys keys) {
+        return limiter.acquire(key(keys.random.nextInt(this.keys)), RateLimitAlgorithm.TOKEN_BUCKET,
+                60_000, 1_000, 1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullGc() {
+        System.gc();
+    }
+
+    /** Key hashes are derived from the index rather than held in an array, which would skew the heap */
+    private static long key(int i) {
+        long h = (i + 1) * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 31);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Baseline keeping a boxed entry per key in a {@link ConcurrentHashMap}, as a straightforward
+     * on-heap store would. Slots are handed out in order and never evicted.
+     */
+    static final class ObjectStateStore implements LimiterStateStore {
+
+        private final ConcurrentHashMap<Long, Integer> slots;
+
+        private final AtomicLongArray states;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        ObjectStateStore(int capacity) {
+            this.slots = new ConcurrentHashMap<>(capacity);
+            this.states = new AtomicLongArray(capacity);
+        }
+
+        @Override
+        public int slot(long key) {
+            return slots.computeIfAbsent(key, k -> next.getAndIncrement() % states.length());
+        }
+
+        @Override
+        public long get(int slot) {
+            return states.get(slot);
+        }
+
+        @Override
+        public boolean compareAndSet(int slot, long expected, long update) {
+            return states.compareAndSet(slot, expected, update);
+        }
+
+        @Override
+        public int capacity() {
+            return states.length();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the blocking stack on platform and on virtual threads: starts the server jar once with
+ * {@code spring.threads.virtual.enabled=false} and once with {@code true}, and runs the same
+ * {@link LoadGenerator} load against each in turn. Limits are raised so that requests reach Redis,
+ * which has to run on {@code redisHost:redisPort}. Server output goes to {@code thread-mode-platform.log}
+ * and {@code thread-mode-virtual.log}; with {@code -Djdk.tracePinnedThreads=short}, the default, the latter
+ * shows every virtual thread that blocked while pinned to its carrier.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.sanjay.ratelimiter.benchmark.ThreadModeComparison \
+ *     [serverJar] [rate] [seconds] [warmupSeconds] [redisHost] [redisPort] [port]
+ * </pre>
+ *
+ * <p>Arguments are positional, a missing one takes its default:
+ * <pre>
+ * rate-limiter-server/target/distributed-rate-limiter-0.0.1-SNAPSHOT.jar 5000 60 10 localhost 6379 8081
+ * </pre>
+ *
+ * The servers run on the same JVM as this runner, which has to be Java 21 or newer: Spring Boot ignores
+ * the property on older versions, and both runs would measure platform threads.
+ */
+public final class ThreadModeComparison {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private ThreadModeComparison() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String serverJar = arg(args, 0, "rate-limiter-server/target/distributed-rate-limiter-0.0.1-SNAPSHOT.jar");
+        String rate = arg(args, 1, "5000");
+        String seconds = arg(args, 2, "60");
+        String warmupSeconds = arg(args, 3, "10");
+        String redisHost = arg(args, 4, "localhost");
+        String redisPort = arg(args, 5, "6379");
+        String port = arg(args, 6, "8081");
+
+        if (Runtime.version().feature() < 21) {
+            System.err.printf("Virtual threads need Java 21 or newer, this is Java %d%n", Runtime.version().feature());
+            System.exit(1);
+        }
+        if (!new File(serverJar).isFile()) {
+            System.err.println("No server jar at " + serverJar + ", build it with mvn package");
+            System.exit(1);
+        }
+
+        for (boolean virtual : new boolean[] {false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            Process server = new ProcessBuilder(List.of(
+                    ProcessHandle.current().info().command().orElse("java"),
+                    "-Djdk.tracePinnedThreads=" + System.getProperty("jdk.tracePinnedThreads", "short"),
+                    "-jar", serverJar,
+                    "--server.port=" + port,
+                    "--spring.threads.virtual.enabled=" + virtual,
+                    "--spring.data.redis.host=" + redisHost,
+                    "--spring.data.redis.port=" + redisPort,
+                    "--rate-limiter.global.request-limit=1000000000",
+                    "--rate-limiter.default-config.request-limit=1000000000"))
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File("thread-mode-" + mode + ".log"))
+                    .start();
+            try {
+                String baseUrl = "http://localhost:" + port;
+                awaitHealthy(baseUrl, server);
+                System.out.printf("%n=== %s threads ===%n", mode);
+                LoadGenerator.main(new String[] {baseUrl, rate, seconds, warmupSeconds});
+            } finally {
+                server.destroy();
+                if (!server.waitFor(30, TimeUnit.SECONDS)) {
+                    server.destroyForcibly().waitFor();
+                }
+            }
+        }
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    /**
+     * Waits until the server's health endpoint answers 200.
+     *
+     * @throws IllegalStateException if the server exits or is not healthy within {@link #STARTUP_TIMEOUT}
+     */
+    private static void awaitHealthy(String baseUrl, Process server) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("Server exited with " + server.exitValue() + " before it was healthy");
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Server not healthy after " + STARTUP_TIMEOUT);
+    }
+}
@@ -0,0 +1,50 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keeps the bytes a decision allocates in this process, keys and arguments included, within a budget.
+ * The budget leaves some room above the measured value; raising it needs a reason.
+ */
+class AllocationBudgetTests {
+
+	/** Bytes allocated per {@link DecisionAllocationBenchmark#decide()}, measured at 408 with the deny cache keyed by hashes */
+	private static final double BYTES_PER_DECISION = 416;
+
+	/** The same with the script run by the local engine, measured at 464: its result is one object of primitives */
+	private static final double BYTES_PER_LOCAL_DECISION = 472;
+
+	@Test
+	void decisionStaysWithinItsAllocationBudget() throws Exception {
+		Options options = new OptionsBuilder()
+				.include(DecisionAllocationBenchmark.class.getName() + ".decide$")
+				.addProfiler(GCProfiler.class)
+				.warmupIterations(2)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(3)
+				.measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(options).run();
+
+		assertThat(results).isNotEmpty();
+		for (RunResult result : results) {
+			double allocated = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+			boolean local = Boolean.parseBoolean(result.getParams().getParam("local"));
+			assertThat(allocated)
+					.as("bytes per decision with %s, local %s", result.getParams().getParam("algorithm"), local)
+					.isLessThanOrEqualTo(local ? BYTES_PER_LOCAL_DECISION : BYTES_PER_DECISION);
+		}
+	}
+}
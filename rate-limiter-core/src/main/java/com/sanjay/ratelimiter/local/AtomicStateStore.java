@@ -0,0 +1,77 @@
+package com.sanjay.ratelimiter.local;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * On-heap {@link LimiterStateStore}: an open-addressing table of key hashes and states in a single
+ * {@link AtomicLongArray}, so the whole store is two objects however many keys it holds.
+ *
+ * <p>A key is looked for in a short run of slots starting at its hash. When every slot of the run is
+ * taken by other keys, the key takes over its home slot, as {@link com.sanjay.ratelimiter.service.BlockedKeyCache}
+ * replaces entries: the evicted key simply starts again with a fresh limiter. Sized well above the
+ * number of active keys, this is rare.
+ *
+ * <p>An eviction writes the new key, then resets the state, as two separate stores. A thread looking up
+ * the new key in between may see the evicted key's state for one request. A thread still updating the
+ * evicted key's state either has its update overwritten by the reset, or lands it after the reset, in
+ * which case the new key inherits the evicted key's state until it recovers, as it would have for the
+ * old key: an exhausted key hands its denials on.
+ *
+ * @see DirectStateStore for tens of millions of keys
+ */
+public final class AtomicStateStore implements LimiterStateStore {
+
+    /** Slots probed for a key before it takes over its home slot */
+    static final int MAX_PROBES = 8;
+
+    /** Key hash and state of slot i at 2i and 2i + 1; key 0 marks a free slot */
+    private final AtomicLongArray table;
+
+    private final int mask;
+
+    /**
+     * @param capacity number of keys, rounded up to a power of two
+     */
+    public AtomicStateStore(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.table = new AtomicLongArray(size * 2);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public int slot(long key) {
+        long k = key == 0 ? 1 : key;
+        int home = (int) (k ^ (k >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long current = table.get(slot << 1);
+            if (current == k) {
+                return slot;
+            }
+            if (current == 0) {
+                if (table.compareAndSet(slot << 1, 0, k) || table.get(slot << 1) == k) {
+                    return slot;
+                }
+            }
+        }
+        // The run is full: evict the home slot's key
+        table.set(home << 1, k);
+        table.set((home << 1) + 1, 0);
+        return home;
+    }
+
+    @Override
+    public long get(int slot) {
+        return table.get((slot << 1) + 1);
+    }
+
+    @Override
+    public boolean compareAndSet(int slot, long expected, long update) {
+        return table.compareAndSet((slot << 1) + 1, expected, update);
+    }
+
+    @Override
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,118 @@
+package com.sanjay.ratelimiter.local;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Off-heap {@link LimiterStateStore} for tens of millions of keys: an open-addressing table in one
+ * direct buffer, invisible to the garbage collector whatever the number of keys.
+ *
+ * <p>Every slot takes {@value #ENTRY_BYTES} bytes for the key hash and state, accessed atomically
+ * through a {@link VarHandle} view of the buffer, plus one reference byte at the end of the buffer.
+ * Up to {@value #MAX_PROBES} slots are probed for a key. When all of them belong to other keys, an
+ * idle one is evicted with the CLOCK (second chance) policy: a slot is marked referenced whenever its
+ * key is looked up, and the eviction sweep clears the marks it passes until it finds an unmarked slot.
+ * The evicted key starts again with a fresh limiter when it comes back.
+ *
+ * <p>Slots are reused in place and never emptied, so probe runs stay intact. An eviction writes the new
+ * key, then resets the state, as two separate stores, and the compare-and-set of a state does not check
+ * the key (that would take a 16-byte compare-and-set). A thread still updating the evicted key can
+ * therefore land its update after the reset, and the new key inherits the evicted key's state: if that
+ * key was exhausted, the new one is denied until the state recovers as it would have for the old key.
+ * Likewise two threads evicting the same slot for different keys at once leave it to the last of them,
+ * and the other key shares its state while it keeps using the slot. Either way a key can only end up
+ * with less than a fresh limiter allows, never more.
+ */
+public final class DirectStateStore implements LimiterStateStore {
+
+    /** Slots probed for a key before an idle one is evicted */
+    static final int MAX_PROBES = 8;
+
+    /** Key hash and state of a slot */
+    static final int ENTRY_BYTES = 16;
+
+    /** Bytes of buffer per slot: its entry and its reference byte */
+    public static final int BYTES_PER_KEY = ENTRY_BYTES + 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /** Entries first, then one reference byte per slot; key 0 marks a free slot */
+    private final ByteBuffer buffer;
+
+    private final int referenceOffset;
+
+    private final int mask;
+
+    /**
+     * @param capacity number of keys, rounded up to a power of two
+     * @throws IllegalArgumentException if the table does not fit in a single buffer
+     */
+    public DirectStateStore(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        long bytes = (long) size * BYTES_PER_KEY;
+        if (size <= 0 || bytes + Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity " + capacity + " exceeds a single direct buffer");
+        }
+        // Atomic access needs 8-byte aligned entries
+        this.buffer = ByteBuffer.allocateDirect((int) bytes + Long.BYTES).alignedSlice(Long.BYTES);
+        this.referenceOffset = size * ENTRY_BYTES;
+        this.mask = size - 1;
+    }
+
+    @Override
+    public int slot(long key) {
+        long k = key == 0 ? 1 : key;
+        int home = (int) (k ^ (k >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long current = (long) LONGS.getVolatile(buffer, slot * ENTRY_BYTES);
+            if (current == 0 && (LONGS.compareAndSet(buffer, slot * ENTRY_BYTES, 0L, k)
+                    || (long) LONGS.getVolatile(buffer, slot * ENTRY_BYTES) == k)) {
+                return slot;
+            }
+            if (current == k) {
+                // Only written when unset, so that hot slots do not keep dirtying their cache line
+                if (buffer.get(referenceOffset + slot) == 0) {
+                    buffer.put(referenceOffset + slot, (byte) 1);
+                }
+                return slot;
+            }
+        }
+        return evict(home, k);
+    }
+
+    /**
+     * Hands the first unreferenced slot of a full probe run to a key, clearing the references it passes.
+     * After one sweep every reference is cleared, so the second sweep always finds a slot.
+     */
+    private int evict(int home, long key) {
+        for (int sweep = 0; sweep < 2 * MAX_PROBES; sweep++) {
+            int slot = (home + sweep % MAX_PROBES) & mask;
+            if (buffer.get(referenceOffset + slot) != 0) {
+                buffer.put(referenceOffset + slot, (byte) 0);
+                continue;
+            }
+            LONGS.setVolatile(buffer, slot * ENTRY_BYTES, key);
+            LONGS.setVolatile(buffer, slot * ENTRY_BYTES + Long.BYTES, 0L);
+            return slot;
+        }
+        return home;
+    }
+
+    @Override
+    public long get(int slot) {
+        return (long) LONGS.getVolatile(buffer, slot * ENTRY_BYTES + Long.BYTES);
+    }
+
+    @Override
+    public boolean compareAndSet(int slot, long expected, long update) {
+        return LONGS.compareAndSet(buffer, slot * ENTRY_BYTES + Long.BYTES, expected, update);
+    }
+
+    @Override
+    public int capacity() {
+        return mask + 1;
+    }
+}
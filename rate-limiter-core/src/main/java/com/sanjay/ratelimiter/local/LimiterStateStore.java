@@ -0,0 +1,43 @@
+package com.sanjay.ratelimiter.local;
+
+/**
+ * Storage of local limiter state: one {@code long} per key, addressed through a slot.
+ *
+ * <p>Keys are 64-bit hashes of the limiter keys. A state of {@code 0} means the key has no state yet,
+ * which every engine reads as a fresh limiter. The store is bounded; when it cannot find room for a
+ * key it may hand out a slot taken from another key, whose state is then reset to {@code 0}.
+ * Engines take any store, on or off the heap.
+ *
+ * <p>Implementations must be thread-safe and lock-free, and must not allocate per call.
+ */
+public interface LimiterStateStore {
+
+    /**
+     * Finds the slot of a key, claiming one if the key has none.
+     *
+     * @param key 64-bit key hash
+     * @return the slot
+     */
+    int slot(long key);
+
+    /**
+     * @param slot slot returned by {@link #slot(long)}
+     * @return the state held in the slot
+     */
+    long get(int slot);
+
+    /**
+     * Replaces the state of a slot if it still holds the expected state.
+     *
+     * @param slot     slot returned by {@link #slot(long)}
+     * @param expected state the update was computed from
+     * @param update   new state
+     * @return {@code true} if the state was replaced
+     */
+    boolean compareAndSet(int slot, long expected, long update);
+
+    /**
+     * @return number of keys the store can hold
+     */
+    int capacity();
+}
@@ -0,0 +1,220 @@
+package com.sanjay.ratelimiter.local;
+
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+
+/**
+ * In-process limiter engine: the state of every key is a single {@code long} in a
+ * {@link LimiterStateStore}, updated with one compare-and-set. It takes no locks and allocates
+ * nothing per decision.
+ *
+ * <p>Two engines share the store, with the semantics of their counterparts in {@code RateLimiterScript.lua}:
+ * <ul>
+ *     <li>Token bucket: whole tokens in the upper {@value #TOKEN_BITS} bits and the last refill, in
+ *     milliseconds since the limiter was created, in the lower {@value #TIME_BITS} bits. A refill adds
+ *     whole tokens only and advances the refill time by exactly the time they took, so no fraction
+ *     is lost. Limits above {@link #MAX_TOKEN_BUCKET_LIMIT} do not fit and use GCRA.</li>
+ *     <li>GCRA: the theoretical arrival time in microseconds, so that intervals below a millisecond
+ *     keep their precision.</li>
+ * </ul>
+ * The sliding log and sliding window counter need more than one {@code long} per key and are decided
+ * with GCRA, which admits the same number of requests per window while spreading them more evenly.
+ *
+ * <p>Decisions are returned as a {@code long}: the remaining requests when allowed, or a negative
+ * value encoding the retry-after when denied, see {@link #isAllowed(long)} and {@link #retryAfter(long)}.
+ */
+public final class LocalRateLimiter {
+
+    static final int TOKEN_BITS = 24;
+
+    static final int TIME_BITS = 64 - TOKEN_BITS;
+
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+    /** Largest limit a token bucket can hold */
+    public static final long MAX_TOKEN_BUCKET_LIMIT = (1L << TOKEN_BITS) - 1;
+
+    private final LimiterStateStore store;
+
+    /** Origin of the token bucket refill times, one millisecond before creation so that no time is 0 */
+    private final long epochMillis;
+
+    public LocalRateLimiter(LimiterStateStore store) {
+        this(store, System.currentTimeMillis());
+    }
+
+    LocalRateLimiter(LimiterStateStore store, long createdMillis) {
+        this.store = store;
+        this.epochMillis = createdMillis - 1;
+    }
+
+    /**
+     * Admits a request of the given cost if the key has room for it.
+     *
+     * @param key          64-bit hash of the limiter key, see {@link #hash(CharSequence, int, int)}
+     * @param algorithm    algorithm of the limiter
+     * @param windowMillis window of the limiter
+     * @param limit        requests per window
+     * @param cost         cost of this request, in requests
+     * @param now          current timestamp in milliseconds
+     * @return remaining requests if allowed, a negative value if denied
+     */
+    public long acquire(long key, RateLimitAlgorithm algorithm, long windowMillis, long limit, long cost, long now) {
+        int slot = store.slot(key);
+        if (isTokenBucket(algorithm, limit)) {
+            return acquireTokens(slot, windowMillis, limit, cost, now);
+        }
+        long interval = Math.max(1, windowMillis * 1000 / limit);
+        long nowMicros = now * 1000;
+        while (true) {
+            long state = store.get(slot);
+            long newTat = Math.max(state, nowMicros) + interval * cost;
+            long allowAt = newTat - windowMillis * 1000;
+            if (nowMicros < allowAt) {
+                return denied(ceilDiv(allowAt - nowMicros, 1000));
+            }
+            if (store.compareAndSet(slot, state, newTat)) {
+                return (nowMicros - allowAt) / interval;
+            }
+        }
+    }
+
+    private long acquireTokens(int slot, long windowMillis, long limit, long cost, long now) {
+        long time = Math.max(1, now - epochMillis);
+        while (true) {
+            long state = store.get(slot);
+            long tokens = limit;
+            long refilledAt = time;
+            if (state != 0) {
+                tokens = state >>> TIME_BITS;
+                refilledAt = state & TIME_MASK;
+                long elapsed = Math.max(0, time - refilledAt);
+                long refill = elapsed >= windowMillis ? limit : elapsed * limit / windowMillis;
+                if (tokens + refill >= limit) {
+                    tokens = limit;
+                    refilledAt = time;
+                } else if (refill > 0) {
+                    tokens += refill;
+                    refilledAt += refill * windowMillis / limit;
+                }
+            }
+            if (tokens < cost) {
+                // The missing tokens accrue from the last refill on
+                long ready = refilledAt + ceilDiv((cost - tokens) * windowMillis, limit);
+                return denied(Math.max(1, ready - time));
+            }
+            if (store.compareAndSet(slot, state, (tokens - cost) << TIME_BITS | refilledAt)) {
+                return tokens - cost;
+            }
+        }
+    }
+
+    /**
+     * Gives back a request admitted by {@link #acquire}, e.g. when another tier of the same request
+     * denied it. Lock-free as well, so concurrent requests may see the quota taken in between.
+     */
+    public void release(long key, RateLimitAlgorithm algorithm, long windowMillis, long limit, long cost) {
+        int slot = store.slot(key);
+        boolean tokenBucket = isTokenBucket(algorithm, limit);
+        long interval = Math.max(1, windowMillis * 1000 / limit);
+        while (true) {
+            long state = store.get(slot);
+            if (state == 0) {
+                return;
+            }
+            long update = tokenBucket
+                    ? Math.min(limit, (state >>> TIME_BITS) + cost) << TIME_BITS | state & TIME_MASK
+                    : Math.max(1, state - interval * cost);
+            if (store.compareAndSet(slot, state, update)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return milliseconds until the key's quota is fully restored
+     */
+    public long reset(long key, RateLimitAlgorithm algorithm, long windowMillis, long limit, long now) {
+        long state = store.get(store.slot(key));
+        if (state == 0) {
+            return 0;
+        }
+        if (isTokenBucket(algorithm, limit)) {
+            long time = Math.max(1, now - epochMillis);
+            long tokens = state >>> TIME_BITS;
+            long full = (state & TIME_MASK) + ceilDiv((limit - tokens) * windowMillis, limit);
+            return Math.max(0, full - time);
+        }
+        return Math.max(0, ceilDiv(state - now * 1000, 1000));
+    }
+
+    /**
+     * @param result result of {@link #acquire}
+     * @return whether the request was admitted
+     */
+    public static boolean isAllowed(long result) {
+        return result >= 0;
+    }
+
+    /**
+     * @param result result of {@link #acquire}
+     * @return milliseconds until a denied request may succeed, {@code 0} if it was admitted
+     */
+    public static long retryAfter(long result) {
+        return result < 0 ? -result - 1 : 0;
+    }
+
+    /**
+     * Hashes part of a limiter key to the 64 bits used by the store, without allocating.
+     * FNV-1a over the characters, followed by the MurmurHash3 finalizer to spread the bits.
+     *
+     * @param key   limiter key
+     * @param start first character
+     * @param end   end of the hashed part, exclusive
+     * @return the hash
+     */
+    public static long hash(CharSequence key, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Hashes part of an encoded limiter key, the same way {@link #hash(CharSequence, int, int)} hashes
+     * the characters of an ASCII key, but starting from a seed. Without the seed, nobody can pick keys
+     * whose hashes share a run of slots in the store and evict each other.
+     *
+     * @param seed random seed, {@code 0} gives the hash of {@link #hash(CharSequence, int, int)}
+     */
+    public static long hash(long seed, byte[] key, int start, int end) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (key[i] & 0xff)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * @return the 64-bit hash of a whole limiter key
+     */
+    public static long hash(CharSequence key) {
+        return hash(key, 0, key.length());
+    }
+
+    private static boolean isTokenBucket(RateLimitAlgorithm algorithm, long limit) {
+        return algorithm == RateLimitAlgorithm.TOKEN_BUCKET && limit <= MAX_TOKEN_BUCKET_LIMIT;
+    }
+
+    private static long denied(long retryAfter) {
+        return -retryAfter - 1;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
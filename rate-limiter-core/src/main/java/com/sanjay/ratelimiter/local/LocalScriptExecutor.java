@@ -0,0 +1,209 @@
+package com.sanjay.ratelimiter.local;
+
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RedisBytes;
+
+import java.security.SecureRandom;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Runs {@link LuaScript#RATE_LIMITER} in-process on a {@link LocalRateLimiter} instead of Redis, so
+ * that {@link com.sanjay.ratelimiter.service.RateLimiterService} limits a single node without any
+ * round trip. Keys, arguments and results are those of the script; encoded keys and arguments are
+ * read as they are.
+ *
+ * <p>Where the script checks every tier before recording any, each tier is acquired in turn here and
+ * a request denied by a later tier gives back what it took from the earlier ones. The two only differ
+ * while requests race for the last requests of a tier. A negative cost gives a request back on every
+ * tier, as the script does.
+ *
+ * <p>Global and endpoint tiers are shared by every user of an endpoint, so their state is kept in a table
+ * of its own, where no user key can take over their slots. User and throttle keys go to the given store,
+ * and are hashed with a random seed of this executor, so that nobody can pick keys that evict each other.
+ *
+ * <p>Global quota leasing spreads a global limit over nodes and has no meaning for a single node,
+ * so {@link LuaScript#GLOBAL_LEASE} is not supported.
+ */
+public class LocalScriptExecutor implements RedisScriptExecutor {
+
+    /** Keys of global and endpoint tiers held apart from user keys; endpoints come from requests */
+    static final int SHARED_CAPACITY = 16_384;
+
+    private static final byte[] GLOBAL_KEY_PREFIX = RedisBytes.of("rate_limit:global");
+
+    private static final byte[] ENDPOINT_KEY_PREFIX = RedisBytes.of("rate_limit:endpoint:");
+
+    /** Limiter of user and throttle keys */
+    private final LocalRateLimiter limiter;
+
+    /** Limiter of global and endpoint keys */
+    private final LocalRateLimiter shared;
+
+    /** Random seed of the key hashes */
+    private final long seed = new SecureRandom().nextLong();
+
+    /**
+     * @param limiter limiter of user and throttle keys
+     * @param shared  limiter of global and endpoint keys
+     */
+    public LocalScriptExecutor(LocalRateLimiter limiter, LocalRateLimiter shared) {
+        this.limiter = limiter;
+        this.shared = shared;
+    }
+
+    /**
+     * @param store store of user and throttle keys; global and endpoint keys get a store of their own
+     */
+    public LocalScriptExecutor(LimiterStateStore store) {
+        this(new LocalRateLimiter(store), new LocalRateLimiter(new AtomicStateStore(SHARED_CAPACITY)));
+    }
+
+    @Override
+    public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = RedisBytes.of(keys.get(i));
+        }
+        for (int i = 0; i < args.size(); i++) {
+            keysAndArgs[keys.size() + i] = RedisBytes.of(args.get(i));
+        }
+        return execute(script, keys.size(), keysAndArgs);
+    }
+
+    @Override
+    public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+        if (script != LuaScript.RATE_LIMITER) {
+            throw new UnsupportedOperationException("Only the rate limiter script runs locally");
+        }
+        long now = arg(keyCount, keysAndArgs, 0);
+        int tierCount = (int) arg(keyCount, keysAndArgs, 1);
+        long cost = arg(keyCount, keysAndArgs, 3);
+        if (cost < 0) {
+            release(keyCount, keysAndArgs, tierCount, -cost);
+            return List.of();
+        }
+
+        int tightest = 0;
+        long tightestRemaining = -1;
+        int tightestKey = 0;
+        int nextKey = 0;
+        for (int tier = 1; tier <= tierCount; tier++) {
+            RateLimitAlgorithm algorithm = algorithm(keyCount, keysAndArgs, tier);
+            long window = arg(keyCount, keysAndArgs, tier * 3 + 2);
+            long limit = arg(keyCount, keysAndArgs, tier * 3 + 3);
+            LocalRateLimiter tierLimiter = limiterOf(keysAndArgs[nextKey]);
+            long key = key(keysAndArgs[nextKey], algorithm);
+            long result = tierLimiter.acquire(key, algorithm, window, limit, cost, now);
+            if (!LocalRateLimiter.isAllowed(result)) {
+                release(keyCount, keysAndArgs, tier - 1, cost);
+                return new Result(false, tier, limit, 0,
+                        tierLimiter.reset(key, algorithm, window, limit, now), LocalRateLimiter.retryAfter(result));
+            }
+            if (tightest == 0 || result < tightestRemaining) {
+                tightest = tier;
+                tightestRemaining = result;
+                tightestKey = nextKey;
+            }
+            nextKey += algorithm.keyCount();
+        }
+
+        RateLimitAlgorithm algorithm = algorithm(keyCount, keysAndArgs, tightest);
+        long window = arg(keyCount, keysAndArgs, tightest * 3 + 2);
+        long limit = arg(keyCount, keysAndArgs, tightest * 3 + 3);
+        long reset = limiterOf(keysAndArgs[tightestKey])
+                .reset(key(keysAndArgs[tightestKey], algorithm), algorithm, window, limit, now);
+        return new Result(true, tightest, limit, tightestRemaining, reset, 0);
+    }
+
+    /**
+     * Gives back the first {@code tiers} tiers of a denied request.
+     */
+    private void release(int keyCount, byte[][] keysAndArgs, int tiers, long cost) {
+        int nextKey = 0;
+        for (int tier = 1; tier <= tiers; tier++) {
+            RateLimitAlgorithm algorithm = algorithm(keyCount, keysAndArgs, tier);
+            limiterOf(keysAndArgs[nextKey]).release(key(keysAndArgs[nextKey], algorithm), algorithm,
+                    arg(keyCount, keysAndArgs, tier * 3 + 2), arg(keyCount, keysAndArgs, tier * 3 + 3), cost);
+            nextKey += algorithm.keyCount();
+        }
+    }
+
+    /** @return the 0-based argument of a script call as a number */
+    private static long arg(int keyCount, byte[][] keysAndArgs, int index) {
+        return RedisBytes.parseLong(keysAndArgs[keyCount + index]);
+    }
+
+    private static RateLimitAlgorithm algorithm(int keyCount, byte[][] keysAndArgs, int tier) {
+        return RateLimitAlgorithm.valueOf(keysAndArgs[keyCount + tier * 3 + 1]);
+    }
+
+    /** @return the limiter holding the state of a key: the shared one for global and endpoint keys */
+    private LocalRateLimiter limiterOf(byte[] key) {
+        return startsWith(key, GLOBAL_KEY_PREFIX) || startsWith(key, ENDPOINT_KEY_PREFIX) ? shared : limiter;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Hashes the limiter key of a tier. The sliding window counter's keys end in the window number,
+     * which is cut off so that the key keeps its state across windows.
+     */
+    private long key(byte[] key, RateLimitAlgorithm algorithm) {
+        int end = key.length;
+        if (algorithm == RateLimitAlgorithm.SLIDING_WINDOW_COUNTER) {
+            while (end > 0 && key[--end] != ':') {
+                // Skips the window number
+            }
+        }
+        return LocalRateLimiter.hash(seed, key, 0, end);
+    }
+
+    /**
+     * The script result {@code {allowed, tierIndex, limit, remaining, reset, retryAfter}}, held as
+     * primitives and boxed only when read, so that a caller unboxing each element right away
+     * allocates nothing for it.
+     */
+    private static final class Result extends AbstractList<Long> implements RandomAccess {
+
+        private final boolean allowed;
+        private final int tier;
+        private final long limit;
+        private final long remaining;
+        private final long reset;
+        private final long retryAfter;
+
+        Result(boolean allowed, int tier, long limit, long remaining, long reset, long retryAfter) {
+            this.allowed = allowed;
+            this.tier = tier;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.reset = reset;
+            this.retryAfter = retryAfter;
+        }
+
+        @Override
+        public Long get(int index) {
+            return switch (index) {
+                case 0 -> allowed ? 1L : 0L;
+                case 1 -> (long) tier;
+                case 2 -> limit;
+                case 3 -> remaining;
+                case 4 -> reset;
+                case 5 -> retryAfter;
+                default -> throw new IndexOutOfBoundsException(index);
+            };
+        }
+
+        @Override
+        public int size() {
+            return 6;
+        }
+    }
+}
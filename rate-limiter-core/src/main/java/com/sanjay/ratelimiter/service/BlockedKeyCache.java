@@ -0,0 +1,79 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, self-expiring local cache of "blocked until T" entries for limiter keys.
+ *
+ * <p>When the script denies a request it reports how long the denying key stays full. Until then
+ * every repeat of that request would be denied again, so the service remembers the key here and
+ * denies repeats in-process without touching Redis.
+ *
+ * <p>Keys are identified by a seeded 64-bit hash of the limiter key, which the service computes without
+ * building the key itself. Two keys with the same hash would share their entry; with a seed unknown
+ * outside the node that takes about 2<sup>32</sup> keys by chance and cannot be arranged on purpose.
+ *
+ * <p>The cache is a fixed-size, direct-mapped table: each key hashes to exactly one slot and a newer
+ * entry simply replaces whatever was in it. Memory is bounded by the configured size, lookups are a
+ * single volatile read, and stale entries need no cleanup because they are checked against the clock.
+ * A replaced entry only means that key's next request goes to Redis again.
+ */
+public class BlockedKeyCache {
+
+    /** An immutable cache entry, replaced as a whole */
+    private record Entry(long keyHash, long blockedUntil) {}
+
+    private final AtomicReferenceArray<Entry> slots;
+
+    private final int mask;
+
+    public BlockedKeyCache(RateLimiterProperties properties) {
+        // Round the size up to a power of two so the slot is a mask of the hash
+        int size = Integer.highestOneBit(Math.max(1, properties.getDenyCache().getSize() - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns until when a key is blocked.
+     *
+     * @param keyHash hash of the limiter key, {@code 0} is never blocked
+     * @param now     current timestamp in milliseconds
+     * @return the time (ms) until which the key is blocked, or {@code 0} if it is not blocked
+     */
+    public long blockedUntil(long keyHash, long now) {
+        if (keyHash == 0) {
+            return 0;
+        }
+        Entry entry = slots.get(slot(keyHash));
+        if (entry == null || entry.blockedUntil() <= now || entry.keyHash() != keyHash) {
+            return 0;
+        }
+        return entry.blockedUntil();
+    }
+
+    /**
+     * Blocks a key until the given time.
+     *
+     * @param keyHash      hash of the limiter key that denied a request
+     * @param blockedUntil time (ms) at which the key next allows a request
+     */
+    public void block(long keyHash, long blockedUntil) {
+        slots.set(slot(keyHash), new Entry(keyHash, blockedUntil));
+    }
+
+    /**
+     * Drops every entry, e.g. after limits were changed and cached deny times may no longer hold.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    private int slot(long keyHash) {
+        return (int) (keyHash ^ (keyHash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,313 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node-local lease of global quota.
+ *
+ * <p>Instead of touching {@code rate_limit:global} on every request, the node takes a chunk of the
+ * global token bucket (a configurable percentage of the global limit) with one script call and
+ * spends it locally with a lock-free counter. When the local balance drops below the renewal
+ * threshold the lease is topped up again in the background, so the request path rarely waits on Redis.
+ *
+ * <p>Leased tokens are only valid for one global window: an expired balance is handed back to the
+ * bucket on the next renewal, and whatever is left on shutdown is returned as well, so
+ * {@link #shutdown()} should be called when the node stops. Every expiry starts a new lease
+ * generation; tokens released for a request of an earlier generation were already handed back
+ * and are not credited again.
+ *
+ * <p>Leases are taken from the global tier's own token bucket key, which nodes without leasing
+ * decide against as well. Leasing therefore requires the global tier to use
+ * {@link RateLimitAlgorithm#TOKEN_BUCKET}; any other algorithm keeps its state under a different key
+ * and would not see the leased tokens.
+ *
+ * @see RateLimiterProperties.LeaseConfig
+ */
+@Slf4j
+public class GlobalQuotaLease {
+
+    /** Global token bucket the leases are taken from, shared with nodes not using leases */
+    private static final byte[] GLOBAL_KEY = RedisBytes.of("rate_limit:global");
+
+    /** Centralized configuration that defines the global limit and the lease sizing */
+    private final RateLimiterProperties properties;
+
+    /** Runs the lease script in Redis */
+    private final RedisScriptExecutor scriptExecutor;
+
+    /** Tokens this node may still spend without asking Redis */
+    private final AtomicLong balance = new AtomicLong();
+
+    /** Whether a background renewal is already queued */
+    private final AtomicBoolean renewalPending = new AtomicBoolean();
+
+    /** Single background thread topping up the lease ahead of time */
+    private final ExecutorService renewer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "global-quota-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Serializes renewals. A lock instead of {@code synchronized}: renewals wait on Redis, and on virtual
+     * threads a monitor held across that wait would pin the carrier thread.
+     */
+    private final ReentrantLock renewLock = new ReentrantLock();
+
+    /** Time (ms) after which the current balance must be handed back instead of spent */
+    private volatile long leaseExpiresAt;
+
+    /** Time (ms) until which the global bucket is known to be empty, so no renewal is attempted */
+    private volatile long exhaustedUntil;
+
+    /** Incremented whenever an expired balance is handed back */
+    private volatile long generation;
+
+    /**
+     * @throws IllegalStateException if leasing is enabled with the local engine, which has no lease script,
+     *                               or with a global tier that is not a token bucket
+     */
+    public GlobalQuotaLease(RateLimiterProperties properties, RedisScriptExecutor scriptExecutor) {
+        if (properties.getLease().isEnabled() && properties.getLocal().isEnabled()) {
+            throw new IllegalStateException("Global quota leasing needs Redis and cannot be combined with the local engine");
+        }
+        if (properties.getLease().isEnabled()
+                && properties.getGlobal().getAlgorithm() != RateLimitAlgorithm.TOKEN_BUCKET) {
+            throw new IllegalStateException("Global quota leasing requires the global tier to use "
+                    + RateLimitAlgorithm.TOKEN_BUCKET + ", not " + properties.getGlobal().getAlgorithm());
+        }
+        this.properties = properties;
+        this.scriptExecutor = scriptExecutor;
+    }
+
+    /**
+     * Takes global quota from the local lease, renewing the lease when it runs dry.
+     *
+     * @param cost number of tokens the request needs
+     * @return the lease generation the tokens were taken from, to {@link #release(long, long)} them with,
+     * or {@code -1} if the request does not fit within the global limit
+     */
+    public long tryAcquire(long cost) {
+        long now = Instant.now().toEpochMilli();
+        // Once per window the lease expires; hand back what is left, but don't retry an empty bucket
+        if (now >= leaseExpiresAt && (balance.get() > 0 || now >= exhaustedUntil)) {
+            renewExpired(now);
+        }
+        // Read before taking: a renewal hands back the balance before it moves to the next generation,
+        // so a race can only label new tokens with the old generation, which releases nothing
+        long taken = generation;
+        if (takeLocal(cost)) {
+            return taken;
+        }
+        // The balance is too low: renew synchronously unless the bucket is known to be empty
+        if (now >= exhaustedUntil) {
+            return renewAndTake(now, cost);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether {@link #tryAcquire(long)} would currently have to call Redis before it can
+     * answer, so callers that must not block can run it elsewhere. This is a hint: the balance may
+     * change between this check and the acquire.
+     *
+     * @param cost number of tokens the request needs
+     * @return {@code true} if the lease is expired, or too low and the bucket not known to be empty
+     */
+    public boolean wouldBlock(long cost) {
+        long now = Instant.now().toEpochMilli();
+        if (now >= leaseExpiresAt && (balance.get() > 0 || now >= exhaustedUntil)) {
+            return true;
+        }
+        return balance.get() < cost && now >= exhaustedUntil;
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryAcquire(long)} for a request that another tier denied.
+     * Tokens of an expired lease were handed back with it, and are dropped.
+     *
+     * @param cost       number of tokens taken
+     * @param generation lease generation returned by {@link #tryAcquire(long)}
+     */
+    public void release(long cost, long generation) {
+        if (generation == this.generation) {
+            balance.addAndGet(cost);
+        }
+    }
+
+    /**
+     * Returns how long (ms) a request {@link #tryAcquire(long)} denied should wait before it is retried:
+     * until the global bucket is expected to have tokens again, and at least the time the bucket takes
+     * to refill the request's tokens, since the lease holds none for it right now.
+     *
+     * @param cost number of tokens the request needs
+     * @return milliseconds until a retry may succeed, at least 1
+     */
+    public long retryAfterMillis(long cost) {
+        var globalConfig = properties.getGlobal();
+        long windowMillis = TimeUnit.SECONDS.toMillis(globalConfig.getWindowDuration());
+        long limit = Math.max(1, globalConfig.getRequestLimit());
+        long refillMillis = Math.max(1, (windowMillis * cost + limit - 1) / limit);
+        return Math.max(refillMillis, exhaustedUntil - Instant.now().toEpochMilli());
+    }
+
+    /**
+     * Spends local tokens with a CAS loop, never taking the balance below zero.
+     */
+    private boolean takeLocal(long cost) {
+        while (true) {
+            long current = balance.get();
+            if (current < cost) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - cost)) {
+                if (current - cost < threshold()) {
+                    renewInBackground();
+                }
+                return true;
+            }
+        }
+    }
+
+    private void renewInBackground() {
+        if (renewalPending.compareAndSet(false, true)) {
+            renewer.execute(() -> {
+                renewLock.lock();
+                try {
+                    renew(Instant.now().toEpochMilli(), 0);
+                } catch (RuntimeException e) {
+                    log.warn("Background renewal of global quota lease failed", e);
+                } finally {
+                    renewLock.unlock();
+                    renewalPending.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Renews an expired lease, unless another caller renewed it while this one waited for the lock.
+     */
+    private void renewExpired(long now) {
+        renewLock.lock();
+        try {
+            if (now >= leaseExpiresAt) {
+                renew(now, 0);
+            }
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    /**
+     * Renews the lease and takes the request's tokens from it. Callers that waited for the lock
+     * first try the balance the previous holder renewed, so concurrent callers renew only once.
+     *
+     * @return the lease generation the tokens were taken from, {@code -1} if there were not enough
+     */
+    private long renewAndTake(long now, long cost) {
+        renewLock.lock();
+        try {
+            if (takeLocal(cost)) {
+                return generation;
+            }
+            if (now < exhaustedUntil) {
+                return -1;
+            }
+            renew(now, cost);
+            return takeLocal(cost) ? generation : -1;
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    /**
+     * Tops the local balance up to one chunk, or to the cost of the request waiting for it if that is
+     * more, in a single script call, handing back an expired balance first. If the call fails, the
+     * expired balance stays with this node and is handed back by the next renewal.
+     * Must be called with {@link #renewLock} held.
+     *
+     * @param cost number of tokens the renewal must cover, 0 when no request waits for it
+     */
+    private void renew(long now, long cost) {
+        boolean expired = now >= leaseExpiresAt;
+        long giveBack = 0;
+        if (expired) {
+            giveBack = balance.getAndSet(0);
+            generation++;
+        }
+        long requested = Math.max(0, Math.max(chunk(), cost) - balance.get());
+        if (requested == 0 && giveBack == 0) {
+            return;
+        }
+
+        long granted;
+        try {
+            granted = execute(now, giveBack, requested);
+        } catch (RuntimeException e) {
+            // Nothing was handed back; the lease stays expired, so the next renewal tries again
+            balance.addAndGet(giveBack);
+            throw e;
+        }
+        balance.addAndGet(granted);
+        if (expired || granted > 0) {
+            leaseExpiresAt = now + TimeUnit.SECONDS.toMillis(properties.getGlobal().getWindowDuration());
+        }
+    }
+
+    /**
+     * Returns the unused balance to the global bucket so other nodes can spend it.
+     */
+    public void shutdown() {
+        renewer.shutdownNow();
+        long unused = balance.getAndSet(0);
+        if (unused > 0) {
+            execute(Instant.now().toEpochMilli(), unused, 0);
+            log.info("Returned {} unused global tokens", unused);
+        }
+    }
+
+    private long execute(long now, long giveBack, long requested) {
+        var globalConfig = properties.getGlobal();
+        long windowMillis = TimeUnit.SECONDS.toMillis(globalConfig.getWindowDuration());
+        byte[][] keysAndArgs = new byte[RateLimitAlgorithm.TOKEN_BUCKET.keyCount() + 5][];
+        int keyCount = RateLimitAlgorithm.TOKEN_BUCKET.writeKeys(keysAndArgs, 0, GLOBAL_KEY, now, windowMillis);
+        keysAndArgs[keyCount] = RedisBytes.of(now);
+        keysAndArgs[keyCount + 1] = RedisBytes.of(windowMillis);
+        keysAndArgs[keyCount + 2] = RedisBytes.of(globalConfig.getRequestLimit());
+        keysAndArgs[keyCount + 3] = RedisBytes.of(giveBack);
+        keysAndArgs[keyCount + 4] = RedisBytes.of(requested);
+
+        List<?> result = scriptExecutor.execute(LuaScript.GLOBAL_LEASE, keyCount, keysAndArgs);
+
+        // Lease script returns {granted, retryAfter}
+        long granted = result == null ? 0 : (Long) result.get(0);
+        if (granted == 0 && requested > 0) {
+            exhaustedUntil = now + (result == null ? 0 : (Long) result.get(1));
+        }
+        return granted;
+    }
+
+    /** Tokens taken per lease, a percentage of the global limit */
+    private long chunk() {
+        var lease = properties.getLease();
+        return Math.max(1, properties.getGlobal().getRequestLimit() * lease.getChunkPercent() / 100);
+    }
+
+    /** Balance below which the lease is renewed in the background */
+    private long threshold() {
+        return chunk() * properties.getLease().getRenewAtPercent() / 100;
+    }
+}
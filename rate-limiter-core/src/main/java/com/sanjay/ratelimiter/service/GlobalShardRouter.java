@@ -0,0 +1,77 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+
+/**
+ * Routes the global tier to one of N sub-keys ({@code rate_limit:global:{0..N-1}}).
+ *
+ * <p>The hash tag in each sub-key places the shards on different Redis Cluster slots, so the
+ * global tier is no longer pinned to a single shard's CPU. Requests are routed by a hash of the
+ * user id, which is the same on every node, and each shard enforces its share of the global limit.
+ *
+ * <p>Shares are an even split of the global limit and depend on nothing but the configuration, so every
+ * node checks a shared shard key against the same limit and the shard limits add up to exactly the global
+ * limit. Shares that followed each node's own traffic would differ between nodes, and a shard would then
+ * in effect enforce the largest share any node gave it. A global limit below N is split over that many
+ * shards of one request each, the others are not routed to.
+ *
+ * @see RateLimiterProperties.ShardingConfig
+ */
+public class GlobalShardRouter {
+
+    /** Most shards supported, the service keeps the encoded tier of each */
+    public static final int MAX_SHARDS = 64;
+
+    /** Centralized configuration that defines the global limit */
+    private final RateLimiterProperties properties;
+
+    private final int shards;
+
+    /**
+     * @throws IllegalStateException if sharding is enabled with fewer than 1 or more than {@link #MAX_SHARDS} shards
+     */
+    public GlobalShardRouter(RateLimiterProperties properties) {
+        RateLimiterProperties.ShardingConfig config = properties.getSharding();
+        if (config.isEnabled() && (config.getShards() < 1 || config.getShards() > MAX_SHARDS)) {
+            throw new IllegalStateException("rate-limiter.sharding.shards must be between 1 and " + MAX_SHARDS
+                    + ", was " + config.getShards());
+        }
+        this.properties = properties;
+        this.shards = Math.min(MAX_SHARDS, Math.max(1, config.getShards()));
+    }
+
+    /**
+     * Picks the shard for a user.
+     *
+     * @param userId unique identifier of the user making the request
+     * @return shard index in {@code [0, N)}
+     */
+    public int route(String userId) {
+        int hash = userId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), activeShards());
+    }
+
+    /**
+     * @param shard shard index
+     * @return Redis key of the shard, hash-tagged so that shards spread over cluster slots
+     */
+    public String keyFor(int shard) {
+        return "rate_limit:global:{" + shard + "}";
+    }
+
+    /**
+     * @param shard shard index, as returned by {@link #route(String)}
+     * @return the part of the current global limit enforced by this shard, at least 1; the parts of all
+     * routed shards add up to the global limit
+     */
+    public long limitFor(int shard) {
+        long limit = properties.getGlobal().getRequestLimit();
+        int active = activeShards();
+        return Math.max(1, limit / active + (shard < limit % active ? 1 : 0));
+    }
+
+    /** Shards requests are routed to: all of them, unless the global limit is smaller */
+    private int activeShards() {
+        return (int) Math.max(1, Math.min(shards, properties.getGlobal().getRequestLimit()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streaming detection of keys requested at a multiple of their limit.
+ *
+ * <p>Keys are given as a seeded 64-bit hash of the limiter key, so counting never needs the key itself.
+ * Requests are counted per key in a count-min sketch: {@link #DEPTH} rows of {@code width} counters,
+ * each key hashing to one counter per row, its count estimated as the smallest of them. Every row mixes
+ * the key hash with a random seed of its own through the MurmurHash3 finalizer, so rows collide
+ * independently and nobody outside the node can pick keys that share a counter. Collisions can
+ * only overestimate a count, by at most a few times the requests per period divided by {@code width}.
+ *
+ * <p>Counts cover one period of {@code periodSeconds} and start over in the next one. Every counter
+ * carries the period it counts, and the first request to reach it in a later period restarts it,
+ * so a new period costs no request a pass over the whole sketch.
+ *
+ * <p>A key is a heavy hitter once its requests in the period reach {@code multiple} times what its
+ * limit allows in a period (and at least {@code multiple} requests). The service then blocks it in the
+ * {@link BlockedKeyCache} for {@code blockSeconds}, so its requests are denied without Redis, and
+ * {@link #report(String, long, long) reports} it; the heaviest recent ones are kept in a small heap,
+ * for {@link #heavyHitters(long)}.
+ *
+ * <p>Memory is fixed by {@code width}. Counting is a few atomic increments without locks, so it runs
+ * inline on every decision; only a detection takes the heap's lock.
+ */
+public class HeavyHitterDetector {
+
+    /** Rows of the sketch, each with its own hash of the key */
+    private static final int DEPTH = 4;
+
+    /** Heavy hitters kept for {@link #heavyHitters(long)} */
+    private static final int TRACKED = 16;
+
+    /**
+     * A detected heavy hitter.
+     *
+     * @param key        the limiter key
+     * @param requests   estimated requests in the period it was detected in, when it was detected
+     * @param detectedAt time (ms) of the detection
+     */
+    public record HeavyHitter(String key, long requests, long detectedAt) {}
+
+    private final RateLimiterProperties properties;
+
+    /** Counters, the period they count in the upper 32 bits and the count in the lower ones */
+    private final AtomicLongArray counts;
+
+    /** Random seed of every row */
+    private final long[] rowSeeds = new long[DEPTH];
+
+    private final int mask;
+
+    private final long periodMillis;
+
+    /** Heaviest detections, lightest first */
+    private final PriorityQueue<HeavyHitter> heaviest =
+            new PriorityQueue<>(TRACKED + 1, Comparator.comparingLong(HeavyHitter::requests));
+
+    public HeavyHitterDetector(RateLimiterProperties properties) {
+        RateLimiterProperties.HeavyHittersConfig config = properties.getHeavyHitters();
+        // Round the width up to a power of two so the column is a mask of the hash
+        int width = Integer.highestOneBit(Math.max(1, config.getWidth() - 1)) << 1;
+        this.properties = properties;
+        this.counts = new AtomicLongArray(DEPTH * width);
+        this.mask = width - 1;
+        this.periodMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.getPeriodSeconds()));
+        SecureRandom random = new SecureRandom();
+        for (int row = 0; row < DEPTH; row++) {
+            rowSeeds[row] = random.nextLong();
+        }
+    }
+
+    /**
+     * Counts a request of a key.
+     *
+     * @param keyHash      hash of the limiter key
+     * @param limit        requests the key allows per window
+     * @param windowMillis window (ms) of the limit
+     * @param now          current timestamp in milliseconds
+     * @return the estimated requests of the key in the current period if it is a heavy hitter and should be
+     * blocked, {@code 0} otherwise
+     */
+    public long record(long keyHash, long limit, long windowMillis, long now) {
+        int period = (int) (now / periodMillis);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = (int) mix(keyHash ^ rowSeeds[row]) & mask;
+            estimate = Math.min(estimate, increment(row * (mask + 1) + column, period));
+        }
+
+        long multiple = properties.getHeavyHitters().getMultiple();
+        long allowedPerPeriod = limit * periodMillis / Math.max(1, windowMillis);
+        return estimate < Math.max(multiple, multiple * allowedPerPeriod) ? 0 : estimate;
+    }
+
+    /**
+     * Keeps a detected heavy hitter for {@link #heavyHitters(long)}.
+     *
+     * @param key      limiter key
+     * @param requests estimated requests, as returned by {@link #record(long, long, long, long)}
+     * @param now      current timestamp in milliseconds
+     */
+    public synchronized void report(String key, long requests, long now) {
+        heaviest.removeIf(h -> h.key().equals(key));
+        heaviest.add(new HeavyHitter(key, requests, now));
+        if (heaviest.size() > TRACKED) {
+            heaviest.poll();
+        }
+    }
+
+    /**
+     * Counts a request in a counter, restarting the counter if it still counts an earlier period.
+     *
+     * @return the counter's count in the period, this request included
+     */
+    private long increment(int index, int period) {
+        while (true) {
+            long counter = counts.get(index);
+            // Periods wrap around in 32 bits, compare them by their difference
+            if ((int) ((counter >>> 32) - period) >= 0) {
+                // Current period, or a later one if this request took a while: count it there
+                return counts.incrementAndGet(index) & 0xFFFFFFFFL;
+            }
+            if (counts.compareAndSet(index, counter, (long) period << 32 | 1)) {
+                return 1;
+            }
+        }
+    }
+
+    /** MurmurHash3's 64-bit finalizer */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * @return time (ms) for which a heavy hitter is blocked
+     */
+    public long blockMillis() {
+        return TimeUnit.SECONDS.toMillis(properties.getHeavyHitters().getBlockSeconds());
+    }
+
+    /**
+     * @param now current timestamp in milliseconds
+     * @return the heaviest heavy hitters still blocked, heaviest first
+     */
+    public synchronized List<HeavyHitter> heavyHitters(long now) {
+        List<HeavyHitter> blocked = new ArrayList<>();
+        for (HeavyHitter heavyHitter : heaviest) {
+            if (heavyHitter.detectedAt() + blockMillis() > now) {
+                blocked.add(heavyHitter);
+            }
+        }
+        blocked.sort(Comparator.comparingLong(HeavyHitter::requests).reversed());
+        return blocked;
+    }
+}
@@ -0,0 +1,70 @@
+package com.sanjay.ratelimiter.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A Lua script run by Redis, with the SHA1 digest {@code EVALSHA} refers to it by.
+ *
+ * <p>Scripts are loaded from the classpath once and shared; how they are sent to Redis is up to the
+ * {@link RedisScriptExecutor}.
+ */
+public final class LuaScript {
+
+    /** Multi-tier decision script of {@link RateLimiterService} */
+    public static final LuaScript RATE_LIMITER = fromClasspath("script/RateLimiterScript.lua");
+
+    /** Lease script of {@link GlobalQuotaLease} */
+    public static final LuaScript GLOBAL_LEASE = fromClasspath("script/GlobalLeaseScript.lua");
+
+    private final String source;
+
+    private final String sha1;
+
+    private LuaScript(String source) {
+        this.source = source;
+        this.sha1 = sha1(source);
+    }
+
+    /**
+     * Loads a script from the classpath.
+     *
+     * @param path resource path, e.g. {@code script/RateLimiterScript.lua}
+     * @return the script
+     * @throws IllegalArgumentException if there is no such resource
+     */
+    public static LuaScript fromClasspath(String path) {
+        try (InputStream in = LuaScript.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No script at classpath:" + path);
+            }
+            return new LuaScript(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read script " + path, e);
+        }
+    }
+
+    /** @return the script source */
+    public String source() {
+        return source;
+    }
+
+    /** @return lower-case hex SHA1 digest of the source, as Redis computes it */
+    public String sha1() {
+        return sha1;
+    }
+
+    private static String sha1(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
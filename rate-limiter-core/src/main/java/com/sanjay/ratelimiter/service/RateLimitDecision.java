@@ -0,0 +1,37 @@
+package com.sanjay.ratelimiter.service;
+
+/**
+ * Outcome of a rate limit check, reported for the most restrictive tier.
+ *
+ * <p>For a denied request that is the tier that denied it; for an allowed request it is the tier
+ * with the fewest requests remaining. The values map directly onto the {@code RateLimit-*} and
+ * {@code Retry-After} response headers.
+ *
+ * @param allowed          whether the request may proceed
+ * @param tier             the most restrictive tier, {@code null} if no tier was evaluated
+ * @param limit            request limit of that tier
+ * @param remaining        requests that tier still admits after this one
+ * @param resetMillis      time until that tier's quota is fully restored
+ * @param retryAfterMillis time until a denied request may be retried, {@code 0} when allowed
+ */
+public record RateLimitDecision(
+        boolean allowed,
+        RateLimitTier tier,
+        long limit,
+        long remaining,
+        long resetMillis,
+        long retryAfterMillis) {
+
+    /**
+     * Creates a decision for a request denied by a tier without a script execution,
+     * e.g. from the local caches, where only the time of the next allowed request is known.
+     *
+     * @param tier             the denying tier
+     * @param limit            request limit of that tier
+     * @param retryAfterMillis time until a request may be retried
+     * @return a denied decision with nothing remaining
+     */
+    public static RateLimitDecision denied(RateLimitTier tier, long limit, long retryAfterMillis) {
+        return new RateLimitDecision(false, tier, limit, 0, retryAfterMillis, retryAfterMillis);
+    }
+}
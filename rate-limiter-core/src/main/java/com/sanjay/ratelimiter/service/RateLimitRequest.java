@@ -0,0 +1,19 @@
+package com.sanjay.ratelimiter.service;
+
+/**
+ * A single request to be decided, e.g. one item of a batch.
+ *
+ * @param userId   unique identifier of the user making the request
+ * @param endpoint API endpoint being accessed (e.g., "/login", "/data")
+ * @param cost     number of requests this request counts as, {@code null} for 1
+ */
+public record RateLimitRequest(String userId, String endpoint, Long cost) {
+
+    /**
+     * Returns the cost, defaulting to a single request.
+     */
+    @Override
+    public Long cost() {
+        return cost == null ? 1L : cost;
+    }
+}
@@ -0,0 +1,16 @@
+package com.sanjay.ratelimiter.service;
+
+/**
+ * The limit scopes evaluated for every request, in the order they are passed to the Lua script.
+ */
+public enum RateLimitTier {
+
+    /** System-wide limit shared by all users and endpoints */
+    GLOBAL,
+
+    /** Limit for a single API endpoint across all users */
+    ENDPOINT,
+
+    /** Limit for a single user on a single endpoint */
+    USER
+}
@@ -0,0 +1,952 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Core service that performs rate limiting using Redis and Lua scripting.
+ *
+ * <p>This service enforces three levels of rate limits:
+ * <ul>
+ *   <li><b>Global limit</b> — total requests allowed system-wide across all users.</li>
+ *   <li><b>Per-endpoint limit</b> — requests allowed for a specific API endpoint.</li>
+ *   <li><b>Per-user limit</b> — requests allowed per user per endpoint.</li>
+ * </ul>
+ *
+ * <p>All rate limit logic is performed atomically inside Redis using a single Lua script
+ * that evaluates every tier in one round trip, ensuring consistency even under high concurrency.
+ *
+ * <p>Rate limiter configuration (limits and window durations) is dynamically
+ * loaded from {@link RateLimiterProperties}.
+ *
+ * <p>The service does not depend on a particular Redis client: scripts are run by a
+ * {@link RedisScriptExecutor}. The Spring Boot starter wires it to a {@code StringRedisTemplate}.
+ *
+ * <p>Endpoint and user keys carry the endpoint as Redis Cluster hash tag
+ * ({@code rate_limit:endpoint:{<endpoint>}}, {@code rate_limit:user:{<endpoint>}:<userId>}), so the tiers of a
+ * decision live in one slot and can be checked by one script. The plain {@code rate_limit:global} key is in
+ * another slot; on Redis Cluster the global tier must be leased or sharded, which takes it out of that script.
+ *
+ * <p>Keys and arguments are handed to the executor already encoded as the bytes Redis receives.
+ * Everything that only depends on the endpoint or the configuration (endpoint keys, algorithm,
+ * window and limit arguments) is encoded once and reused, so a decision only encodes its user key,
+ * timestamp and request id.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimiterService {
+
+    /** Endpoints come from requests; beyond this many, unconfigured ones are encoded per request */
+    private static final int MAX_ENDPOINT_KEYS = 4096;
+
+    private static final RateLimitTier[] TIERS = RateLimitTier.values();
+
+    private static final String GLOBAL_KEY = "rate_limit:global";
+
+    private static final byte[] THROTTLE_KEY_PREFIX = RedisBytes.of("rate_limit:throttle:");
+
+    private static final byte[] NO_SUFFIX = new byte[0];
+
+    /** Encoded small numbers, which covers tier counts and nearly all costs */
+    private static final byte[][] SMALL_NUMBERS = new byte[64][];
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = RedisBytes.of(i);
+        }
+    }
+
+    /** Counts decisions and times them and their script executions */
+    private final RateLimitMonitor monitor;
+
+    /** Centralized configuration that defines global, endpoint, and user-specific limits */
+    private final RateLimiterProperties properties;
+
+    /** Runs the Lua script atomically in Redis */
+    private final RedisScriptExecutor scriptExecutor;
+
+    /** This node's lease of global quota, used instead of the global tier when leasing is enabled */
+    private final GlobalQuotaLease globalQuotaLease;
+
+    /** Routes the global tier to a sub-key when global sharding is enabled */
+    private final GlobalShardRouter globalShardRouter;
+
+    /** Local cache of keys known to be full, so repeated requests are denied without Redis */
+    private final BlockedKeyCache blockedKeys;
+
+    /** Finds users requesting at a multiple of their limit, to block them in {@link #blockedKeys} */
+    private final HeavyHitterDetector heavyHitters;
+
+    /**
+     * Random seed of the limiter key hashes the deny cache and heavy hitter detection work with,
+     * so that nobody outside this node can pick user ids whose hashes collide
+     */
+    private final long keySeed = new SecureRandom().nextLong();
+
+    /** Hash state of the throttle key prefix, continued with the caller's key */
+    private final long throttleKeyState = hash(keySeed, "rate_limit:throttle:");
+
+    /** Random id of this node, combined with {@link #requestSequence} into unique request ids */
+    private final String nodeId = Long.toHexString(new SecureRandom().nextLong());
+
+    /** Per-node sequence of decided requests */
+    private final AtomicLong requestSequence = new AtomicLong();
+
+    /** Endpoints seen so far, with their encoded keys and arguments */
+    private final Map<String, EndpointKeys> endpointKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Encoded global tier of every shard, followed by the unsharded one, whose key differs from shard 0's;
+     * replaced as a whole when its configuration changes
+     */
+    private final EncodedTier[] globalTiers = new EncodedTier[GlobalShardRouter.MAX_SHARDS + 1];
+
+    /** Node id and separator, the fixed part of every request id */
+    private final byte[] requestIdPrefix = RedisBytes.of(nodeId + ":");
+
+    /**
+     * Returns the Lua script that performs rate limiting logic in Redis.
+     *
+     * <p>The script is loaded once and shared by all executions.
+     * It receives the keys of all tiers at once, each with the
+     * {@link com.sanjay.ratelimiter.util.RateLimitAlgorithm} configured for it, and runs in two phases:
+     * <ul>
+     *   <li>For every tier, check whether it has room without writing anything</li>
+     *   <li>Only if every tier has room, record the request on all of them</li>
+     * </ul>
+     *
+     * @return the multi-tier script
+     */
+    public LuaScript getScript() {
+        return LuaScript.RATE_LIMITER;
+    }
+
+    /**
+     * Checks if a request from a user to a specific endpoint is allowed.
+     *
+     * @param userId   unique identifier of the user making the request
+     * @param endpoint API endpoint being accessed (e.g., "/login", "/data")
+     * @return {@code true} if the request is allowed, {@code false} otherwise
+     * @see #decide(String, String, long)
+     */
+    public boolean isAllowed(String userId, String endpoint) {
+        return decide(userId, endpoint, 1).allowed();
+    }
+
+    /**
+     * Decides whether a request from a user to a specific endpoint is allowed.
+     *
+     * <p>This method evaluates three rate-limit tiers:
+     * <ol>
+     *   <li><b>Global Limit:</b> Ensures total system requests are below threshold.</li>
+     *   <li><b>Endpoint Limit:</b> Ensures this specific API is not overloaded.</li>
+     *   <li><b>User Limit:</b> Ensures individual users stay within fair usage bounds.</li>
+     * </ol>
+     *
+     * <p>All tiers are checked by a single script execution, so a decision costs one
+     * Redis round trip. The request is allowed only if all three checks pass, and it is
+     * recorded on all tiers or on none of them: a request denied by the user tier does not
+     * consume global or endpoint quota.
+     *
+     * <p>When global quota leasing is enabled, the global tier is checked against this node's
+     * {@link GlobalQuotaLease} instead, and only the endpoint and user tiers go to Redis.
+     * When global sharding is enabled, the global tier uses the sub-key and share of the limit
+     * picked by {@link GlobalShardRouter}. That sub-key is in another Redis Cluster slot than the
+     * endpoint and user keys, so it is checked by a second script execution once both allowed the
+     * request. If the global tier then denies it, a third execution gives back what the request took
+     * from the endpoint and user tiers, so it is still recorded on all tiers or on none.
+     *
+     * <p>When a tier denies a request, its key is remembered in the {@link BlockedKeyCache} until the
+     * time the script reported it will allow requests again; repeats are denied without Redis.
+     * When heavy-hitter detection is enabled, a user requesting at a multiple of its limit is blocked
+     * there as well, for a fixed time (see {@link HeavyHitterDetector}).
+     *
+     * <p>A request without a user, e.g. from a proxy that cannot identify one, is decided by the global and
+     * endpoint tiers only, rather than by a user tier shared by everyone unidentified.
+     *
+     * @param userId   unique identifier of the user making the request, {@code null} if unknown
+     * @param endpoint API endpoint being accessed (e.g., "/login", "/data")
+     * @param cost     number of requests this request counts as, at least 1
+     * @return the decision, with limit, remaining, reset and retry-after of the most restrictive tier
+     * @throws IllegalArgumentException if the cost is below 1
+     */
+    public RateLimitDecision decide(String userId, String endpoint, long cost) {
+        Evaluation evaluation = prepare(userId, endpoint, cost);
+        try {
+            while (evaluation.decision == null) {
+                List<?> result = scriptExecutor.execute(getScript(), evaluation.keyCount, evaluation.keysAndArgs);
+                complete(evaluation, result);
+            }
+        } catch (RuntimeException e) {
+            abandon(evaluation);
+            throw e;
+        }
+        return evaluation.decision;
+    }
+
+    /**
+     * Returns the largest cost a request to an endpoint may have: the configured {@code max-cost}, and
+     * no more than the global and endpoint limits, since a larger cost would be denied forever.
+     * Front ends reject requests above it as invalid.
+     *
+     * @param endpoint API endpoint being accessed
+     * @return the largest valid cost, at least 1
+     */
+    public long maxCost(String endpoint) {
+        long limit = Math.min(properties.getGlobal().getRequestLimit(), properties.getConfigFor(endpoint).getRequestLimit());
+        return Math.max(1, Math.min(properties.getMaxCost(), limit));
+    }
+
+    /**
+     * Returns the largest cost of a {@link #throttle(String, long, long, long) throttle} against a limit:
+     * the configured {@code max-cost}, and no more than the limit itself.
+     *
+     * @param limit burst size of the throttle
+     * @return the largest valid cost, at least 1
+     */
+    public long maxThrottleCost(long limit) {
+        return Math.max(1, Math.min(properties.getMaxCost(), limit));
+    }
+
+    /**
+     * Decides a batch of requests, in order.
+     *
+     * <p>Every request is decided exactly as by {@link #decide(String, String, long)}, but all script
+     * executions are sent in one Redis pipeline, so the whole batch costs a single network round trip
+     * (two with global sharding, whose global tier is checked by a second execution, and a third for
+     * requests the global shard denies, which are given back to their endpoint and user tiers).
+     * Each request is still atomic on its own; requests of a batch see each other's effects in order.
+     *
+     * @param requests the requests to decide
+     * @return one decision per request, in the same order
+     * @throws IllegalArgumentException if the cost of a request is below 1, before any is decided
+     */
+    public List<RateLimitDecision> decideAll(List<RateLimitRequest> requests) {
+        for (RateLimitRequest request : requests) {
+            checkCost(request.cost());
+        }
+        List<Evaluation> evaluations = new ArrayList<>(requests.size());
+        List<Evaluation> pending = new ArrayList<>(requests.size());
+        for (RateLimitRequest request : requests) {
+            Evaluation evaluation = prepare(request.userId(), request.endpoint(), request.cost());
+            evaluations.add(evaluation);
+            if (evaluation.decision == null) {
+                pending.add(evaluation);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            int[] keyCounts = new int[pending.size()];
+            List<byte[][]> keysAndArgs = new ArrayList<>(pending.size());
+            long scriptStartNanos = System.nanoTime();
+            for (int i = 0; i < pending.size(); i++) {
+                keyCounts[i] = pending.get(i).keyCount;
+                keysAndArgs.add(pending.get(i).keysAndArgs);
+                // All executions go out in one pipeline, the earlier ones do not wait for later ones to be prepared
+                pending.get(i).scriptStartNanos = scriptStartNanos;
+            }
+            List<List<?>> results;
+            try {
+                results = scriptExecutor.executeAll(getScript(), keyCounts, keysAndArgs);
+            } catch (RuntimeException e) {
+                pending.forEach(this::abandon);
+                throw e;
+            }
+            List<Evaluation> next = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                if (complete(pending.get(i), results.get(i)) == null) {
+                    next.add(pending.get(i));
+                }
+            }
+            pending = next;
+        }
+
+        List<RateLimitDecision> decisions = new ArrayList<>(evaluations.size());
+        for (Evaluation evaluation : evaluations) {
+            decisions.add(evaluation.decision);
+        }
+        return decisions;
+    }
+
+    /**
+     * Runs the local part of a decision: deny cache, global lease and script keys and arguments.
+     *
+     * <p>Together with {@link #complete(Evaluation, List)} this lets a caller run the script itself,
+     * e.g. on a non-blocking client, and still share everything else with {@link #decide(String, String, long)}.
+     *
+     * @return the evaluation, already carrying a decision if no script execution is needed
+     * @throws IllegalArgumentException if the cost is below 1
+     */
+    public Evaluation prepare(String userId, String endpoint, long cost) {
+        checkCost(cost);
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis(); // current timestamp in milliseconds
+
+        var globalConfig = properties.getGlobal();
+        var endPointConfig = properties.getConfigFor(endpoint);
+        EndpointKeys endpointKeys = endpointKeys(endpoint);
+
+        // With leasing, the global tier is decided locally and skipped in the script;
+        // a global shard is in another cluster slot and checked by a script execution of its own
+        boolean leased = properties.getLease().isEnabled();
+        boolean sharded = !leased && properties.getSharding().isEnabled();
+        int shard = sharded ? globalShardRouter.route(userId != null ? userId : endpoint) : 0;
+        long globalLimit = sharded ? globalShardRouter.limitFor(shard) : globalConfig.getRequestLimit();
+
+        Evaluation evaluation = new Evaluation(userId, endpoint, cost, now, startNanos, leased,
+                leased || sharded ? RateLimitTier.ENDPOINT : RateLimitTier.GLOBAL);
+        EncodedTier globalTier = leased ? null : globalTier(globalConfig, globalLimit, shard, sharded);
+
+        // Limiter keys are only hashed locally, the user's key string is never built: 0 for skipped tiers
+        long endpointLimit = endPointConfig.getRequestLimit();
+        evaluation.globalKeyHash = globalTier != null ? globalTier.keyHash : 0;
+        evaluation.endpointKeyHash = endpointKeys.endpointKeyHash;
+        evaluation.userKeyHash = userId != null ? finish(hash(endpointKeys.userKeyState, userId)) : 0;
+        evaluation.globalLimit = globalLimit;
+        evaluation.endpointLimit = endpointLimit;
+        evaluation.userLimit = endpointLimit;
+
+        // A key known to be full until later, or a blocked heavy hitter, denies the request without touching Redis
+        boolean detectHeavyHitters = properties.getHeavyHitters().isEnabled();
+        if (properties.getDenyCache().isEnabled() || detectHeavyHitters) {
+            RateLimitDecision blocked = checkBlocked(evaluation, now);
+            if (blocked != null) {
+                return decided(evaluation, blocked);
+            }
+        }
+
+        // A user requesting at a multiple of its limit is blocked for a while, its repeats stay off Redis
+        if (detectHeavyHitters && userId != null) {
+            long requests = heavyHitters.record(evaluation.userKeyHash, endpointLimit, windowMillis(endPointConfig), now);
+            if (requests > 0) {
+                long blockMillis = heavyHitters.blockMillis();
+                blockedKeys.block(evaluation.userKeyHash, now + blockMillis);
+                heavyHitters.report(endpointKeys.userKeyPrefix + userId, requests, now);
+                log.warn("User {} is a heavy hitter of {}, blocked locally for {}ms", userId, endpoint, blockMillis);
+                return decided(evaluation, RateLimitDecision.denied(RateLimitTier.USER, endpointLimit, blockMillis));
+            }
+        }
+
+        if (leased) {
+            evaluation.leaseGeneration = globalQuotaLease.tryAcquire(cost);
+            if (evaluation.leaseGeneration < 0) {
+                long retryAfter = globalQuotaLease.retryAfterMillis(cost);
+                log.warn("Global limit reached! Retry after {}ms", retryAfter);
+                return decided(evaluation, RateLimitDecision.denied(RateLimitTier.GLOBAL, globalLimit, retryAfter));
+            }
+        }
+
+        if (sharded) {
+            evaluation.globalTier = globalTier;
+            globalTier = null;
+        }
+        EncodedTier endpointTier = endpointKeys.tier(endPointConfig);
+        int userTiers = userId != null ? 1 : 0;
+        int tierCount = TIERS.length - 1 + userTiers - evaluation.firstTier.ordinal();
+        int keyCount = (globalTier == null ? 0 : globalTier.algorithm.keyCount())
+                + (1 + userTiers) * endpointTier.algorithm.keyCount();
+
+        byte[][] keysAndArgs = new byte[keyCount + 4 + 3 * tierCount][];
+        int key = 0;
+        int arg = keyCount;
+        keysAndArgs[arg++] = RedisBytes.of(now);
+        keysAndArgs[arg++] = encode(tierCount);
+        keysAndArgs[arg++] = nextRequestId();
+        keysAndArgs[arg++] = encode(cost);
+        if (globalTier != null) {
+            key += globalTier.write(keysAndArgs, key, arg, now);
+            arg += 3;
+        }
+        key += endpointTier.write(keysAndArgs, key, arg, now);
+        arg += 3;
+        if (userId != null) {
+            endpointTier.writeUser(keysAndArgs, key, arg, userId, now);
+        }
+        evaluation.keyCount = keyCount;
+        evaluation.keysAndArgs = keysAndArgs;
+        evaluation.scriptStartNanos = System.nanoTime();
+        return evaluation;
+    }
+
+    /**
+     * Gives back what an evaluation took locally, once its script execution failed and it will not be
+     * decided: the global tokens taken from the lease. Does nothing for a decided evaluation, and
+     * nothing the second time.
+     *
+     * @param evaluation the evaluation whose script execution failed
+     */
+    public void abandon(Evaluation evaluation) {
+        if (evaluation.decision == null && evaluation.leased && evaluation.leaseGeneration >= 0) {
+            globalQuotaLease.release(evaluation.cost, evaluation.leaseGeneration);
+            evaluation.leaseGeneration = -1;
+        }
+    }
+
+    /**
+     * Decides a request against an ad-hoc limit given by the caller instead of the configured tiers,
+     * in the style of redis-cell's {@code CL.THROTTLE}.
+     *
+     * <p>The key is limited by the GCRA engine: {@code limit} requests may arrive back to back, and the
+     * quota refills at {@code limit} requests per {@code windowMillis}. The key lives under
+     * {@code rate_limit:throttle:} and is reported as the user tier; global and endpoint limits do not apply.
+     *
+     * @param key          caller-chosen key to limit
+     * @param limit        burst size, at least 1
+     * @param windowMillis time (ms) in which the full burst is restored, at least 1
+     * @param cost         number of requests this request counts as, at least 1
+     * @return the decision
+     * @throws IllegalArgumentException if the cost is below 1
+     */
+    public RateLimitDecision throttle(String key, long limit, long windowMillis, long cost) {
+        Evaluation evaluation = prepareThrottle(key, limit, windowMillis, cost);
+        if (evaluation.decision != null) {
+            return evaluation.decision;
+        }
+        List<?> result = scriptExecutor.execute(getScript(), evaluation.keyCount, evaluation.keysAndArgs);
+        return complete(evaluation, result);
+    }
+
+    /**
+     * Runs the local part of a throttle: deny cache and script keys and arguments of its single tier.
+     * Denials are cached per key, burst and period, so a throttle of the key with other values is decided by the script.
+     *
+     * @return the evaluation, already carrying a decision if no script execution is needed
+     * @throws IllegalArgumentException if the cost is below 1
+     */
+    public Evaluation prepareThrottle(String key, long limit, long windowMillis, long cost) {
+        checkCost(cost);
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        // The same key may be throttled with another burst or period, whose denials must not be mixed up
+        long keyHash = finish(hash(hash(hash(throttleKeyState, key), limit), windowMillis));
+
+        Evaluation evaluation = new Evaluation(key, "THROTTLE", cost, now, startNanos, false, RateLimitTier.USER);
+        evaluation.userKeyHash = keyHash;
+        evaluation.userLimit = limit;
+
+        if (properties.getDenyCache().isEnabled()) {
+            RateLimitDecision blocked = checkBlocked(evaluation, now);
+            if (blocked != null) {
+                return decided(evaluation, blocked);
+            }
+        }
+
+        EncodedTier tier = new EncodedTier(null, RateLimitAlgorithm.GCRA, windowMillis, limit, 0,
+                RedisBytes.concat(THROTTLE_KEY_PREFIX, key, NO_SUFFIX), keyHash, null);
+        prepareSingleTier(evaluation, tier, RedisBytes.of(now), nextRequestId(), encode(cost));
+        return evaluation;
+    }
+
+    /**
+     * Rejects costs below 1. The script reads a negative cost as the refund of a denied request, which
+     * only {@link #complete(Evaluation, List)} may send, and a cost of 0 would record nothing.
+     */
+    private static void checkCost(long cost) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("cost must be at least 1, not " + cost);
+        }
+    }
+
+    /**
+     * Sets the script keys and arguments of an evaluation of a single tier.
+     */
+    private static void prepareSingleTier(Evaluation evaluation, EncodedTier tier, byte[] now, byte[] requestId,
+                                          byte[] cost) {
+        int keyCount = tier.algorithm.keyCount();
+        byte[][] keysAndArgs = new byte[keyCount + 7][];
+        keysAndArgs[keyCount] = now;
+        keysAndArgs[keyCount + 1] = encode(1);
+        keysAndArgs[keyCount + 2] = requestId;
+        keysAndArgs[keyCount + 3] = cost;
+        tier.write(keysAndArgs, 0, keyCount + 4, evaluation.now);
+        evaluation.keyCount = keyCount;
+        evaluation.keysAndArgs = keysAndArgs;
+        evaluation.scriptStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Turns the script result of an evaluation into its decision and applies the local side effects.
+     *
+     * <p>With global sharding, a request the endpoint and user tiers allowed still needs its global shard
+     * checked, and a request the shard denies needs to be given back to the endpoint and user tiers:
+     * the evaluation then holds the keys and arguments of that execution, and the caller runs the script
+     * again and completes the evaluation with its result.
+     *
+     * @return the decision, or {@code null} if the script has to run once more
+     */
+    public RateLimitDecision complete(Evaluation evaluation, List<?> result) {
+        long endNanos = System.nanoTime();
+        RateLimitDecision partial = evaluation.partial;
+        if (partial != null && evaluation.globalTier == null) {
+            // The refund of the endpoint and user tiers ran, its result carries nothing
+            return finish(evaluation, partial, endNanos);
+        }
+        RateLimitDecision decision = toDecision(result, partial != null ? RateLimitTier.GLOBAL : evaluation.firstTier);
+        monitor.recordScript(decision, endNanos - evaluation.scriptStartNanos);
+
+        if (partial == null && decision.allowed() && evaluation.globalTier != null) {
+            // Same timestamp, request id and cost as the first execution
+            evaluation.partial = decision;
+            evaluation.recordedKeyCount = evaluation.keyCount;
+            evaluation.recordedKeysAndArgs = evaluation.keysAndArgs;
+            byte[][] args = evaluation.keysAndArgs;
+            int arg = evaluation.keyCount;
+            prepareSingleTier(evaluation, evaluation.globalTier, args[arg], args[arg + 2], args[arg + 3]);
+            return null;
+        }
+        if (partial != null && !decision.allowed()) {
+            // The first execution again, with the negative cost that makes the script take the request back
+            evaluation.partial = decision;
+            evaluation.globalTier = null;
+            evaluation.keyCount = evaluation.recordedKeyCount;
+            evaluation.keysAndArgs = evaluation.recordedKeysAndArgs.clone();
+            evaluation.keysAndArgs[evaluation.keyCount + 3] = RedisBytes.of(-evaluation.cost);
+            evaluation.scriptStartNanos = System.nanoTime();
+            return null;
+        }
+        if (partial != null && decision.allowed() && partial.remaining() < decision.remaining()) {
+            // Report the most restrictive tier, as a single execution does
+            decision = partial;
+        }
+        return finish(evaluation, decision, endNanos);
+    }
+
+    /**
+     * Sets the decision of an evaluation whose script executions are done, and applies the local side effects.
+     */
+    private RateLimitDecision finish(Evaluation evaluation, RateLimitDecision decision, long endNanos) {
+        evaluation.decision = decision;
+        record(evaluation, decision, endNanos);
+
+        if (decision.allowed()) {
+            return decision;
+        }
+
+        // Denied: the global tokens taken from the lease were not used
+        if (evaluation.leased) {
+            globalQuotaLease.release(evaluation.cost, evaluation.leaseGeneration);
+        }
+        if (decision.tier() == null) {
+            return decision;
+        }
+
+        // Remember when the denying key allows requests again, repeats are denied locally until then.
+        // Only single requests are cached: a larger cost waits longer than a single request would have to
+        long retryAfter = decision.retryAfterMillis();
+        if (properties.getDenyCache().isEnabled() && retryAfter > 0 && evaluation.cost == 1) {
+            blockedKeys.block(evaluation.keyHash(decision.tier()), evaluation.now + retryAfter);
+        }
+
+        // Logging decisions for observability and debugging. A throttle denying a caller's key is its
+        // normal answer, often to a polling client, and only logged at debug
+        if (evaluation.firstTier == RateLimitTier.USER) {
+            log.debug("Throttle {} exceeded. Retry after {}ms", evaluation.userId, retryAfter);
+            return decision;
+        }
+        switch (decision.tier()) {
+            case GLOBAL -> log.warn("Global limit reached! Retry after {}ms", retryAfter);
+            case ENDPOINT -> log.warn("Endpoint limit reached: {}. Retry after {}ms", evaluation.endpoint, retryAfter);
+            case USER -> log.warn("User {} exceeded limit for {}. Retry after {}ms",
+                    evaluation.userId, evaluation.endpoint, retryAfter);
+        }
+        return decision;
+    }
+
+    /**
+     * Sets the decision of an evaluation decided without the script, and records it.
+     */
+    private Evaluation decided(Evaluation evaluation, RateLimitDecision decision) {
+        evaluation.decision = decision;
+        record(evaluation, decision, System.nanoTime());
+        return evaluation;
+    }
+
+    /**
+     * Records a decision, and for a request to an endpoint (not a throttle) its endpoint and user, if any.
+     */
+    private void record(Evaluation evaluation, RateLimitDecision decision, long endNanos) {
+        monitor.recordDecision(decision, endNanos - evaluation.startNanos);
+        if (evaluation.firstTier != RateLimitTier.USER) {
+            monitor.recordEndpoint(evaluation.endpoint, evaluation.userId, decision, evaluation.now);
+        }
+    }
+
+    /**
+     * Converts the script result into a decision.
+     *
+     * <p>The Lua script returns {@code {allowed, tier, limit, remaining, reset, retryAfter}}, where tier is
+     * the 1-based tier (counted from {@code firstTier}) that denied the request, or the most restrictive
+     * one when it was allowed, and times are in milliseconds.
+     *
+     * @param result    raw script result
+     * @param firstTier tier passed to the script first
+     * @return the decision; a missing or malformed result is treated as denied
+     */
+    private RateLimitDecision toDecision(List<?> result, RateLimitTier firstTier) {
+        if (result == null || result.size() < 6) {
+            return new RateLimitDecision(false, null, 0, 0, 0, 0);
+        }
+        return new RateLimitDecision(
+                ((Long) result.get(0)) == 1L,
+                TIERS[firstTier.ordinal() + ((Long) result.get(1)).intValue() - 1],
+                (Long) result.get(2),
+                (Long) result.get(3),
+                (Long) result.get(4),
+                (Long) result.get(5));
+    }
+
+    /**
+     * Checks the limiter keys of a request against the local cache of blocked keys.
+     *
+     * @param evaluation the request, with the hashes and limits of its limiter keys
+     * @param now        current timestamp in milliseconds
+     * @return a denied decision if any of the keys is still blocked, {@code null} otherwise
+     */
+    private RateLimitDecision checkBlocked(Evaluation evaluation, long now) {
+        for (RateLimitTier tier : TIERS) {
+            long blockedUntil = blockedKeys.blockedUntil(evaluation.keyHash(tier), now);
+            if (blockedUntil > now) {
+                log.debug("{} tier of {} is blocked, denied without Redis", tier, evaluation.userId);
+                return RateLimitDecision.denied(tier, evaluation.limit(tier), blockedUntil - now);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the endpoint's encoded keys, interning them unless too many endpoints were seen already.
+     */
+    private EndpointKeys endpointKeys(String endpoint) {
+        EndpointKeys keys = endpointKeys.get(endpoint);
+        if (keys != null) {
+            return keys;
+        }
+        keys = new EndpointKeys(endpoint, keySeed);
+        if (endpointKeys.size() < MAX_ENDPOINT_KEYS || properties.getEndpoints().containsKey(endpoint)) {
+            EndpointKeys existing = endpointKeys.putIfAbsent(endpoint, keys);
+            return existing != null ? existing : keys;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the encoded global tier of a shard, re-encoding it when its configuration or limit changed.
+     */
+    private EncodedTier globalTier(RateLimiterProperties.RateLimitConfig config, long limit, int shard, boolean sharded) {
+        int slot = sharded ? shard : GlobalShardRouter.MAX_SHARDS;
+        EncodedTier tier = globalTiers[slot];
+        if (tier == null || !tier.matches(config, limit, shard)) {
+            String key = sharded ? globalShardRouter.keyFor(shard) : GLOBAL_KEY;
+            tier = new EncodedTier(config, config.getAlgorithm(), windowMillis(config), limit, shard, RedisBytes.of(key),
+                    finish(hash(keySeed, key)), null);
+            globalTiers[slot] = tier;
+        }
+        return tier;
+    }
+
+    private static long windowMillis(RateLimiterProperties.RateLimitConfig config) {
+        // Windows are configured in seconds, the script works in milliseconds
+        return TimeUnit.SECONDS.toMillis(config.getWindowDuration());
+    }
+
+    /**
+     * Continues an FNV-1a hash with the characters of a string.
+     *
+     * @param state a seed, or the state after the preceding part of the key
+     */
+    private static long hash(long state, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            state = (state ^ chars.charAt(i)) * 0x100000001b3L;
+        }
+        return state;
+    }
+
+    /**
+     * Continues an FNV-1a hash with the eight bytes of a number.
+     *
+     * @param state the state after the preceding part of the key
+     */
+    private static long hash(long state, long number) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            state = (state ^ (number >>> shift & 0xff)) * 0x100000001b3L;
+        }
+        return state;
+    }
+
+    /**
+     * Finishes a key hash with the MurmurHash3 finalizer, so every bit of the state affects every bit of the hash.
+     *
+     * @return the hash, never {@code 0}, which stands for a skipped tier
+     */
+    private static long finish(long state) {
+        state ^= state >>> 33;
+        state *= 0xff51afd7ed558ccdL;
+        state ^= state >>> 33;
+        state *= 0xc4ceb9fe1a85ec53L;
+        state ^= state >>> 33;
+        return state != 0 ? state : 1;
+    }
+
+    private static byte[] encode(long number) {
+        return number >= 0 && number < SMALL_NUMBERS.length ? SMALL_NUMBERS[(int) number] : RedisBytes.of(number);
+    }
+
+    /**
+     * Generates an id for the request being decided, unique across all nodes sharing the Redis instance.
+     *
+     * <p>The sliding log uses it to build a distinct sorted set member for every admitted request,
+     * so requests arriving in the same millisecond are all counted.
+     *
+     * @return node id and a per-node sequence number
+     */
+    private byte[] nextRequestId() {
+        return RedisBytes.concat(requestIdPrefix, NO_SUFFIX, requestSequence.incrementAndGet());
+    }
+
+    /**
+     * Script keys and arguments of one tier, encoded once for a configuration and limit.
+     *
+     * <p>Configurations are changed in place by the admin API, so a tier remembers the values it was
+     * encoded from and is re-encoded when they no longer match. Tiers are immutable and published
+     * without synchronization; a thread seeing an older one merely encodes it again.
+     */
+    private static final class EncodedTier {
+        final RateLimiterProperties.RateLimitConfig config;
+        final RateLimitAlgorithm algorithm;
+        final long windowMillis;
+        final long limit;
+        final int shard;
+
+        /** Limiter key of the tier, without the algorithm's suffix */
+        final byte[] key;
+
+        /** Seeded hash of {@link #key}, for the deny cache */
+        final long keyHash;
+
+        /** Script key of {@link #key}, {@code null} when it depends on the time */
+        final byte[] scriptKey;
+
+        /** For the endpoint tier, what precedes the user id in the user tier's limiter key */
+        final byte[] userKeyPrefix;
+
+        /** What follows a limiter key in its script key, {@code null} when it depends on the time */
+        final byte[] scriptKeySuffix;
+
+        final byte[] encodedWindow;
+        final byte[] encodedLimit;
+
+        EncodedTier(RateLimiterProperties.RateLimitConfig config, RateLimitAlgorithm algorithm, long windowMillis,
+                    long limit, int shard, byte[] key, long keyHash, byte[] userKeyPrefix) {
+            this.config = config;
+            this.algorithm = algorithm;
+            this.windowMillis = windowMillis;
+            this.limit = limit;
+            this.shard = shard;
+            this.key = key;
+            this.keyHash = keyHash;
+            this.scriptKey = scriptKey(key);
+            this.userKeyPrefix = userKeyPrefix;
+            this.scriptKeySuffix = scriptKey(NO_SUFFIX);
+            this.encodedWindow = RedisBytes.of(windowMillis);
+            this.encodedLimit = RedisBytes.of(limit);
+        }
+
+        /** Appends the algorithm's suffix */
+        private byte[] scriptKey(byte[] key) {
+            if (algorithm.keyCount() != 1) {
+                return null;
+            }
+            byte[][] scriptKeys = new byte[1][];
+            algorithm.writeKeys(scriptKeys, 0, key, 0, windowMillis);
+            return scriptKeys[0];
+        }
+
+        boolean matches(RateLimiterProperties.RateLimitConfig config, long limit, int shard) {
+            return this.config == config && this.limit == limit && this.shard == shard
+                    && algorithm == config.getAlgorithm() && windowMillis == windowMillis(config);
+        }
+
+        /**
+         * Writes the tier's script keys and arguments.
+         *
+         * @return number of keys written
+         */
+        int write(byte[][] keysAndArgs, int keyIndex, int argIndex, long now) {
+            int written = 1;
+            if (scriptKey != null) {
+                keysAndArgs[keyIndex] = scriptKey;
+            } else {
+                written = algorithm.writeKeys(keysAndArgs, keyIndex, key, now, windowMillis);
+            }
+            writeArgs(keysAndArgs, argIndex);
+            return written;
+        }
+
+        /**
+         * Writes the script keys of a user of this endpoint tier and the tier's arguments,
+         * encoding the user key straight into its script key.
+         *
+         * @return number of keys written
+         */
+        int writeUser(byte[][] keysAndArgs, int keyIndex, int argIndex, String userId, long now) {
+            int written = 1;
+            if (scriptKeySuffix != null) {
+                keysAndArgs[keyIndex] = RedisBytes.concat(userKeyPrefix, userId, scriptKeySuffix);
+            } else {
+                byte[] userKey = RedisBytes.concat(userKeyPrefix, userId, NO_SUFFIX);
+                written = algorithm.writeKeys(keysAndArgs, keyIndex, userKey, now, windowMillis);
+            }
+            writeArgs(keysAndArgs, argIndex);
+            return written;
+        }
+
+        private void writeArgs(byte[][] keysAndArgs, int argIndex) {
+            keysAndArgs[argIndex] = algorithm.encodedName();
+            keysAndArgs[argIndex + 1] = encodedWindow;
+            keysAndArgs[argIndex + 2] = encodedLimit;
+        }
+    }
+
+    /**
+     * An endpoint's limiter keys, encoded once, and its encoded tier.
+     *
+     * <p>The endpoint is the hash tag of both its key and its users' keys, so they share a Redis Cluster slot.
+     */
+    private static final class EndpointKeys {
+        final String endpointKey;
+        final byte[] encodedEndpointKey;
+        final long endpointKeyHash;
+
+        /** Limiter key of a user of this endpoint, up to the user id, and its hash state */
+        final String userKeyPrefix;
+        final byte[] encodedUserKeyPrefix;
+        final long userKeyState;
+
+        /** Endpoint and user tier share configuration and limit, and so their arguments */
+        EncodedTier tier;
+
+        EndpointKeys(String endpoint, long keySeed) {
+            this.endpointKey = "rate_limit:endpoint:{" + endpoint + "}";
+            this.encodedEndpointKey = RedisBytes.of(endpointKey);
+            this.endpointKeyHash = finish(hash(keySeed, endpointKey));
+            this.userKeyPrefix = "rate_limit:user:{" + endpoint + "}:";
+            this.encodedUserKeyPrefix = RedisBytes.of(userKeyPrefix);
+            this.userKeyState = hash(keySeed, userKeyPrefix);
+        }
+
+        EncodedTier tier(RateLimiterProperties.RateLimitConfig config) {
+            EncodedTier current = tier;
+            if (current == null || !current.matches(config, config.getRequestLimit(), 0)) {
+                current = new EncodedTier(config, config.getAlgorithm(), windowMillis(config),
+                        config.getRequestLimit(), 0, encodedEndpointKey, endpointKeyHash, encodedUserKeyPrefix);
+                tier = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * State of one decision between its local part and its script execution.
+     */
+    public static final class Evaluation {
+        final String userId;
+        final String endpoint;
+        final long cost;
+        final long now;
+        final boolean leased;
+
+        /** Generation of the lease the global tokens were taken from, when leased */
+        long leaseGeneration;
+
+        /** {@link System#nanoTime()} when the decision started, and when its script was handed to the executor */
+        final long startNanos;
+        long scriptStartNanos;
+
+        /** Tier passed to the script first; the global tier is skipped when leased or sharded, a throttle only has the user tier */
+        final RateLimitTier firstTier;
+
+        /** Seeded hashes of the limiter keys, {@code 0} for a tier not checked here, e.g. the global one when leased */
+        long globalKeyHash;
+        long endpointKeyHash;
+        long userKeyHash;
+
+        /** Request limits of the tiers */
+        long globalLimit;
+        long endpointLimit;
+        long userLimit;
+
+        /** Number of script keys, and the encoded keys followed by the arguments, of the next script execution */
+        int keyCount;
+        byte[][] keysAndArgs;
+
+        /** With global sharding, the global shard's tier, checked after the endpoint and user tiers allowed */
+        EncodedTier globalTier;
+
+        /**
+         * Decision of the endpoint and user tiers while the global shard is checked, then the shard's denial
+         * while the endpoint and user tiers give the request back, with {@link #globalTier} cleared
+         */
+        RateLimitDecision partial;
+
+        /** Script keys and arguments the endpoint and user tiers recorded the request with, for a refund */
+        int recordedKeyCount;
+        byte[][] recordedKeysAndArgs;
+
+        /** The decision, once known */
+        RateLimitDecision decision;
+
+        Evaluation(String userId, String endpoint, long cost, long now, long startNanos, boolean leased,
+                   RateLimitTier firstTier) {
+            this.userId = userId;
+            this.endpoint = endpoint;
+            this.cost = cost;
+            this.now = now;
+            this.startNanos = startNanos;
+            this.leased = leased;
+            this.firstTier = firstTier;
+        }
+
+        long keyHash(RateLimitTier tier) {
+            return switch (tier) {
+                case GLOBAL -> globalKeyHash;
+                case ENDPOINT -> endpointKeyHash;
+                case USER -> userKeyHash;
+            };
+        }
+
+        long limit(RateLimitTier tier) {
+            return switch (tier) {
+                case GLOBAL -> globalLimit;
+                case ENDPOINT -> endpointLimit;
+                case USER -> userLimit;
+            };
+        }
+
+        /** @return the decision, {@code null} while the script still has to run */
+        public RateLimitDecision decision() {
+            return decision;
+        }
+
+        /** @return number of script KEYS at the start of {@link #keysAndArgs()} */
+        public int keyCount() {
+            return keyCount;
+        }
+
+        /** @return the script's KEYS followed by its ARGV, encoded; must not be modified */
+        public byte[][] keysAndArgs() {
+            return keysAndArgs;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.sanjay.ratelimiter.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the limiter scripts against Redis; the only thing the core needs from a Redis client.
+ *
+ * <p>Implementations adapt whatever client the application already uses. They should prefer
+ * {@code EVALSHA} with {@link LuaScript#sha1()} and fall back to loading the script when Redis
+ * answers {@code NOSCRIPT}, as it does after a restart or failover.
+ *
+ * <p>Keys and arguments come either as strings or already encoded as the bytes sent to Redis, which
+ * is how {@link RateLimiterService} passes them on its hot path. The encoded variants decode to
+ * strings by default; executors on a client that accepts raw bytes should override them.
+ *
+ * <p>Script results are arrays of integers, returned as a list of {@link Long}.
+ */
+public interface RedisScriptExecutor {
+
+    /**
+     * Runs a script once.
+     *
+     * @param script the script
+     * @param keys   the script's KEYS
+     * @param args   the script's ARGV
+     * @return the script result, {@code null} if there was none
+     */
+    List<?> execute(LuaScript script, List<String> keys, List<String> args);
+
+    /**
+     * Runs a script several times, ideally in one pipeline so that all executions cost a single
+     * round trip. Every execution is atomic on its own and they run in order.
+     *
+     * <p>The default runs them one after another.
+     *
+     * @param script the script
+     * @param keys   the KEYS of every execution
+     * @param args   the ARGV of every execution, in the same order
+     * @return the results, in the same order
+     */
+    default List<List<?>> executeAll(LuaScript script, List<List<String>> keys, List<List<String>> args) {
+        List<List<?>> results = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(execute(script, keys.get(i), args.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Runs a script once, with keys and arguments encoded as the bytes sent to Redis.
+     *
+     * @param script      the script
+     * @param keyCount    number of keys, which come first
+     * @param keysAndArgs the script's KEYS followed by its ARGV
+     * @return the script result, {@code null} if there was none
+     */
+    default List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+        List<String> keys = new ArrayList<>(keyCount);
+        List<String> args = new ArrayList<>(keysAndArgs.length - keyCount);
+        for (int i = 0; i < keysAndArgs.length; i++) {
+            (i < keyCount ? keys : args).add(new String(keysAndArgs[i], StandardCharsets.UTF_8));
+        }
+        return execute(script, keys, args);
+    }
+
+    /**
+     * Runs a script several times, with keys and arguments encoded as the bytes sent to Redis.
+     *
+     * @param script      the script
+     * @param keyCounts   number of keys of every execution
+     * @param keysAndArgs the KEYS followed by the ARGV of every execution, in the same order
+     * @return the results, in the same order
+     * @see #executeAll(LuaScript, List, List)
+     */
+    default List<List<?>> executeAll(LuaScript script, int[] keyCounts, List<byte[][]> keysAndArgs) {
+        List<List<?>> results = new ArrayList<>(keysAndArgs.size());
+        for (int i = 0; i < keysAndArgs.size(); i++) {
+            results.add(execute(script, keyCounts[i], keysAndArgs.get(i)));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sanjay.ratelimiter.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Rate limiting algorithms implemented by the Lua script.
+ *
+ * <p>The enum name is passed to the script as-is to select the engine for a tier, so
+ * renaming a constant requires the matching change in {@code RateLimiterScript.lua}.
+ * Each algorithm keeps its state under its own key suffix, which prevents a key written by
+ * one algorithm from being read by another when the algorithm of an endpoint is changed.
+ * {@link #SLIDING_WINDOW_COUNTER} passes two keys to the script, all other algorithms one.
+ */
+public enum RateLimitAlgorithm {
+
+    /** Exact sliding log: one sorted set member per admitted request */
+    SLIDING_LOG(""),
+
+    /** Token bucket: {@code tokens} and {@code last_refill} in a small hash, refilled lazily */
+    TOKEN_BUCKET(":tb"),
+
+    /** Generic cell rate algorithm: a single theoretical arrival time per key */
+    GCRA(":gcra"),
+
+    /**
+     * Sliding window counter: INCR counters for the current and previous fixed window, the previous
+     * one weighted by its overlap with the sliding window. Approximate, but only two small keys per limiter.
+     */
+    SLIDING_WINDOW_COUNTER(":swc");
+
+    /** {@link #values()} copies the array on every call */
+    private static final RateLimitAlgorithm[] VALUES = values();
+
+    /** The key suffix, followed by a colon for the window number of the sliding window counter */
+    private final byte[] encodedSuffix;
+
+    /** The name as passed to the script */
+    private final byte[] encodedName;
+
+    RateLimitAlgorithm(String keySuffix) {
+        this.encodedSuffix = RedisBytes.of(name().equals("SLIDING_WINDOW_COUNTER") ? keySuffix + ":" : keySuffix);
+        this.encodedName = RedisBytes.of(name());
+    }
+
+    /**
+     * Writes the Redis keys holding this algorithm's state for the given limiter key.
+     *
+     * <p>The sliding window counter needs the counters of the current and the previous fixed window,
+     * derived from {@code now} exactly as the script derives the elapsed part of the current window.
+     *
+     * @param keys           array the keys are written to, in the order the script consumes them
+     * @param index          index of the first key
+     * @param key            encoded limiter key (e.g. "rate_limit:global")
+     * @param now            current timestamp, in the unit passed to the script
+     * @param windowDuration window of the limiter, in the same unit
+     * @return number of keys written, see {@link #keyCount()}
+     */
+    public int writeKeys(byte[][] keys, int index, byte[] key, long now, long windowDuration) {
+        if (this == SLIDING_WINDOW_COUNTER) {
+            long window = now / windowDuration;
+            keys[index] = RedisBytes.concat(key, encodedSuffix, window);
+            keys[index + 1] = RedisBytes.concat(key, encodedSuffix, window - 1);
+            return 2;
+        }
+        keys[index] = encodedSuffix.length == 0 ? key : RedisBytes.concat(key, encodedSuffix);
+        return 1;
+    }
+
+    /**
+     * @return number of keys the script takes for one limiter of this algorithm
+     */
+    public int keyCount() {
+        return this == SLIDING_WINDOW_COUNTER ? 2 : 1;
+    }
+
+    /**
+     * @return the name as passed to the script, encoded once; must not be modified
+     */
+    public byte[] encodedName() {
+        return encodedName;
+    }
+
+    /**
+     * Finds the algorithm of an encoded name, as {@link #valueOf(String)} does for a string.
+     *
+     * @param name encoded name
+     * @return the algorithm
+     * @throws IllegalArgumentException if there is none of that name
+     */
+    public static RateLimitAlgorithm valueOf(byte[] name) {
+        for (RateLimitAlgorithm algorithm : VALUES) {
+            if (Arrays.equals(algorithm.encodedName, name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("No algorithm " + new String(name, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses an algorithm name leniently, accepting e.g. "token-bucket", "token_bucket", "TOKEN_BUCKET", "gcra" or "sliding-window-counter".
+     *
+     * @param name algorithm name
+     * @return the matching algorithm, or {@code null} if there is none
+     */
+    public static RateLimitAlgorithm from(String name) {
+        String normalized = name.trim().replace('-', '_').toUpperCase(Locale.ROOT);
+        for (RateLimitAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(normalized)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,251 @@
+package com.sanjay.ratelimiter.util;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the rate limiter.
+ *
+ * <p>Every decision is counted and timed from the start of its local part to the decision, and every
+ * script execution from handing the script to the executor to its result, so a slow p99 can be told
+ * apart between Redis and the application. Decisions and their timers are tagged with the tier that
+ * decided ({@code none} when the script result was unusable) and the outcome; a script execution covers
+ * all tiers at once and is tagged with the same tier as its decision.
+ *
+ * <p>Decisions are also counted per endpoint, and the heaviest users of each endpoint ranked with
+ * {@link TopKeys}. Only endpoints configured in {@link RateLimiterProperties} get their own meters, all
+ * others share the {@code other} endpoint, so the number of meters does not grow with the endpoints or
+ * users requested. The top users are exported as one gauge per rank, as user ids would be unbounded as
+ * tags; the ids themselves are read with {@link #topUsers()}.
+ *
+ * <p>All meters but those of endpoints configured at runtime are registered up front, so recording only
+ * looks them up and allocates nothing.
+ */
+public class RateLimitMonitor {
+
+    /** Client-side percentiles published by the timers */
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    /** Service level objective buckets of the timers */
+    private static final Duration[] SLOS = {Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofMillis(5),
+            Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100)};
+
+    private static final RateLimitTier[] TIERS = RateLimitTier.values();
+
+    private static final String[] OUTCOMES = {"denied", "allowed"};
+
+    /** Endpoint tag shared by all endpoints without a configuration of their own */
+    private static final String OTHER_ENDPOINT = "other";
+
+    @Getter
+    private final Counter totalRequests;
+
+    @Getter
+    private final Counter totalRequestsDropped;
+
+    /** Decisions, by tier (the last index for none) and outcome (1 allowed, 0 denied) */
+    private final Counter[][] decisions = new Counter[TIERS.length + 1][2];
+
+    /** Time of whole decisions, indexed like {@link #decisions} */
+    private final Timer[][] decisionTimers = new Timer[TIERS.length + 1][2];
+
+    /** Time of script executions, indexed like {@link #decisions} */
+    private final Timer[][] scriptTimers = new Timer[TIERS.length + 1][2];
+
+    private final MeterRegistry registry;
+
+    private final RateLimiterProperties properties;
+
+    /** Meters of the configured endpoints seen so far */
+    private final Map<String, EndpointMeters> endpoints = new ConcurrentHashMap<>();
+
+    private final EndpointMeters otherEndpoints;
+
+    /**
+     * Registers the meters with the global registry.
+     */
+    public RateLimitMonitor() {
+        this(Metrics.globalRegistry);
+    }
+
+    /**
+     * Registers the meters with a registry; all endpoints are counted as {@code other}.
+     */
+    public RateLimitMonitor(MeterRegistry registry) {
+        this(registry, new RateLimiterProperties());
+    }
+
+    public RateLimitMonitor(MeterRegistry registry, RateLimiterProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+        totalRequests = Counter.builder("rate_limiter_requests_total")
+                .description("Total number of requests processed by rate limiter")
+                .register(registry);
+        totalRequestsDropped = Counter.builder("rate_limiter_requests_total_dropped")
+                .description("Total number of requests denied by rate limiter")
+                .register(registry);
+        for (int tier = 0; tier <= TIERS.length; tier++) {
+            String tierTag = tier < TIERS.length ? TIERS[tier].name().toLowerCase(Locale.ROOT) : "none";
+            for (int allowed = 0; allowed < 2; allowed++) {
+                decisions[tier][allowed] = Counter.builder("rate_limiter_decisions")
+                        .description("Decisions, by deciding tier and outcome")
+                        .tags("tier", tierTag, "outcome", OUTCOMES[allowed])
+                        .register(registry);
+                decisionTimers[tier][allowed] = timer("rate_limiter_decision_duration",
+                        "Time from the start of a decision to its outcome", tierTag, OUTCOMES[allowed], registry);
+                scriptTimers[tier][allowed] = timer("rate_limiter_script_duration",
+                        "Time of a script execution on Redis or the local engine, round trip included",
+                        tierTag, OUTCOMES[allowed], registry);
+            }
+        }
+        otherEndpoints = new EndpointMeters(OTHER_ENDPOINT);
+    }
+
+    /**
+     * Registers a timer, and gauges of its percentiles named {@code <name>_quantile}: registries that
+     * export timers as histograms, like Prometheus, leave the timer's own percentiles out.
+     */
+    private static Timer timer(String name, String description, String tier, String outcome, MeterRegistry registry) {
+        Timer timer = Timer.builder(name)
+                .description(description)
+                .tags("tier", tier, "outcome", outcome)
+                .publishPercentiles(PERCENTILES)
+                .serviceLevelObjectives(SLOS)
+                .register(registry);
+        for (double percentile : PERCENTILES) {
+            Gauge.builder(name + "_quantile", timer, t -> percentile(t, percentile))
+                    .description(description + ", percentile")
+                    .tags("tier", tier, "outcome", outcome, "quantile", String.valueOf(percentile))
+                    .baseUnit("seconds")
+                    .strongReference(true)
+                    .register(registry);
+        }
+        return timer;
+    }
+
+    /** Read when the gauge is scraped, off the request path */
+    private static double percentile(Timer timer, double percentile) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.SECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Counts a decision and records how long it took.
+     *
+     * @param decision the decision
+     * @param nanos    time from the start of the decision, in nanoseconds
+     */
+    public void recordDecision(RateLimitDecision decision, long nanos) {
+        int tier = tier(decision);
+        int allowed = decision.allowed() ? 1 : 0;
+        totalRequests.increment();
+        if (!decision.allowed()) {
+            totalRequestsDropped.increment();
+        }
+        decisions[tier][allowed].increment();
+        decisionTimers[tier][allowed].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a decision of a request to an endpoint, and the request of its user if it has one.
+     *
+     * @param endpoint the endpoint requested
+     * @param userId   the user requesting it, {@code null} if unknown
+     * @param decision the decision
+     * @param now      time of the request in milliseconds, to age the user counts by
+     */
+    public void recordEndpoint(String endpoint, String userId, RateLimitDecision decision, long now) {
+        EndpointMeters meters = endpoints.get(endpoint);
+        if (meters == null) {
+            meters = properties.getEndpoints().containsKey(endpoint)
+                    ? endpoints.computeIfAbsent(endpoint, EndpointMeters::new)
+                    : otherEndpoints;
+        }
+        meters.decisions[decision.allowed() ? 1 : 0].increment();
+        if (userId != null) {
+            meters.users.add(userId, now);
+        }
+    }
+
+    /**
+     * @return the heaviest users of every endpoint with meters of its own and of {@code other}, highest first
+     */
+    public Map<String, List<TopKeys.Entry>> topUsers() {
+        long now = System.currentTimeMillis();
+        int k = properties.getMetrics().getTopUsers();
+        Map<String, List<TopKeys.Entry>> topUsers = new LinkedHashMap<>();
+        endpoints.forEach((endpoint, meters) -> topUsers.put(endpoint, meters.users.top(k, now)));
+        topUsers.put(OTHER_ENDPOINT, otherEndpoints.users.top(k, now));
+        return topUsers;
+    }
+
+    /**
+     * Records how long the script execution of a decision took.
+     *
+     * @param decision the decision the script made
+     * @param nanos    time from handing the script to the executor to its result, in nanoseconds
+     */
+    public void recordScript(RateLimitDecision decision, long nanos) {
+        scriptTimers[tier(decision)][decision.allowed() ? 1 : 0].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static int tier(RateLimitDecision decision) {
+        return decision.tier() == null ? TIERS.length : decision.tier().ordinal();
+    }
+
+    /**
+     * Decision counters of one endpoint, its heaviest users and their gauges, registered on creation.
+     */
+    private final class EndpointMeters {
+
+        /** Decisions by outcome (1 allowed, 0 denied) */
+        private final Counter[] decisions = new Counter[2];
+
+        private final TopKeys users;
+
+        EndpointMeters(String endpoint) {
+            RateLimiterProperties.MetricsConfig config = properties.getMetrics();
+            users = new TopKeys(config.getTrackedUsers(), TimeUnit.SECONDS.toMillis(config.getDecaySeconds()),
+                    config.getSampleRate());
+            for (int allowed = 0; allowed < 2; allowed++) {
+                decisions[allowed] = Counter.builder("rate_limiter_endpoint_decisions")
+                        .description("Decisions, by configured endpoint and outcome")
+                        .tags("endpoint", endpoint, "outcome", OUTCOMES[allowed])
+                        .register(registry);
+            }
+            for (int rank = 1; rank <= config.getTopUsers(); rank++) {
+                int index = rank - 1;
+                Gauge.builder("rate_limiter_top_user_requests", users, u -> requests(u, index))
+                        .description("Estimated recent requests of the user at this rank of the endpoint, decayed")
+                        .tags("endpoint", endpoint, "rank", String.valueOf(rank))
+                        .strongReference(true)
+                        .register(registry);
+            }
+        }
+
+        /** Read when the gauge is scraped, off the request path */
+        private static double requests(TopKeys users, int index) {
+            List<TopKeys.Entry> top = users.top(index + 1, System.currentTimeMillis());
+            return top.size() > index ? top.get(index).count() : 0;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.sanjay.ratelimiter.util;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits of the three tiers and the node-local optimizations, bound from {@code rate-limiter.*}
+ * by the Spring Boot starter.
+ */
+@Data
+public class RateLimiterProperties {
+
+    private Map<String,RateLimitConfig> endpoints = new HashMap<>();
+    private RateLimitConfig defaultConfig = new RateLimitConfig();
+    private RateLimitConfig global = new RateLimitConfig();
+    private LeaseConfig lease = new LeaseConfig();
+    private ShardingConfig sharding = new ShardingConfig();
+    private DenyCacheConfig denyCache = new DenyCacheConfig();
+    private LocalConfig local = new LocalConfig();
+    private MetricsConfig metrics = new MetricsConfig();
+    private HeavyHittersConfig heavyHitters = new HeavyHittersConfig();
+
+    /**
+     * Largest cost a single request may have. Requests above it, or above the global or endpoint
+     * limit they could never fit in, are rejected as invalid instead of being decided.
+     */
+    private long maxCost = 1000;
+
+    @Data
+    public static class RateLimitConfig{
+        private long windowDuration = 60;
+        private long requestLimit = 5;
+        private RateLimitAlgorithm algorithm = RateLimitAlgorithm.SLIDING_LOG;
+    }
+
+    /**
+     * Node-local leasing of global quota. When enabled, each node takes chunks of the global
+     * token bucket in one script call and spends them locally, so most global checks skip Redis.
+     * A node holds at most one chunk, so the cluster can overshoot the global limit by at most
+     * (number of nodes x chunk) requests.
+     */
+    @Data
+    public static class LeaseConfig{
+        private boolean enabled = false;
+        private long chunkPercent = 2;
+        private long renewAtPercent = 50;
+    }
+
+    /**
+     * Sharding of the global tier over N hash-tagged sub-keys, each enforcing an even share of the
+     * global limit. An alternative to leasing; ignored while leasing is enabled. At most 64 shards.
+     */
+    @Data
+    public static class ShardingConfig{
+        private boolean enabled = false;
+        private int shards = 8;
+    }
+
+    /**
+     * Local near-cache of deny decisions: keys reported full by the script are denied in-process
+     * until they allow requests again. {@code size} bounds the number of cached keys.
+     */
+    @Data
+    public static class DenyCacheConfig{
+        private boolean enabled = true;
+        private int size = 65536;
+    }
+
+    /**
+     * In-process engine replacing Redis, for a single node. {@code capacity} bounds the number of
+     * limiter keys held; beyond it, idle keys are evicted and start again with a fresh limiter.
+     * {@code offHeap} keeps the keys in direct memory, out of the garbage collector's way.
+     * Leasing is not available with the local engine; enabling both fails at startup.
+     */
+    @Data
+    public static class LocalConfig{
+        private boolean enabled = false;
+        private int capacity = 1 << 20;
+        private boolean offHeap = false;
+    }
+
+    /**
+     * Per-endpoint metrics. Decisions are counted per configured endpoint, all other endpoints
+     * together under {@code other}, and the {@code topUsers} heaviest users of each are ranked from
+     * {@code trackedUsers} counters whose counts halve every {@code decaySeconds}. One in
+     * {@code sampleRate} decisions is counted for the ranking.
+     */
+    @Data
+    public static class MetricsConfig{
+        private int topUsers = 10;
+        private int trackedUsers = 128;
+        private long decaySeconds = 60;
+        private int sampleRate = 8;
+    }
+
+    /**
+     * Local blocking of heavy hitters: user keys requested at {@code multiple} times their limit within
+     * a period of {@code periodSeconds} are denied in-process for {@code blockSeconds}, without Redis.
+     * Requests are counted in a sketch of {@code width} counters per row, whatever the number of keys.
+     */
+    @Data
+    public static class HeavyHittersConfig{
+        private boolean enabled = false;
+        private long multiple = 10;
+        private long periodSeconds = 10;
+        private long blockSeconds = 60;
+        private int width = 4096;
+    }
+
+    public RateLimitConfig getConfigFor(String endpoint){
+        return endpoints.getOrDefault(endpoint,defaultConfig);
+    }
+}
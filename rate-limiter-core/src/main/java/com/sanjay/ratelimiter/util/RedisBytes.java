@@ -0,0 +1,128 @@
+package com.sanjay.ratelimiter.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of script keys and arguments straight to the bytes Redis receives, without the
+ * intermediate strings a {@code StringRedisSerializer} needs.
+ *
+ * <p>Every method allocates exactly the array it returns. Numbers are written as decimal ASCII,
+ * strings as UTF-8, with a copy loop for the usual all-ASCII keys.
+ */
+public final class RedisBytes {
+
+    private RedisBytes() {
+    }
+
+    /**
+     * @return the UTF-8 bytes of a string
+     */
+    public static byte[] of(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the decimal ASCII bytes of a number, as {@link String#valueOf(long)} would print it
+     */
+    public static byte[] of(long value) {
+        byte[] bytes = new byte[length(value)];
+        write(bytes, bytes.length, value);
+        return bytes;
+    }
+
+    /**
+     * @return {@code prefix} followed by {@code suffix}
+     */
+    public static byte[] concat(byte[] prefix, byte[] suffix) {
+        byte[] bytes = new byte[prefix.length + suffix.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(suffix, 0, bytes, prefix.length, suffix.length);
+        return bytes;
+    }
+
+    /**
+     * @return {@code prefix}, {@code infix} and the decimal digits of {@code number}
+     */
+    public static byte[] concat(byte[] prefix, byte[] infix, long number) {
+        byte[] bytes = new byte[prefix.length + infix.length + length(number)];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(infix, 0, bytes, prefix.length, infix.length);
+        write(bytes, bytes.length, number);
+        return bytes;
+    }
+
+    /**
+     * @return {@code prefix}, the UTF-8 bytes of {@code middle} and {@code suffix}
+     */
+    public static byte[] concat(byte[] prefix, String middle, byte[] suffix) {
+        int length = middle.length();
+        for (int i = 0; i < length; i++) {
+            if (middle.charAt(i) >= 0x80) {
+                return concat(concat(prefix, of(middle)), suffix);
+            }
+        }
+        byte[] bytes = new byte[prefix.length + length + suffix.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        for (int i = 0; i < length; i++) {
+            bytes[prefix.length + i] = (byte) middle.charAt(i);
+        }
+        System.arraycopy(suffix, 0, bytes, prefix.length + length, suffix.length);
+        return bytes;
+    }
+
+    /**
+     * Parses decimal ASCII bytes, the inverse of {@link #of(long)}.
+     *
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    public static long parseLong(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new NumberFormatException("Empty number");
+        }
+        boolean negative = bytes.length > 1 && bytes[0] == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < bytes.length; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(new String(bytes, StandardCharsets.US_ASCII));
+            }
+            // Accumulated negatively, so that Long.MIN_VALUE parses too
+            try {
+                value = Math.subtractExact(Math.multiplyExact(value, 10), digit);
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException(new String(bytes, StandardCharsets.US_ASCII));
+            }
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Long.MIN_VALUE) {
+            throw new NumberFormatException(new String(bytes, StandardCharsets.US_ASCII));
+        }
+        return -value;
+    }
+
+    private static int length(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = value < 0 ? 2 : 1;
+        for (long rest = Math.abs(value); rest >= 10; rest /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /** Writes the digits of {@code value} right-aligned to {@code end} */
+    private static void write(byte[] bytes, int end, long value) {
+        int i = end;
+        long rest = value;
+        do {
+            bytes[--i] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            bytes[--i] = '-';
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.sanjay.ratelimiter.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate top keys of a stream by request count, with the Space-Saving algorithm in fixed memory.
+ *
+ * <p>{@code capacity} counters are kept, split into stripes by key hash. A key without a counter takes
+ * over the smallest one of its stripe and inherits its count as possible overestimate
+ * ({@link Entry#error()}). Each stripe only sees its own keys, so a key is guaranteed a counter if it has
+ * more than {@code 1/(capacity/stripes)} of the requests of its stripe, not of the whole stream; a key
+ * that heavy overall usually is, unless several heavy keys share a stripe. Counts halve every
+ * {@code decayMillis}, so the ranking follows current traffic rather than all-time totals.
+ *
+ * <p>Adding runs on every decision and never waits: only one in {@code sampleRate} requests is counted,
+ * and a sample whose stripe is busy with another thread is dropped rather than queued behind it, so a
+ * single hot key cannot serialize the threads deciding its requests. Counts are scaled back up by the
+ * sample rate and by the share of samples a stripe dropped, which keeps them estimates of all requests.
+ * Adding a key costs a scan of one stripe's counters and allocates nothing.
+ */
+public final class TopKeys {
+
+    private static final int STRIPES = 8;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final long decayMillis;
+
+    private final int sampleRate;
+
+    /**
+     * @param capacity    number of counters, at least {@link #STRIPES}
+     * @param decayMillis time (ms) after which counts are halved
+     * @param sampleRate  one in this many requests is counted, {@code 1} counts all of them
+     */
+    public TopKeys(int capacity, long decayMillis, int sampleRate) {
+        this.decayMillis = Math.max(1, decayMillis);
+        this.sampleRate = Math.max(1, sampleRate);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, capacity / STRIPES));
+        }
+    }
+
+    /**
+     * A tracked key.
+     *
+     * @param key   the key
+     * @param count estimated requests, decayed
+     * @param error how much {@code count} may overestimate
+     */
+    public record Entry(String key, long count, long error) {
+    }
+
+    /**
+     * Counts a request of a key, unless it is not sampled or its stripe is busy.
+     *
+     * @param key the key
+     * @param now current timestamp in milliseconds
+     */
+    public void add(String key, long now) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        if (!stripe.lock.tryLock()) {
+            stripe.contended.increment();
+            return;
+        }
+        try {
+            stripe.add(key, hash, now, decayMillis);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @param k   number of keys
+     * @param now current timestamp in milliseconds
+     * @return the {@code k} keys with the highest counts, highest first
+     */
+    public List<Entry> top(int k, long now) {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.collect(entries, now, decayMillis, sampleRate);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    /** One share of the counters, guarded by its lock; unused counters have a {@code null} key */
+    private static final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /** Samples dropped because another thread held the lock, not yet moved to {@link #dropped} */
+        final LongAdder contended = new LongAdder();
+
+        private final String[] keys;
+        private final int[] hashes;
+        private final long[] counts;
+        private final long[] errors;
+
+        /** Samples counted and dropped, decayed like the counts, to scale the counts by the dropped share */
+        private long counted;
+        private long dropped;
+
+        /** When counts were last halved, {@link Long#MIN_VALUE} before the first use */
+        private long decayedAt = Long.MIN_VALUE;
+
+        Stripe(int capacity) {
+            keys = new String[capacity];
+            hashes = new int[capacity];
+            counts = new long[capacity];
+            errors = new long[capacity];
+        }
+
+        void add(String key, int hash, long now, long decayMillis) {
+            decay(now, decayMillis);
+            counted++;
+            int smallest = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (hashes[i] == hash && key.equals(keys[i])) {
+                    counts[i]++;
+                    return;
+                }
+                if (keys[i] == null || counts[i] < counts[smallest]) {
+                    smallest = i;
+                    if (keys[i] == null) {
+                        break;
+                    }
+                }
+            }
+            errors[smallest] = keys[smallest] == null ? 0 : counts[smallest];
+            counts[smallest] = keys[smallest] == null ? 1 : counts[smallest] + 1;
+            keys[smallest] = key;
+            hashes[smallest] = hash;
+        }
+
+        void collect(List<Entry> entries, long now, long decayMillis, int sampleRate) {
+            decay(now, decayMillis);
+            dropped += contended.sumThenReset();
+            double scale = counted == 0 ? sampleRate : sampleRate * (double) (counted + dropped) / counted;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && counts[i] > 0) {
+                    entries.add(new Entry(keys[i], Math.round(counts[i] * scale), Math.round(errors[i] * scale)));
+                }
+            }
+        }
+
+        /** Halves the counts once for every period passed since they were last halved */
+        private void decay(long now, long decayMillis) {
+            if (decayedAt == Long.MIN_VALUE) {
+                decayedAt = now;
+            }
+            long periods = (now - decayedAt) / decayMillis;
+            if (periods <= 0) {
+                return;
+            }
+            int shift = (int) Math.min(63, periods);
+            for (int i = 0; i < keys.length; i++) {
+                counts[i] >>>= shift;
+                errors[i] >>>= shift;
+            }
+            dropped += contended.sumThenReset();
+            counted >>>= shift;
+            dropped >>>= shift;
+            decayedAt += periods * decayMillis;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+--Variables
+--KEYS[1] = token bucket of the global tier
+--ARGV[1] = now, in milliseconds
+--ARGV[2] = window, in milliseconds
+--ARGV[3] = limit
+--ARGV[4] = unused tokens the node gives back
+--ARGV[5] = tokens the node asks for
+local key = KEYS[1]
+local now = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local limit = tonumber(ARGV[3])
+local giveBack = tonumber(ARGV[4])
+local requested = tonumber(ARGV[5])
+
+--Refill lazily at limit/window tokens per millisecond, same bucket layout as the TOKEN_BUCKET engine
+local bucket = redis.call('HMGET', key, 'tokens', 'last_refill')
+local tokens = tonumber(bucket[1]) or limit
+local lastRefill = tonumber(bucket[2]) or now
+tokens = math.min(limit, tokens + math.max(0, now - lastRefill) * limit / window + giveBack)
+
+--Grant as much of the request as the bucket holds
+local granted = math.min(requested, math.floor(tokens))
+tokens = tokens - granted
+redis.call('HSET', key, 'tokens', tokens, 'last_refill', now)
+redis.call('PEXPIRE', key, window)
+
+--When nothing could be granted, tell the node when the next whole token is available
+local retryAfter = 0
+if granted == 0 and requested > 0 then
+    retryAfter = math.ceil((1 - tokens) * window / limit)
+end
+
+return {granted, retryAfter}
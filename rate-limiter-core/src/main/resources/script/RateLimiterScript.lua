@@ -0,0 +1,248 @@
+--Variables
+--ARGV[1]         = now, in milliseconds
+--ARGV[2]         = number of tiers
+--ARGV[3]         = id of this request, unique across nodes
+--ARGV[4]         = cost of this request, in requests; a negative cost gives back a request recorded
+--                  earlier with the same timestamp and request id, which another execution denied
+--ARGV[3i+2], ARGV[3i+3], ARGV[3i+4] = algorithm, window (milliseconds) and limit of tier i
+--KEYS            = the keys of every tier in tier order (global, endpoint, user),
+--                  one per tier, or two for SLIDING_WINDOW_COUNTER (current window, previous window)
+local now = tonumber(ARGV[1])
+local tierCount = tonumber(ARGV[2])
+local requestId = ARGV[3]
+local cost = tonumber(ARGV[4])
+
+--Sorted set members added per ZADD by the sliding log
+local ZADD_BATCH = 1000
+
+--Engines: check(tier) inspects a tier without writing and returns
+--  allowed, state for record(), remaining after this request, retry-after when denied
+--record(tier, state) admits the request on that tier
+--reset(tier, state, admitted) returns the time until the tier's quota is fully restored
+--refund(tier) gives back a request recorded at 'now', as far as the tier still holds it
+local engines = {}
+
+--Exact sliding log: one ZSET member per admitted request, scored by its timestamp
+engines.SLIDING_LOG = {
+    keys = 1,
+    check = function(tier)
+        --Removes all the entries that are outside the timeframe
+        redis.call('ZREMRANGEBYSCORE', tier.key, '-inf', now - tier.window)
+        local count = redis.call('ZCARD', tier.key)
+        --Never keep more than 'limit' entries, e.g. after the limit was lowered at runtime
+        if count > tier.limit then
+            redis.call('ZREMRANGEBYRANK', tier.key, 0, count - tier.limit - 1)
+            count = tier.limit
+        end
+        if count + cost <= tier.limit then
+            return true, nil, tier.limit - count - cost, 0
+        end
+        if count == 0 then
+            --The cost exceeds the limit itself
+            return false, nil, 0, tier.window
+        end
+        --Enough of the oldest entries have to leave the window to make room for the cost
+        local freeing = math.min(count + cost - tier.limit, count)
+        local entry = redis.call('ZRANGE', tier.key, freeing - 1, freeing - 1, 'WITHSCORES')
+        return false, nil, 0, tonumber(entry[2]) + tier.window - now
+    end,
+    record = function(tier)
+        --The request id keeps members unique, so requests in the same millisecond are all counted.
+        --Members are added in batches, unpack() is limited to a few thousand values
+        local members = {}
+        for n = 1, cost do
+            members[#members + 1] = now
+            members[#members + 1] = now .. ':' .. requestId .. ':' .. n
+            if #members == ZADD_BATCH * 2 or n == cost then
+                redis.call('ZADD', tier.key, unpack(members))
+                members = {}
+            end
+        end
+        redis.call('PEXPIRE', tier.key, tier.window)
+    end,
+    refund = function(tier)
+        local members = {}
+        for n = 1, cost do
+            members[#members + 1] = now .. ':' .. requestId .. ':' .. n
+            if #members == ZADD_BATCH or n == cost then
+                redis.call('ZREM', tier.key, unpack(members))
+                members = {}
+            end
+        end
+    end,
+    reset = function(tier)
+        local oldest = redis.call('ZRANGE', tier.key, 0, 0, 'WITHSCORES')
+        if oldest[2] == nil then
+            return 0
+        end
+        return tonumber(oldest[2]) + tier.window - now
+    end
+}
+
+--Token bucket: 'tokens' and 'last_refill' in a hash, refilled lazily at limit/window tokens per millisecond
+engines.TOKEN_BUCKET = {
+    keys = 1,
+    check = function(tier)
+        local bucket = redis.call('HMGET', tier.key, 'tokens', 'last_refill')
+        local tokens = tonumber(bucket[1]) or tier.limit
+        local lastRefill = tonumber(bucket[2]) or now
+        tokens = math.min(tier.limit, tokens + math.max(0, now - lastRefill) * tier.limit / tier.window)
+        if tokens >= cost then
+            return true, tokens, math.floor(tokens - cost), 0
+        end
+        return false, tokens, 0, (cost - tokens) * tier.window / tier.limit
+    end,
+    record = function(tier, tokens)
+        redis.call('HSET', tier.key, 'tokens', tokens - cost, 'last_refill', now)
+        --An idle bucket is full again after one window, which is the same as a missing key
+        redis.call('PEXPIRE', tier.key, tier.window)
+    end,
+    refund = function(tier)
+        local tokens = tonumber(redis.call('HGET', tier.key, 'tokens'))
+        if tokens then
+            redis.call('HSET', tier.key, 'tokens', math.min(tier.limit, tokens + cost))
+        end
+    end,
+    reset = function(tier, tokens, admitted)
+        if admitted then
+            tokens = tokens - cost
+        end
+        return (tier.limit - tokens) * tier.window / tier.limit
+    end
+}
+
+--GCRA: a single theoretical arrival time (TAT) per key, one request is emitted every window/limit
+--and up to 'limit' requests may arrive back to back
+engines.GCRA = {
+    keys = 1,
+    check = function(tier)
+        local interval = tier.window / tier.limit
+        local tat = math.max(tonumber(redis.call('GET', tier.key)) or now, now)
+        local newTat = tat + interval * cost
+        local allowAt = newTat - tier.window
+        if now < allowAt then
+            return false, newTat, 0, allowAt - now
+        end
+        return true, newTat, math.floor((now - allowAt) / interval), 0
+    end,
+    record = function(tier, newTat)
+        --The key is only needed until the TAT has passed, after that a missing key means the same
+        redis.call('SET', tier.key, math.ceil(newTat), 'PX', math.ceil(newTat - now))
+    end,
+    refund = function(tier)
+        local tat = tonumber(redis.call('GET', tier.key))
+        if tat then
+            tat = tat - tier.window / tier.limit * cost
+            if tat > now then
+                redis.call('SET', tier.key, math.ceil(tat), 'PX', math.ceil(tat - now))
+            else
+                redis.call('DEL', tier.key)
+            end
+        end
+    end,
+    reset = function(tier, newTat, admitted)
+        --A denied request leaves the stored TAT unchanged
+        local tat = newTat
+        if not admitted then
+            tat = newTat - tier.window / tier.limit * cost
+        end
+        return math.max(0, tat - now)
+    end
+}
+
+--Sliding window counter: INCR counters for the current and the previous fixed window,
+--the previous count is weighted by how much of it still overlaps the sliding window
+engines.SLIDING_WINDOW_COUNTER = {
+    keys = 2,
+    check = function(tier)
+        local counts = redis.call('MGET', tier.key, tier.previousKey)
+        local current = tonumber(counts[1]) or 0
+        local previous = tonumber(counts[2]) or 0
+        local elapsed = now % tier.window
+        local estimate = previous * (tier.window - elapsed) / tier.window + current
+        if estimate + cost <= tier.limit then
+            return true, current, math.floor(tier.limit - estimate - cost), 0
+        end
+        --Wait until enough of the previous window has slid out. When the current window alone
+        --is already full, wait for the next window and until enough of this one has slid out
+        if current + cost <= tier.limit then
+            return false, current, 0, (1 - (tier.limit - cost - current) / previous) * tier.window - elapsed
+        end
+        if current == 0 then
+            --The cost exceeds the limit itself
+            return false, current, 0, 2 * tier.window - elapsed
+        end
+        return false, current, 0, tier.window - elapsed + math.max(0, 1 - (tier.limit - cost) / current) * tier.window
+    end,
+    record = function(tier)
+        --The counter must outlive its own window to serve as the previous window of the next one
+        if redis.call('INCRBY', tier.key, cost) == cost then
+            redis.call('PEXPIRE', tier.key, tier.window * 2)
+        end
+    end,
+    refund = function(tier)
+        local current = tonumber(redis.call('GET', tier.key))
+        if current and current > 0 then
+            redis.call('DECRBY', tier.key, math.min(cost, current))
+        end
+    end,
+    reset = function(tier, current, admitted)
+        --The previous window has slid out when the current one ends, the current one a window later
+        local untilWindowEnd = tier.window - now % tier.window
+        if current > 0 or admitted then
+            return untilWindowEnd + tier.window
+        end
+        return untilWindowEnd
+    end
+}
+
+--Resolve every tier with its engine and keys
+local tiers = {}
+local nextKey = 1
+for i = 1, tierCount do
+    local engine = engines[ARGV[i * 3 + 2]]
+    tiers[i] = {
+        engine = engine,
+        key = KEYS[nextKey],
+        previousKey = engine.keys == 2 and KEYS[nextKey + 1] or nil,
+        window = tonumber(ARGV[i * 3 + 3]),
+        limit = tonumber(ARGV[i * 3 + 4])
+    }
+    nextKey = nextKey + engine.keys
+end
+
+--Refund: give the request back on every tier
+if cost < 0 then
+    cost = -cost
+    for i = 1, tierCount do
+        tiers[i].engine.refund(tiers[i])
+    end
+    return {}
+end
+
+--Phase 1: check every tier before recording anything
+--While allowed, track the most restrictive tier (fewest remaining requests)
+local states = {}
+local tightest, tightestRemaining = 0, -1
+for i = 1, tierCount do
+    --If this tier is already full the whole request is denied, nothing is recorded
+    local allowed, state, remaining, retryAfter = tiers[i].engine.check(tiers[i])
+    if not allowed then
+        local reset = tiers[i].engine.reset(tiers[i], state, false)
+        return {0, i, tiers[i].limit, 0, math.ceil(reset), math.ceil(retryAfter)}
+    end
+    states[i] = state
+    if tightest == 0 or remaining < tightestRemaining then
+        tightest, tightestRemaining = i, remaining
+    end
+end
+
+--Phase 2: every tier has room, record the request on all of them
+for i = 1, tierCount do
+    tiers[i].engine.record(tiers[i], states[i])
+end
+
+--Report the most restrictive tier: {allowed, tier, limit, remaining, reset, retryAfter}
+local tier = tiers[tightest]
+local reset = tier.engine.reset(tier, states[tightest], true)
+return {1, tightest, tier.limit, tightestRemaining, math.ceil(reset), 0}
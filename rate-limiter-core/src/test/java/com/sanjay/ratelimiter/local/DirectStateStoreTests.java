@@ -0,0 +1,39 @@
+package com.sanjay.ratelimiter.local;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectStateStoreTests {
+
+	@Test
+	void keysKeepTheirSlotAndState() {
+		DirectStateStore store = new DirectStateStore(1024);
+		int slot = store.slot(42);
+		assertThat(store.get(slot)).isZero();
+		assertThat(store.compareAndSet(slot, 0, 7)).isTrue();
+		assertThat(store.compareAndSet(slot, 0, 8)).isFalse();
+
+		assertThat(store.slot(42)).isEqualTo(slot);
+		assertThat(store.get(store.slot(42))).isEqualTo(7);
+	}
+
+	@Test
+	void fullTableEvictsTheIdleKey() {
+		// A table as small as one probe run, so every key competes for the same slots
+		DirectStateStore store = new DirectStateStore(DirectStateStore.MAX_PROBES);
+		for (long key = 1; key <= DirectStateStore.MAX_PROBES; key++) {
+			store.compareAndSet(store.slot(key), 0, key * 100);
+		}
+		// Every key but the last is used again
+		for (long key = 1; key < DirectStateStore.MAX_PROBES; key++) {
+			assertThat(store.get(store.slot(key))).isEqualTo(key * 100);
+		}
+
+		int slot = store.slot(1_000);
+		assertThat(store.get(slot)).isZero();
+		for (long key = 1; key < DirectStateStore.MAX_PROBES; key++) {
+			assertThat(store.get(store.slot(key))).isEqualTo(key * 100);
+		}
+	}
+}
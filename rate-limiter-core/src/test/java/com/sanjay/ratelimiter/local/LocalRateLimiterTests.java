@@ -0,0 +1,98 @@
+package com.sanjay.ratelimiter.local;
+
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRateLimiterTests {
+
+	private static final long NOW = 1_000_000;
+
+	private final LocalRateLimiter limiter = new LocalRateLimiter(new AtomicStateStore(1024), NOW);
+
+	@Test
+	void tokenBucketRefillsWholeTokensWithoutLosingTime() {
+		long key = LocalRateLimiter.hash("rate_limit:user:/login");
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 3_000, 3, 1, NOW)).isEqualTo(2 - i);
+		}
+		long denied = limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 3_000, 3, 1, NOW);
+		assertThat(LocalRateLimiter.isAllowed(denied)).isFalse();
+		assertThat(LocalRateLimiter.retryAfter(denied)).isEqualTo(1_000);
+
+		// 1.5 tokens have accrued: one is spent, the half stays for the next 500 ms
+		assertThat(limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 3_000, 3, 1, NOW + 1_500)).isZero();
+		assertThat(LocalRateLimiter.retryAfter(limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 3_000, 3, 1, NOW + 1_500)))
+				.isEqualTo(500);
+		assertThat(limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 3_000, 3, 1, NOW + 2_000)).isZero();
+	}
+
+	@Test
+	void gcraSpacesRequestsByTheEmissionInterval() {
+		long key = LocalRateLimiter.hash("rate_limit:endpoint:/data:gcra");
+		assertThat(limiter.acquire(key, RateLimitAlgorithm.GCRA, 1_000, 2, 1, NOW)).isEqualTo(1);
+		assertThat(limiter.acquire(key, RateLimitAlgorithm.GCRA, 1_000, 2, 1, NOW)).isZero();
+		long denied = limiter.acquire(key, RateLimitAlgorithm.GCRA, 1_000, 2, 1, NOW + 100);
+		assertThat(LocalRateLimiter.retryAfter(denied)).isEqualTo(400);
+		assertThat(limiter.reset(key, RateLimitAlgorithm.GCRA, 1_000, 2, NOW + 100)).isEqualTo(900);
+	}
+
+	@Test
+	void concurrentRequestsNeverExceedTheLimit() throws Exception {
+		long key = LocalRateLimiter.hash("rate_limit:global");
+		AtomicInteger admitted = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		for (int t = 0; t < 8; t++) {
+			pool.execute(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					if (LocalRateLimiter.isAllowed(limiter.acquire(key, RateLimitAlgorithm.TOKEN_BUCKET, 60_000, 1_000, 1, NOW))) {
+						admitted.incrementAndGet();
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(admitted.get()).isEqualTo(1_000);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void executorGivesBackEarlierTiersWhenALaterTierDenies() {
+		LocalScriptExecutor executor = new LocalScriptExecutor(limiter, limiter);
+		List<String> keys = List.of("rate_limit:endpoint:/data:gcra", "rate_limit:user:/data:tb");
+		List<String> args = new ArrayList<>(List.of(String.valueOf(NOW), "2", "1", "1",
+				"GCRA", "1000", "10", "TOKEN_BUCKET", "1000", "1"));
+
+		assertThat((List<Object>) executor.execute(LuaScript.RATE_LIMITER, keys, args)).containsExactly(1L, 2L, 1L, 0L, 1_000L, 0L);
+		assertThat((List<Object>) executor.execute(LuaScript.RATE_LIMITER, keys, args)).containsExactly(0L, 2L, 1L, 0L, 1_000L, 1_000L);
+		// The denied request left the endpoint tier as the first one did
+		List<String> endpointArgs = List.of(String.valueOf(NOW), "1", "2", "1", "GCRA", "1000", "10");
+		assertThat((List<Object>) executor.execute(LuaScript.RATE_LIMITER, keys.subList(0, 1), endpointArgs))
+				.containsExactly(1L, 1L, 10L, 8L, 200L, 0L);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void usersFloodingTheStoreDoNotEvictTheEndpointTier() {
+		// Every slot of the user store is taken after a few users, so each new user evicts another key
+		LocalScriptExecutor executor = new LocalScriptExecutor(new AtomicStateStore(AtomicStateStore.MAX_PROBES));
+		int admitted = 0;
+		for (int user = 0; user < 10_000; user++) {
+			List<String> keys = List.of("rate_limit:endpoint:{/data}", "rate_limit:user:{/data}:" + user);
+			List<String> args = List.of(String.valueOf(NOW), "2", String.valueOf(user), "1",
+					"TOKEN_BUCKET", "60000", "10", "TOKEN_BUCKET", "60000", "10");
+			admitted += ((List<Long>) executor.execute(LuaScript.RATE_LIMITER, keys, args)).get(0).intValue();
+		}
+		assertThat(admitted).isEqualTo(10);
+	}
+}
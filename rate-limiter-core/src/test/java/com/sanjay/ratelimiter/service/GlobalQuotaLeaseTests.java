@@ -0,0 +1,195 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class GlobalQuotaLeaseTests {
+
+	private final RateLimiterProperties properties = new RateLimiterProperties();
+
+	/** Given back and requested tokens of every lease script call */
+	private final List<long[]> calls = new CopyOnWriteArrayList<>();
+
+	/** Grants every request in full, slowly enough for concurrent callers to pile up behind the lock */
+	private final RedisScriptExecutor executor = (script, keys, args) -> {
+		calls.add(new long[] {Long.parseLong(args.get(3)), Long.parseLong(args.get(4))});
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return List.of(Long.parseLong(args.get(4)), 0L);
+	};
+
+	GlobalQuotaLeaseTests() {
+		properties.getLease().setEnabled(true);
+		properties.getLease().setChunkPercent(10);
+		properties.getLease().setRenewAtPercent(0);
+		properties.getGlobal().setAlgorithm(RateLimitAlgorithm.TOKEN_BUCKET);
+		properties.getGlobal().setRequestLimit(1000);
+	}
+
+	@Test
+	void concurrentCallersOfAnEmptyLeaseRenewItOnce() throws Exception {
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, executor);
+		assertThat(acquireConcurrently(lease, 16)).allMatch(generation -> generation >= 0);
+		assertThat(calls).hasSize(1);
+
+		// Spent, but not expired
+		assertThat(lease.tryAcquire(84)).isNotNegative();
+		assertThat(acquireConcurrently(lease, 16)).allMatch(generation -> generation >= 0);
+		assertThat(calls).hasSize(2);
+	}
+
+	@Test
+	void doesNotCreditTokensOfAnExpiredLeaseTwice() throws Exception {
+		properties.getGlobal().setWindowDuration(1);
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, executor);
+		long generation = lease.tryAcquire(1);
+
+		Thread.sleep(1100);
+		long renewed = lease.tryAcquire(1);
+		lease.release(1, generation);
+		lease.shutdown();
+
+		assertThat(renewed).isGreaterThan(generation);
+		// The expired lease handed back its 99 unused tokens, the new one is 100 less the one taken from it
+		assertThat(calls).extracting(call -> call[0]).containsExactly(0L, 99L, 99L);
+	}
+
+	@Test
+	void renewsSynchronouslyFirstAndInTheBackgroundOnceBelowTheThreshold() throws Exception {
+		properties.getLease().setRenewAtPercent(50);
+		List<String> renewers = new CopyOnWriteArrayList<>();
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, (script, keys, args) -> {
+			renewers.add(Thread.currentThread().getName());
+			return executor.execute(script, keys, args);
+		});
+
+		// The first renewal runs on the request thread
+		assertThat(lease.tryAcquire(1)).isNotNegative();
+		assertThat(renewers).containsExactly(Thread.currentThread().getName());
+
+		// 50 of 100 left is exactly the threshold, not below it
+		assertThat(lease.tryAcquire(49)).isNotNegative();
+		Thread.sleep(100);
+		assertThat(calls).hasSize(1);
+
+		assertThat(lease.tryAcquire(1)).isNotNegative();
+		for (int i = 0; i < 100 && calls.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(renewers).containsExactly(Thread.currentThread().getName(), "global-quota-lease");
+		// Topped up from 49 to a full chunk
+		assertThat(calls.get(1)[1]).isEqualTo(51);
+	}
+
+	@Test
+	void concurrentCallersNeverSpendMoreThanTheBalance() throws Exception {
+		// One chunk of 100, then the bucket is empty for a minute
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, (script, keys, args) -> {
+			long requested = Long.parseLong(args.get(4));
+			calls.add(new long[] {Long.parseLong(args.get(3)), requested});
+			return calls.size() == 1 ? List.of(requested, 0L) : List.of(0L, 60_000L);
+		});
+
+		List<Long> generations = new ArrayList<>();
+		for (int round = 0; round < 10; round++) {
+			generations.addAll(acquireConcurrently(lease, 16));
+		}
+
+		assertThat(generations).filteredOn(generation -> generation >= 0).hasSize(100);
+		assertThat(lease.retryAfterMillis(1)).isGreaterThan(59_000);
+	}
+
+	@Test
+	void renewsEnoughForACostAboveTheChunk() {
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, executor);
+
+		// The first renewal takes a chunk of 100 tokens, the second the 150 the request still lacks
+		assertThat(lease.tryAcquire(250)).isNotNegative();
+		assertThat(calls).extracting(call -> call[1]).containsExactly(100L, 150L);
+
+		// Spent, so the next renewal asks for a chunk again
+		assertThat(lease.tryAcquire(1)).isNotNegative();
+		assertThat(calls).extracting(call -> call[1]).containsExactly(100L, 150L, 100L);
+	}
+
+	@Test
+	void keepsAnExpiredBalanceWhenHandingItBackFails() throws Exception {
+		properties.getGlobal().setWindowDuration(1);
+		List<Boolean> failNext = new CopyOnWriteArrayList<>(List.of(false, true));
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, (script, keys, args) -> {
+			if (!failNext.isEmpty() && failNext.remove(0)) {
+				throw new IllegalStateException("Redis timed out");
+			}
+			return executor.execute(script, keys, args);
+		});
+		assertThat(lease.tryAcquire(1)).isNotNegative();
+
+		Thread.sleep(1100);
+		assertThatIllegalStateException().isThrownBy(() -> lease.tryAcquire(1));
+		assertThat(lease.tryAcquire(1)).isNotNegative();
+
+		// The 99 unused tokens were handed back by the renewal that succeeded
+		assertThat(calls).extracting(call -> call[0]).containsExactly(0L, 99L);
+	}
+
+	@Test
+	void deniedRequestsWaitAtLeastForTheirTokensToRefill() {
+		properties.getGlobal().setWindowDuration(60);
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, executor);
+
+		// 1000 tokens per minute refill one every 60ms; the bucket is not known to be empty
+		assertThat(lease.retryAfterMillis(1)).isEqualTo(60);
+		assertThat(lease.retryAfterMillis(3)).isEqualTo(180);
+	}
+
+	@Test
+	void requiresATokenBucketGlobalTier() {
+		properties.getGlobal().setAlgorithm(RateLimitAlgorithm.SLIDING_LOG);
+
+		assertThatIllegalStateException().isThrownBy(() -> new GlobalQuotaLease(properties, executor));
+	}
+
+	@Test
+	void cannotBeCombinedWithTheLocalEngine() {
+		properties.getLocal().setEnabled(true);
+
+		assertThatIllegalStateException().isThrownBy(() -> new GlobalQuotaLease(properties, executor));
+	}
+
+	private static List<Long> acquireConcurrently(GlobalQuotaLease lease, int callers) throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(callers);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Long>> generations = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				generations.add(threads.submit(() -> {
+					start.await();
+					return lease.tryAcquire(1);
+				}));
+			}
+			start.countDown();
+			List<Long> results = new ArrayList<>();
+			for (Future<Long> generation : generations) {
+				results.add(generation.get());
+			}
+			return results;
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class GlobalShardRouterTests {
+
+	private final RateLimiterProperties properties = new RateLimiterProperties();
+
+	private GlobalShardRouter router(int shards, long limit) {
+		properties.getSharding().setEnabled(true);
+		properties.getSharding().setShards(shards);
+		properties.getGlobal().setRequestLimit(limit);
+		return new GlobalShardRouter(properties);
+	}
+
+	@Test
+	void sharesAreEven() {
+		GlobalShardRouter router = router(4, 1000);
+
+		assertThat(IntStream.range(0, 4).mapToLong(router::limitFor)).containsOnly(250L);
+	}
+
+	@Test
+	void sharesAddUpToExactlyTheGlobalLimit() {
+		GlobalShardRouter router = router(8, 1003);
+
+		assertThat(IntStream.range(0, 8).mapToLong(router::limitFor)).containsOnly(125L, 126L);
+		assertThat(IntStream.range(0, 8).mapToLong(router::limitFor).sum()).isEqualTo(1003);
+	}
+
+	@Test
+	void routesAGlobalLimitBelowTheShardCountToThatManyShardsOfOne() {
+		GlobalShardRouter router = router(8, 3);
+
+		assertThat(IntStream.range(0, 1000).map(user -> router.route("user-" + user)).distinct().sorted())
+				.containsExactly(0, 1, 2);
+		assertThat(IntStream.range(0, 3).mapToLong(router::limitFor)).containsOnly(1L);
+	}
+
+	@Test
+	void refusesMoreShardsThanItKeepsEncodedTiersFor() {
+		assertThatIllegalStateException().isThrownBy(() -> router(GlobalShardRouter.MAX_SHARDS + 1, 1000));
+	}
+}
@@ -0,0 +1,54 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHitterDetectorTests {
+
+	private final RateLimiterProperties properties = new RateLimiterProperties();
+
+	@Test
+	void detectsKeysAtAMultipleOfTheirLimitAmongManyOthers() {
+		properties.getHeavyHitters().setWidth(1024);
+		HeavyHitterDetector detector = new HeavyHitterDetector(properties);
+		long now = 1_000_000;
+
+		// 60 per 60s allows 10 per 10s period, a heavy hitter makes 100
+		int detections = 0;
+		for (int i = 0; i < 20_000; i++) {
+			assertThat(detector.record(hash("user-" + i), 60, 60_000, now)).isZero();
+			long requests = i % 100 == 0 ? detector.record(hash("attacker"), 60, 60_000, now) : 0;
+			if (requests > 0) {
+				detector.report("attacker", requests, now);
+				detections++;
+			}
+		}
+
+		// Detected from its 100th request on, or a little earlier: 20k keys over 1024 counters a row add
+		// fewer than 20 to any count, and collisions only ever overestimate
+		assertThat(detections).isBetween(101, 121);
+		assertThat(detector.heavyHitters(now)).extracting(HeavyHitterDetector.HeavyHitter::key).containsExactly("attacker");
+		assertThat(detector.heavyHitters(now + 60_000)).isEmpty();
+	}
+
+	@Test
+	void startsCountingOverInTheNextPeriod() {
+		HeavyHitterDetector detector = new HeavyHitterDetector(properties);
+
+		for (int i = 0; i < 9; i++) {
+			assertThat(detector.record(hash("bob"), 5, 60_000, 1_000)).isZero();
+		}
+
+		assertThat(detector.record(hash("bob"), 5, 60_000, 11_000)).isZero();
+		assertThat(detector.record(hash("bob"), 5, 60_000, 1_000)).isZero();
+	}
+
+	/** Stands in for the service's seeded key hash */
+	private static long hash(String key) {
+		long h = key.hashCode() * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+}
@@ -0,0 +1,218 @@
+package com.sanjay.ratelimiter.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@code RateLimiterScript.lua} on jedis-mock, mostly one tier at a time, with the time passed in.
+ * Results are {@code {allowed, tier, limit, remaining, reset, retryAfter}}.
+ */
+class RateLimiterScriptTests {
+
+	/** A multiple of the window, so the sliding window counter starts at the beginning of a window */
+	private static final long NOW = 60_000_000;
+
+	private static final long WINDOW = 60_000;
+
+	private static RedisServer server;
+
+	private static Jedis jedis;
+
+	private int requests;
+
+	@BeforeAll
+	static void start() throws IOException {
+		server = RedisServer.newRedisServer().start();
+		jedis = new Jedis(server.getHost(), server.getBindPort());
+	}
+
+	@AfterAll
+	static void stop() throws IOException {
+		jedis.close();
+		server.stop();
+	}
+
+	@BeforeEach
+	void flush() {
+		jedis.flushAll();
+	}
+
+	private List<Long> run(RateLimitAlgorithm algorithm, long limit, long now, long cost) {
+		requests++;
+		return execute(algorithm, limit, now, cost);
+	}
+
+	/** Gives back the last request, which has to have had the same timestamp */
+	private List<Long> refund(RateLimitAlgorithm algorithm, long limit, long now, long cost) {
+		return execute(algorithm, limit, now, -cost);
+	}
+
+	private List<Long> execute(RateLimitAlgorithm algorithm, long limit, long now, long cost) {
+		byte[][] encodedKeys = new byte[algorithm.keyCount()][];
+		algorithm.writeKeys(encodedKeys, 0, RedisBytes.of("rate_limit:test"), now, WINDOW);
+		List<String> keys = new ArrayList<>();
+		for (byte[] key : encodedKeys) {
+			keys.add(new String(key, StandardCharsets.UTF_8));
+		}
+		List<String> args = List.of(String.valueOf(now), "1", "node:" + requests, String.valueOf(cost),
+				algorithm.name(), String.valueOf(WINDOW), String.valueOf(limit));
+		@SuppressWarnings("unchecked")
+		List<Long> result = (List<Long>) jedis.eval(LuaScript.RATE_LIMITER.source(), keys, args);
+		return result;
+	}
+
+	/** Runs one request on sliding log global, endpoint and user tiers with the given limits */
+	private List<Long> runTiers(long now, long globalLimit, long endpointLimit, long userLimit) {
+		requests++;
+		List<String> args = new ArrayList<>(List.of(String.valueOf(now), "3", "node:" + requests, "1"));
+		for (long limit : new long[] {globalLimit, endpointLimit, userLimit}) {
+			args.addAll(List.of(RateLimitAlgorithm.SLIDING_LOG.name(), String.valueOf(WINDOW), String.valueOf(limit)));
+		}
+		@SuppressWarnings("unchecked")
+		List<Long> result = (List<Long>) jedis.eval(LuaScript.RATE_LIMITER.source(),
+				List.of("rate_limit:global", "rate_limit:endpoint", "rate_limit:user"), args);
+		return result;
+	}
+
+	@Test
+	void aRequestTheUserTierDeniesRecordsNothingOnTheOtherTiers() {
+		// Allowed on all three tiers, reported for the user tier, which has the fewest remaining
+		assertThat(runTiers(NOW, 10, 5, 1)).containsExactly(1L, 3L, 1L, 0L, 60_000L, 0L);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(runTiers(NOW + 1_000, 10, 5, 1)).containsExactly(0L, 3L, 1L, 0L, 59_000L, 59_000L);
+		}
+		assertThat(jedis.zcard("rate_limit:global")).isEqualTo(1);
+		assertThat(jedis.zcard("rate_limit:endpoint")).isEqualTo(1);
+		assertThat(jedis.zcard("rate_limit:user")).isEqualTo(1);
+	}
+
+	@Test
+	void aRequestAnEarlierTierDeniesIsReportedForThatTier() {
+		assertThat(runTiers(NOW, 1, 5, 5)).containsExactly(1L, 1L, 1L, 0L, 60_000L, 0L);
+
+		assertThat(runTiers(NOW, 1, 5, 5)).containsExactly(0L, 1L, 1L, 0L, 60_000L, 60_000L);
+		assertThat(jedis.zcard("rate_limit:user")).isEqualTo(1);
+	}
+
+	@Test
+	void slidingLogCountsEveryRequestOfAMillisecondAndFreesThemAfterTheWindow() {
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW, 1)).containsExactly(1L, 1L, 3L, 2L, 60_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW, 1)).containsExactly(1L, 1L, 3L, 1L, 60_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 1_000, 1)).containsExactly(1L, 1L, 3L, 0L, 59_000L, 0L);
+
+		// Full: the oldest request leaves the window 59s from now
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 1_000, 1)).containsExactly(0L, 1L, 3L, 0L, 59_000L, 59_000L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 59_999, 1)).containsExactly(0L, 1L, 3L, 0L, 1L, 1L);
+
+		// Both requests of NOW have left the window, the one of NOW + 1s leaves a second later
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 60_000, 1)).containsExactly(1L, 1L, 3L, 1L, 1_000L, 0L);
+	}
+
+	@Test
+	void slidingLogWaitsForAsManyRequestsToLeaveAsTheCostNeeds() {
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW, 1)).containsExactly(1L, 1L, 3L, 2L, 60_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 1_000, 1)).containsExactly(1L, 1L, 3L, 1L, 59_000L, 0L);
+
+		// A cost of 2 needs the request of NOW to leave; a denied request records nothing
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 2_000, 2)).containsExactly(0L, 1L, 3L, 0L, 58_000L, 58_000L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 3, NOW + 60_000, 2)).containsExactly(1L, 1L, 3L, 0L, 1_000L, 0L);
+	}
+
+	@Test
+	void slidingLogRecordsCostsBeyondWhatOneZaddTakes() {
+		assertThat(run(RateLimitAlgorithm.SLIDING_LOG, 10_000, NOW, 5_000)).containsExactly(1L, 1L, 10_000L, 5_000L, 60_000L, 0L);
+		assertThat(jedis.zcard("rate_limit:test")).isEqualTo(5_000);
+	}
+
+	@Test
+	void tokenBucketRefillsAtLimitPerWindow() {
+		for (long remaining = 3; remaining >= 0; remaining--) {
+			assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW, 1))
+					.containsExactly(1L, 1L, 4L, remaining, (4 - remaining) * 15_000, 0L);
+		}
+
+		// Empty: one token accrues every 15s
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW, 1)).containsExactly(0L, 1L, 4L, 0L, 60_000L, 15_000L);
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW + 7_500, 1)).containsExactly(0L, 1L, 4L, 0L, 52_500L, 7_500L);
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW + 15_000, 1)).containsExactly(1L, 1L, 4L, 0L, 60_000L, 0L);
+	}
+
+	@Test
+	void tokenBucketTakesTheWholeCostOrNothing() {
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW, 3)).containsExactly(1L, 1L, 4L, 1L, 45_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW, 2)).containsExactly(0L, 1L, 4L, 0L, 45_000L, 15_000L);
+		assertThat(run(RateLimitAlgorithm.TOKEN_BUCKET, 4, NOW, 1)).containsExactly(1L, 1L, 4L, 0L, 60_000L, 0L);
+	}
+
+	@Test
+	void gcraAdmitsABurstOfLimitThenOneRequestPerInterval() {
+		for (long remaining = 3; remaining >= 0; remaining--) {
+			assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW, 1))
+					.containsExactly(1L, 1L, 4L, remaining, (4 - remaining) * 15_000, 0L);
+		}
+
+		// A denied request leaves the arrival time where it was
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW, 1)).containsExactly(0L, 1L, 4L, 0L, 60_000L, 15_000L);
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW + 10_000, 1)).containsExactly(0L, 1L, 4L, 0L, 50_000L, 5_000L);
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW + 15_000, 1)).containsExactly(1L, 1L, 4L, 0L, 60_000L, 0L);
+	}
+
+	@Test
+	void gcraChargesTheCostInIntervals() {
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW, 3)).containsExactly(1L, 1L, 4L, 1L, 45_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW, 2)).containsExactly(0L, 1L, 4L, 0L, 45_000L, 15_000L);
+		assertThat(run(RateLimitAlgorithm.GCRA, 4, NOW + 15_000, 2)).containsExactly(1L, 1L, 4L, 0L, 60_000L, 0L);
+	}
+
+	@Test
+	void slidingWindowCounterWeighsThePreviousWindowByItsOverlap() {
+		for (long remaining = 3; remaining >= 0; remaining--) {
+			assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW, 1))
+					.containsExactly(1L, 1L, 4L, remaining, 120_000L, 0L);
+		}
+
+		// Full in the current window: wait for the next one, and for a quarter of this one to slide out
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW, 1)).containsExactly(0L, 1L, 4L, 0L, 120_000L, 75_000L);
+
+		// Next window: the previous one still counts in full, then by how much of it still overlaps
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW + 60_000, 1)).containsExactly(0L, 1L, 4L, 0L, 60_000L, 15_000L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW + 75_000, 1)).containsExactly(1L, 1L, 4L, 0L, 105_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW + 75_000, 1)).containsExactly(0L, 1L, 4L, 0L, 105_000L, 15_000L);
+	}
+
+	@Test
+	void slidingWindowCounterWaitsUntilTheCostFits() {
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW, 2)).containsExactly(1L, 1L, 4L, 2L, 120_000L, 0L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW, 2)).containsExactly(1L, 1L, 4L, 0L, 120_000L, 0L);
+
+		// Half of this window has to slide out of the next one before 2 more fit
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW, 2)).containsExactly(0L, 1L, 4L, 0L, 120_000L, 90_000L);
+		assertThat(run(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER, 4, NOW + 90_000, 2)).containsExactly(1L, 1L, 4L, 0L, 90_000L, 0L);
+	}
+
+	@Test
+	void aNegativeCostGivesBackTheRequestOnEveryEngine() {
+		for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+			assertThat(run(algorithm, 4, NOW, 2).get(3)).as("%s", algorithm).isEqualTo(2);
+			assertThat(run(algorithm, 4, NOW, 1).get(3)).as("%s", algorithm).isEqualTo(1);
+
+			assertThat(refund(algorithm, 4, NOW, 1)).isEmpty();
+			assertThat(run(algorithm, 4, NOW, 1).get(3)).as("%s after the refund", algorithm).isEqualTo(1);
+			assertThat(run(algorithm, 4, NOW, 1).get(3)).as("%s", algorithm).isEqualTo(0);
+		}
+	}
+}
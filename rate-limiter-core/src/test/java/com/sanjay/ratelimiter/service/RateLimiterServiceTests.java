@@ -0,0 +1,389 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.LocalScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.TopKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class RateLimiterServiceTests {
+
+	private final RateLimiterProperties properties = new RateLimiterProperties();
+
+	private final RateLimiterService service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()),
+			properties, null, null, new GlobalShardRouter(properties), new BlockedKeyCache(properties),
+			new HeavyHitterDetector(properties));
+
+	private static List<String> decode(byte[][] encoded) {
+		List<String> strings = new ArrayList<>();
+		for (byte[] bytes : encoded) {
+			strings.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return strings;
+	}
+
+	@Test
+	void encodesKeysAndArgumentsOfEveryTier() {
+		RateLimiterProperties.RateLimitConfig login = new RateLimiterProperties.RateLimitConfig();
+		login.setAlgorithm(RateLimitAlgorithm.TOKEN_BUCKET);
+		login.setRequestLimit(3);
+		properties.getEndpoints().put("/login", login);
+
+		RateLimiterService.Evaluation evaluation = service.prepare("jörg", "/login", 2);
+		List<String> keysAndArgs = decode(evaluation.keysAndArgs());
+
+		assertThat(evaluation.keyCount()).isEqualTo(3);
+		assertThat(keysAndArgs.subList(0, 3))
+				.containsExactly("rate_limit:global", "rate_limit:endpoint:{/login}:tb", "rate_limit:user:{/login}:jörg:tb");
+		assertThat(keysAndArgs.get(4)).isEqualTo("3");
+		assertThat(keysAndArgs.get(5)).matches("[0-9a-f]+:1");
+		assertThat(keysAndArgs.subList(6, 16)).containsExactly("2",
+				"SLIDING_LOG", "60000", "5", "TOKEN_BUCKET", "60000", "3", "TOKEN_BUCKET", "60000", "3");
+	}
+
+	@Test
+	void skipsTheUserTierOfARequestWithoutUser() {
+		RateLimiterService.Evaluation evaluation = service.prepare(null, "/login", 1);
+		List<String> keysAndArgs = decode(evaluation.keysAndArgs());
+
+		assertThat(evaluation.keyCount()).isEqualTo(2);
+		assertThat(keysAndArgs.subList(0, 2)).containsExactly("rate_limit:global", "rate_limit:endpoint:{/login}");
+		assertThat(keysAndArgs.get(3)).isEqualTo("2");
+		assertThat(keysAndArgs.subList(6, 12)).containsExactly("SLIDING_LOG", "60000", "5", "SLIDING_LOG", "60000", "5");
+	}
+
+	@Test
+	void reencodesAConfigurationChangedInPlace() {
+		service.prepare("alice", "/data", 1);
+		properties.getDefaultConfig().setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER);
+		properties.getDefaultConfig().setRequestLimit(7);
+
+		RateLimiterService.Evaluation evaluation = service.prepare("alice", "/data", 1);
+		List<String> keysAndArgs = decode(evaluation.keysAndArgs());
+		long window = Long.parseLong(keysAndArgs.get(evaluation.keyCount())) / 60_000;
+
+		assertThat(evaluation.keyCount()).isEqualTo(5);
+		assertThat(keysAndArgs.subList(1, 5)).containsExactly(
+				"rate_limit:endpoint:{/data}:swc:" + window, "rate_limit:endpoint:{/data}:swc:" + (window - 1),
+				"rate_limit:user:{/data}:alice:swc:" + window, "rate_limit:user:{/data}:alice:swc:" + (window - 1));
+		assertThat(keysAndArgs.subList(keysAndArgs.size() - 3, keysAndArgs.size()))
+				.containsExactly("SLIDING_WINDOW_COUNTER", "60000", "7");
+	}
+
+	@Test
+	void capsTheCostAtTheConfiguredMaximumAndTheTightestLimit() {
+		properties.getGlobal().setRequestLimit(10_000);
+		properties.getDefaultConfig().setRequestLimit(50);
+		assertThat(service.maxCost("/data")).isEqualTo(50);
+
+		properties.getDefaultConfig().setRequestLimit(5_000);
+		assertThat(service.maxCost("/data")).isEqualTo(1_000);
+	}
+
+	@Test
+	void rejectsCostsBelowOne() {
+		// A negative cost would take the script's refund branch and give quota back
+		assertThatIllegalArgumentException().isThrownBy(() -> service.prepare("alice", "/data", -5));
+		assertThatIllegalArgumentException().isThrownBy(() -> service.prepare("alice", "/data", 0));
+		assertThatIllegalArgumentException().isThrownBy(() -> service.prepareThrottle("alice", 10, 1000, -1));
+		assertThatIllegalArgumentException().isThrownBy(() -> service.decideAll(
+				List.of(new RateLimitRequest("alice", "/data", 1L), new RateLimitRequest("bob", "/data", 0L))));
+	}
+
+	@Test
+	void givesLeasedTokensBackWhenTheScriptFails() {
+		properties.getLease().setEnabled(true);
+		properties.getLease().setChunkPercent(10);
+		properties.getLease().setRenewAtPercent(0);
+		properties.getGlobal().setAlgorithm(RateLimitAlgorithm.TOKEN_BUCKET);
+		properties.getGlobal().setRequestLimit(1000);
+		AtomicInteger leaseCalls = new AtomicInteger();
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, (script, keys, args) -> {
+			leaseCalls.incrementAndGet();
+			return List.of(Long.parseLong(args.get(4)), 0L);
+		});
+		AtomicBoolean redisDown = new AtomicBoolean(true);
+		RedisScriptExecutor executor = (script, keys, args) -> {
+			if (redisDown.get()) {
+				throw new IllegalStateException("Redis is down");
+			}
+			return List.of(1L, 1L, 5L, 4L, 60_000L, 0L);
+		};
+		RateLimiterService service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties,
+				executor, lease, new GlobalShardRouter(properties), new BlockedKeyCache(properties),
+				new HeavyHitterDetector(properties));
+
+		for (int i = 0; i < 100; i++) {
+			assertThatIllegalStateException().isThrownBy(() -> service.decide("alice", "/data", 1));
+		}
+		assertThatIllegalStateException().isThrownBy(() -> service.decideAll(List.of(
+				new RateLimitRequest("alice", "/data", 30L), new RateLimitRequest("bob", "/data", 70L))));
+
+		// The chunk of 100 leased by the first decision is still whole
+		redisDown.set(false);
+		for (int i = 0; i < 100; i++) {
+			assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		}
+		assertThat(leaseCalls).hasValue(1);
+	}
+
+	/** A service on the local engine, counting its script executions */
+	private RateLimiterService countingService(AtomicInteger executions) {
+		LocalScriptExecutor local = new LocalScriptExecutor(new AtomicStateStore(1024));
+		RedisScriptExecutor executor = new RedisScriptExecutor() {
+			@Override
+			public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+				return local.execute(script, keys, args);
+			}
+
+			@Override
+			public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+				executions.incrementAndGet();
+				return local.execute(script, keyCount, keysAndArgs);
+			}
+		};
+		return new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties, executor, null,
+				new GlobalShardRouter(properties), new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+	}
+
+	@Test
+	void deniesRepeatsOfADeniedRequestFromTheDenyCacheUntilItsRetryAfter() {
+		properties.getGlobal().setRequestLimit(1000);
+		properties.getDefaultConfig().setRequestLimit(1);
+		AtomicInteger executions = new AtomicInteger();
+		RateLimiterService service = countingService(executions);
+
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		RateLimitDecision denied = service.decide("alice", "/data", 1);
+		assertThat(denied.tier()).isEqualTo(RateLimitTier.ENDPOINT);
+		assertThat(executions).hasValue(2);
+
+		// Cached until the denial's retry-after: the endpoint tier denies everyone without a script
+		for (String user : List.of("alice", "bob")) {
+			RateLimitDecision cached = service.decide(user, "/data", 1);
+			assertThat(cached.tier()).isEqualTo(RateLimitTier.ENDPOINT);
+			assertThat(cached.retryAfterMillis()).isPositive().isLessThanOrEqualTo(denied.retryAfterMillis());
+		}
+		assertThat(executions).hasValue(2);
+	}
+
+	@Test
+	void doesNotCacheTheDenialOfALargerCost() {
+		properties.getGlobal().setRequestLimit(1000);
+		properties.getDefaultConfig().setRequestLimit(3);
+		AtomicInteger executions = new AtomicInteger();
+		RateLimiterService service = countingService(executions);
+
+		assertThat(service.decide("alice", "/data", 2).allowed()).isTrue();
+		assertThat(service.decide("alice", "/data", 2).allowed()).isFalse();
+		// A single request still fits, and is decided by the script
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		assertThat(executions).hasValue(3);
+	}
+
+	@Test
+	void decidesByScriptAgainOnceTheDenialExpired() throws InterruptedException {
+		properties.getGlobal().setRequestLimit(1000);
+		properties.getDefaultConfig().setRequestLimit(1);
+		properties.getDefaultConfig().setWindowDuration(1);
+		AtomicInteger executions = new AtomicInteger();
+		RateLimiterService service = countingService(executions);
+
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		RateLimitDecision denied = service.decide("alice", "/data", 1);
+		assertThat(denied.retryAfterMillis()).isLessThanOrEqualTo(1_000);
+
+		Thread.sleep(denied.retryAfterMillis() + 100);
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		assertThat(executions).hasValue(3);
+	}
+
+	@Test
+	void cachesThrottleDenialsPerBurstAndPeriod() {
+		AtomicInteger executions = new AtomicInteger();
+		RateLimiterService service = countingService(executions);
+
+		assertThat(service.throttle("carol", 1, 60_000, 1).allowed()).isTrue();
+		assertThat(service.throttle("carol", 1, 60_000, 1).allowed()).isFalse();
+		assertThat(service.throttle("carol", 1, 60_000, 1).allowed()).isFalse();
+		assertThat(executions).hasValue(2);
+
+		// A larger burst or a shorter period is not answered with the cached denial
+		service.throttle("carol", 5, 60_000, 1);
+		service.throttle("carol", 1, 1_000, 1);
+		assertThat(executions).hasValue(4);
+	}
+
+	@Test
+	void givesARequestTheGlobalShardDeniedBackToItsEndpointAndUser() {
+		properties.getSharding().setEnabled(true);
+		properties.getSharding().setShards(1);
+		properties.getDenyCache().setEnabled(false);
+		properties.getGlobal().setRequestLimit(2);
+		properties.getDefaultConfig().setRequestLimit(3);
+		RateLimiterService service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties,
+				new LocalScriptExecutor(new AtomicStateStore(1024)), null, new GlobalShardRouter(properties),
+				new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		assertThat(service.decide("alice", "/data", 1).allowed()).isTrue();
+		assertThat(service.decide("alice", "/data", 1).tier()).isEqualTo(RateLimitTier.GLOBAL);
+
+		// Only the two allowed requests count against the endpoint's and alice's limit of 3,
+		// as the unsharded global key, which has not seen any requests, shows
+		properties.getSharding().setEnabled(false);
+		RateLimitDecision decision = service.decide("alice", "/data", 1);
+		assertThat(decision.allowed()).isTrue();
+		assertThat(decision.remaining()).isZero();
+	}
+
+	@Test
+	void keepsTheKeysOfEveryScriptExecutionInOneClusterSlot() {
+		properties.getSharding().setEnabled(true);
+		properties.getGlobal().setRequestLimit(8000);
+		properties.getDefaultConfig().setRequestLimit(100);
+		RateLimiterProperties.RateLimitConfig search = new RateLimiterProperties.RateLimitConfig();
+		search.setAlgorithm(RateLimitAlgorithm.SLIDING_WINDOW_COUNTER);
+		search.setRequestLimit(100);
+		properties.getEndpoints().put("/search", search);
+		LocalScriptExecutor local = new LocalScriptExecutor(new AtomicStateStore(1024));
+		List<List<String>> executions = new ArrayList<>();
+		RedisScriptExecutor executor = new RedisScriptExecutor() {
+			@Override
+			public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+				executions.add(keys);
+				return local.execute(script, keys, args);
+			}
+		};
+		RateLimiterService service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties,
+				executor, null, new GlobalShardRouter(properties), new BlockedKeyCache(properties),
+				new HeavyHitterDetector(properties));
+
+		for (String endpoint : List.of("/login", "/search")) {
+			for (int user = 0; user < 20; user++) {
+				assertThat(service.decide("user-" + user, endpoint, 1).allowed()).isTrue();
+			}
+		}
+
+		// Endpoint and user tiers first, then the global shard on its own
+		assertThat(executions).hasSize(80);
+		for (int i = 0; i < executions.size(); i++) {
+			assertThat(executions.get(i)).extracting(key -> JedisClusterCRC16.getSlot(key.getBytes(StandardCharsets.UTF_8)))
+					.as("slots of %s", executions.get(i)).containsOnly(JedisClusterCRC16.getSlot(executions.get(i).get(0)));
+			assertThat(executions.get(i).get(0)).startsWith(i % 2 == 0 ? "rate_limit:endpoint:" : "rate_limit:global:");
+		}
+	}
+
+	@Test
+	void recordsDecisionsAndScriptExecutionsPerTier() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		properties.getGlobal().setRequestLimit(1000);
+		LocalScriptExecutor executor = new LocalScriptExecutor(new AtomicStateStore(64));
+		RateLimiterService service = new RateLimiterService(new RateLimitMonitor(registry), properties, executor,
+				null, new GlobalShardRouter(properties), new BlockedKeyCache(properties),
+				new HeavyHitterDetector(properties));
+
+		// Five allowed, one denied by the endpoint tier, one denied by the deny cache without a script
+		for (int i = 0; i < 7; i++) {
+			service.decide("bob", "/data", 1);
+		}
+
+		assertThat(registry.find("rate_limiter_decisions").tag("outcome", "allowed").counters())
+				.extracting(Counter::count).containsOnly(0.0, 5.0).hasSize(4);
+		assertThat(registry.get("rate_limiter_decisions").tags("tier", "endpoint", "outcome", "denied").counter().count())
+				.isEqualTo(2);
+		assertThat(registry.get("rate_limiter_requests_total").counter().count()).isEqualTo(7);
+		assertThat(registry.get("rate_limiter_requests_total_dropped").counter().count()).isEqualTo(2);
+		assertThat(registry.find("rate_limiter_decision_duration").timers()).extracting(Timer::count).containsOnly(0L, 5L, 2L);
+		assertThat(registry.get("rate_limiter_script_duration").tags("tier", "endpoint", "outcome", "denied").timer().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void countsConfiguredEndpointsAndRanksTheirHeaviestUsers() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		properties.getGlobal().setRequestLimit(1000);
+		properties.getDefaultConfig().setRequestLimit(1000);
+		properties.getEndpoints().put("/data", new RateLimiterProperties.RateLimitConfig());
+		properties.getMetrics().setTopUsers(2);
+		properties.getMetrics().setSampleRate(1);
+		RateLimitMonitor monitor = new RateLimitMonitor(registry, properties);
+		RateLimiterService service = new RateLimiterService(monitor, properties,
+				new LocalScriptExecutor(new AtomicStateStore(1024)), null, new GlobalShardRouter(properties),
+				new BlockedKeyCache(properties), new HeavyHitterDetector(properties));
+
+		for (int i = 0; i < 3; i++) {
+			service.decide("carol", "/data", 1);
+		}
+		service.decide("dave", "/data", 1);
+		for (int user = 0; user < 100; user++) {
+			service.decide("user-" + user, "/unconfigured-" + user, 1);
+		}
+		service.throttle("carol", 10, 1000, 1);
+
+		assertThat(registry.get("rate_limiter_endpoint_decisions").tags("endpoint", "/data", "outcome", "allowed")
+				.counter().count()).isEqualTo(4);
+		assertThat(registry.get("rate_limiter_endpoint_decisions").tags("endpoint", "other", "outcome", "allowed")
+				.counter().count()).isEqualTo(100);
+		assertThat(registry.find("rate_limiter_endpoint_decisions").counters()).hasSize(4);
+		assertThat(registry.get("rate_limiter_top_user_requests").tags("endpoint", "/data", "rank", "1").gauge().value())
+				.isEqualTo(3);
+		assertThat(registry.find("rate_limiter_top_user_requests").gauges()).hasSize(4);
+		assertThat(monitor.topUsers().get("/data")).extracting(TopKeys.Entry::key).containsExactly("carol", "dave");
+	}
+
+	@Test
+	void blocksHeavyHittersLocally() {
+		properties.getGlobal().setRequestLimit(1000);
+		properties.getDenyCache().setEnabled(false);
+		properties.getHeavyHitters().setEnabled(true);
+		properties.getHeavyHitters().setPeriodSeconds(3600);
+		properties.getDefaultConfig().setWindowDuration(36_000);
+		LocalScriptExecutor local = new LocalScriptExecutor(new AtomicStateStore(64));
+		AtomicInteger executions = new AtomicInteger();
+		RedisScriptExecutor executor = new RedisScriptExecutor() {
+			@Override
+			public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+				return local.execute(script, keys, args);
+			}
+
+			@Override
+			public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+				executions.incrementAndGet();
+				return local.execute(script, keyCount, keysAndArgs);
+			}
+		};
+		HeavyHitterDetector heavyHitters = new HeavyHitterDetector(properties);
+		RateLimiterService service = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()), properties,
+				executor, null, new GlobalShardRouter(properties), new BlockedKeyCache(properties), heavyHitters);
+
+		// 5 per 36000s allows under one request per period, so the 10th request is 10 times too many
+		for (int i = 0; i < 100; i++) {
+			service.decide("mallory", "/login", 1);
+		}
+
+		assertThat(executions).hasValue(9);
+		assertThat(service.decide("mallory", "/login", 1).retryAfterMillis()).isGreaterThan(59_000).isLessThanOrEqualTo(60_000);
+		// Other users still go to the script, which finds the endpoint full
+		assertThat(service.decide("alice", "/login", 1).tier()).isEqualTo(RateLimitTier.ENDPOINT);
+		assertThat(executions).hasValue(10);
+		assertThat(heavyHitters.heavyHitters(System.currentTimeMillis()))
+				.extracting(HeavyHitterDetector.HeavyHitter::key).containsExactly("rate_limit:user:{/login}:mallory");
+	}
+}
@@ -0,0 +1,48 @@
+package com.sanjay.ratelimiter.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKeysTests {
+
+	@Test
+	void findsHeavyKeysAmongManyMoreKeysThanCounters() {
+		TopKeys topKeys = new TopKeys(64, 60_000, 1);
+
+		for (int i = 0; i < 100_000; i++) {
+			topKeys.add("user-" + i, 1000);
+			if (i % 10 == 0) {
+				topKeys.add("heavy", 1000);
+			}
+			if (i % 20 == 0) {
+				topKeys.add("medium", 1000);
+			}
+		}
+
+		assertThat(topKeys.top(2, 1000)).extracting(TopKeys.Entry::key).containsExactly("heavy", "medium");
+		assertThat(topKeys.top(1, 1000).get(0).count() - topKeys.top(1, 1000).get(0).error())
+				.isLessThanOrEqualTo(10_000);
+	}
+
+	@Test
+	void scalesSampledCountsBackToAllRequests() {
+		TopKeys topKeys = new TopKeys(64, 60_000, 8);
+		for (int i = 0; i < 80_000; i++) {
+			topKeys.add("heavy", 1000);
+		}
+
+		assertThat(topKeys.top(1, 1000).get(0).count()).isBetween(72_000L, 88_000L);
+	}
+
+	@Test
+	void halvesCountsEveryDecayPeriod() {
+		TopKeys topKeys = new TopKeys(8, 1000, 1);
+		for (int i = 0; i < 8; i++) {
+			topKeys.add("alice", 0);
+		}
+
+		assertThat(topKeys.top(1, 999).get(0).count()).isEqualTo(8);
+		assertThat(topKeys.top(1, 2500).get(0).count()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,100 @@
+package com.sanjay.ratelimiter.binary;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides the request frames of one connection of the binary protocol.
+ *
+ * <p>Each request is handed to the {@link ReactiveRateLimiterService} as soon as it is decoded, so any
+ * number of pipelined requests are in flight at once and no event loop thread waits on Redis. Responses
+ * are written as decisions complete. When {@code maxInFlight} requests of a connection are pending, the
+ * handler stops reading from it until half of them have been answered.
+ *
+ * @see BinaryProtocol
+ */
+@Slf4j
+class BinaryDecisionHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private final int maxInFlight;
+
+    /** Requests of this connection decoded but not yet answered, only touched on the event loop */
+    private int inFlight;
+
+    BinaryDecisionHandler(ReactiveRateLimiterService rateLimiterService, int maxInFlight) {
+        this.rateLimiterService = rateLimiterService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+        if (frame.readableBytes() < 8) {
+            log.debug("Closing {}: frame without a request id", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        long requestId = frame.getLong(frame.readerIndex());
+
+        BinaryProtocol.Request request;
+        try {
+            request = BinaryProtocol.decodeRequest(frame);
+        } catch (IllegalArgumentException e) {
+            ctx.writeAndFlush(status(ctx, requestId, BinaryProtocol.BAD_REQUEST));
+            return;
+        }
+        if (request.cost() > rateLimiterService.maxCost(request.endpoint())) {
+            ctx.writeAndFlush(status(ctx, requestId, BinaryProtocol.BAD_REQUEST));
+            return;
+        }
+
+        if (++inFlight >= maxInFlight) {
+            ctx.channel().config().setAutoRead(false);
+        }
+        rateLimiterService.decide(request.userId(), request.endpoint(), request.cost())
+                .subscribe(
+                        decision -> respond(ctx, decision(ctx, requestId, decision)),
+                        error -> {
+                            log.warn("Decision for request {} failed", requestId, error);
+                            respond(ctx, status(ctx, requestId, BinaryProtocol.ERROR));
+                        });
+    }
+
+    /**
+     * Writes a response and resumes reading once enough responses are out. Decisions complete on Redis
+     * threads, the bookkeeping moves to the connection's event loop.
+     */
+    private void respond(ChannelHandlerContext ctx, ByteBuf response) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> respond(ctx, response));
+            return;
+        }
+        ctx.writeAndFlush(response);
+        if (--inFlight <= maxInFlight / 2 && !ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private static ByteBuf decision(ChannelHandlerContext ctx, long requestId, RateLimitDecision decision) {
+        ByteBuf response = ctx.alloc().buffer(BinaryProtocol.LENGTH_FIELD_LENGTH + BinaryProtocol.RESPONSE_LENGTH);
+        BinaryProtocol.encodeDecision(response, requestId, decision);
+        return response;
+    }
+
+    private static ByteBuf status(ChannelHandlerContext ctx, long requestId, byte status) {
+        ByteBuf response = ctx.alloc().buffer(BinaryProtocol.LENGTH_FIELD_LENGTH + BinaryProtocol.RESPONSE_LENGTH);
+        BinaryProtocol.encodeStatus(response, requestId, status);
+        return response;
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("Closing {}: {}", ctx.channel().remoteAddress(), cause.toString());
+        ctx.close();
+    }
+}
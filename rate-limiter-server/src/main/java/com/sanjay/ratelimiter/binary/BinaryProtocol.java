@@ -0,0 +1,148 @@
+package com.sanjay.ratelimiter.binary;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the binary decision protocol.
+ *
+ * <p>Every message is a frame prefixed with its length as a 4-byte big-endian int, not counting the prefix:
+ * <pre>
+ * request:  long requestId | short userIdLength | userId (UTF-8) | short endpointLength | endpoint (UTF-8) | int cost
+ * response: long requestId | byte status | byte tier | long limit | long remaining | long resetMillis | long retryAfterMillis
+ * </pre>
+ *
+ * <p>Clients may pipeline any number of requests on a connection without waiting for responses.
+ * Responses are sent as soon as each decision is made, so they can arrive out of order and are matched
+ * to their request by the request id, which the server only echoes.
+ *
+ * <p>{@code status} is one of {@link #DENIED}, {@link #ALLOWED}, {@link #BAD_REQUEST} or {@link #ERROR};
+ * {@code tier} is the ordinal of the reported {@link com.sanjay.ratelimiter.service.RateLimitTier}, or
+ * {@link #NO_TIER}. The remaining fields are those of {@link RateLimitDecision} and are zero unless the
+ * status is {@link #DENIED} or {@link #ALLOWED}.
+ */
+public final class BinaryProtocol {
+
+    /** Largest accepted request frame, user id and endpoint included */
+    public static final int MAX_FRAME_LENGTH = 4096;
+
+    /** Length of the length prefix */
+    public static final int LENGTH_FIELD_LENGTH = 4;
+
+    /** Length of a response frame without its prefix */
+    public static final int RESPONSE_LENGTH = 8 + 1 + 1 + 4 * 8;
+
+    public static final byte DENIED = 0;
+    public static final byte ALLOWED = 1;
+    public static final byte BAD_REQUEST = 2;
+    public static final byte ERROR = 3;
+
+    public static final byte NO_TIER = -1;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * A decoded request.
+     */
+    public record Request(long requestId, String userId, String endpoint, long cost) {}
+
+    /**
+     * Decodes a request frame without its length prefix.
+     *
+     * @param frame the frame
+     * @return the request
+     * @throws IllegalArgumentException if the frame is malformed, a string is blank or the cost is below 1
+     */
+    public static Request decodeRequest(ByteBuf frame) {
+        if (frame.readableBytes() < 8) {
+            throw new IllegalArgumentException("Frame too short for a request id");
+        }
+        long requestId = frame.readLong();
+        String userId = readString(frame);
+        String endpoint = readString(frame);
+        if (frame.readableBytes() != 4) {
+            throw new IllegalArgumentException("Frame length does not match its fields");
+        }
+        int cost = frame.readInt();
+        if (cost < 1) {
+            throw new IllegalArgumentException("cost must be at least 1");
+        }
+        return new Request(requestId, userId, endpoint, cost);
+    }
+
+    /**
+     * Encodes a request frame, length prefix included.
+     *
+     * @param out     buffer to write to
+     * @param request the request
+     */
+    public static void encodeRequest(ByteBuf out, Request request) {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        out.writeLong(request.requestId());
+        writeString(out, request.userId());
+        writeString(out, request.endpoint());
+        out.writeInt((int) request.cost());
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - LENGTH_FIELD_LENGTH);
+    }
+
+    /**
+     * Encodes the response frame of a decision, length prefix included.
+     *
+     * @param out       buffer to write to
+     * @param requestId id of the request decided
+     * @param decision  the decision
+     */
+    public static void encodeDecision(ByteBuf out, long requestId, RateLimitDecision decision) {
+        out.writeInt(RESPONSE_LENGTH);
+        out.writeLong(requestId);
+        out.writeByte(decision.allowed() ? ALLOWED : DENIED);
+        out.writeByte(decision.tier() == null ? NO_TIER : decision.tier().ordinal());
+        out.writeLong(decision.limit());
+        out.writeLong(decision.remaining());
+        out.writeLong(decision.resetMillis());
+        out.writeLong(decision.retryAfterMillis());
+    }
+
+    /**
+     * Encodes a response frame without a decision, length prefix included.
+     *
+     * @param out       buffer to write to
+     * @param requestId id of the request
+     * @param status    {@link #BAD_REQUEST} or {@link #ERROR}
+     */
+    public static void encodeStatus(ByteBuf out, long requestId, byte status) {
+        out.writeInt(RESPONSE_LENGTH);
+        out.writeLong(requestId);
+        out.writeByte(status);
+        out.writeByte(NO_TIER);
+        out.writeZero(4 * 8);
+    }
+
+    private static String readString(ByteBuf frame) {
+        if (frame.readableBytes() < 2) {
+            throw new IllegalArgumentException("Frame too short for a string length");
+        }
+        int length = frame.readUnsignedShort();
+        if (length == 0 || frame.readableBytes() < length) {
+            throw new IllegalArgumentException("Empty or truncated string");
+        }
+        String value = frame.toString(frame.readerIndex(), length, StandardCharsets.UTF_8);
+        frame.skipBytes(length);
+        // Blank ids are rejected as by the REST API; they would still make Redis keys of their own
+        if (value.isBlank()) {
+            throw new IllegalArgumentException("Blank string");
+        }
+        return value;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        int length = out.writeCharSequence(value, StandardCharsets.UTF_8);
+        out.setShort(lengthIndex, length);
+    }
+}
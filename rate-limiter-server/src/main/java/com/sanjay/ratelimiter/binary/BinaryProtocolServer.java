@@ -0,0 +1,134 @@
+package com.sanjay.ratelimiter.binary;
+
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.util.RateLimiterServerProperties;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener for the binary decision protocol, a lighter alternative to the REST endpoint for
+ * high-volume callers such as gateways and sidecars.
+ *
+ * <p>Listens on a TCP port and, on Linux, optionally on a Unix domain socket. Both use the same
+ * pipeline: length-prefixed frames are decoded and decided by a {@link BinaryDecisionHandler}, and
+ * flushes of responses completing close together are consolidated into fewer writes.
+ *
+ * @see BinaryProtocol
+ * @see RateLimiterServerProperties.BinaryConfig
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BinaryProtocolServer {
+
+    /** Flushes coalesced into one while responses keep coming */
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
+    /** Centralized configuration that defines the listener addresses */
+    private final RateLimiterServerProperties properties;
+
+    /** Non-blocking service deciding the requests */
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private EventLoopGroup bossGroup;
+
+    private EventLoopGroup workerGroup;
+
+    private final List<Channel> channels = new ArrayList<>();
+
+    @PostConstruct
+    void start() throws InterruptedException {
+        var binary = properties.getBinary();
+        if (!binary.isEnabled()) {
+            return;
+        }
+
+        boolean epoll = Epoll.isAvailable();
+        bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+        workerGroup = epoll ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+
+        bind(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class,
+                new InetSocketAddress(binary.getPort()));
+
+        if (!binary.getUnixSocket().isBlank()) {
+            if (epoll) {
+                deleteSocketFile();
+                bind(EpollServerDomainSocketChannel.class, new DomainSocketAddress(binary.getUnixSocket()));
+            } else {
+                log.warn("Unix domain socket {} needs the native epoll transport (Linux), not listening on it",
+                        binary.getUnixSocket());
+            }
+        }
+    }
+
+    private void bind(Class<? extends ServerChannel> channelType, SocketAddress address) throws InterruptedException {
+        int maxInFlight = properties.getBinary().getMaxInFlight();
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(channelType)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(
+                                new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true),
+                                new LengthFieldBasedFrameDecoder(BinaryProtocol.MAX_FRAME_LENGTH,
+                                        0, BinaryProtocol.LENGTH_FIELD_LENGTH, 0, BinaryProtocol.LENGTH_FIELD_LENGTH),
+                                new BinaryDecisionHandler(rateLimiterService, maxInFlight));
+                    }
+                });
+        if (address instanceof InetSocketAddress) {
+            bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        }
+        Channel channel = bootstrap.bind(address).sync().channel();
+        channels.add(channel);
+        log.info("Binary decision protocol listening on {}", address);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (bossGroup == null) {
+            return;
+        }
+        channels.forEach(Channel::close);
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+        if (!properties.getBinary().getUnixSocket().isBlank() && Epoll.isAvailable()) {
+            deleteSocketFile();
+        }
+    }
+
+    /** A socket file left behind by an earlier run would make the bind fail */
+    private void deleteSocketFile() {
+        try {
+            Files.deleteIfExists(Path.of(properties.getBinary().getUnixSocket()));
+        } catch (IOException e) {
+            log.warn("Could not delete {}", properties.getBinary().getUnixSocket(), e);
+        }
+    }
+}
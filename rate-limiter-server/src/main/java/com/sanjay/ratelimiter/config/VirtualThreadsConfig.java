@@ -0,0 +1,26 @@
+package com.sanjay.ratelimiter.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Checks the runtime of the virtual-thread mode ({@code application-virtual-threads.yaml}).
+ *
+ * <p>Spring Boot only switches Tomcat to virtual threads on Java 21 or newer; elsewhere the property
+ * is silently ignored, so this reports it instead of letting a load test measure platform threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfig {
+
+    public VirtualThreadsConfig(){
+        if(Runtime.version().feature() < 21){
+            log.warn("spring.threads.virtual.enabled requires Java 21+, requests run on platform threads on Java {}",
+                    Runtime.version().feature());
+        } else {
+            log.info("Serving requests on virtual threads");
+        }
+    }
+}
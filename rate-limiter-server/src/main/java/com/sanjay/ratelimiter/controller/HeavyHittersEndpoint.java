@@ -0,0 +1,26 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.service.HeavyHitterDetector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint {@code /actuator/heavyhitters}: the heaviest user keys currently blocked locally for
+ * requesting at a multiple of their limit, with their estimated requests when they were detected.
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+@RequiredArgsConstructor
+public class HeavyHittersEndpoint {
+
+    private final HeavyHitterDetector detector;
+
+    @ReadOperation
+    public List<HeavyHitterDetector.HeavyHitter> heavyHitters() {
+        return detector.heavyHitters(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,115 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitRequest;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.web.RateLimitHeaders;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Rate limit checks for the servlet (Spring MVC) stack.
+ *
+ * @see ReactiveLimitController
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
+@RequestMapping("/api")
+public class LimitController {
+
+    /** Largest number of requests accepted in one batch */
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final RateLimiterService rateLimiterService;
+
+    @GetMapping("/limit")
+    public ResponseEntity<String> checkLimit(@RequestParam String userId, @RequestParam String endpoint,
+                                             @RequestParam(defaultValue = "1") long cost){
+        String error = validateRequest(userId, endpoint, cost, rateLimiterService::maxCost);
+        if(error != null){
+            return ResponseEntity.badRequest().body(error);
+        }
+        RateLimitDecision decision = rateLimiterService.decide(userId, endpoint, cost);
+        if(! decision.allowed()){
+            return ResponseEntity
+                    .status(429)
+                    .headers(RateLimitHeaders.of(decision))
+                    .body("Too many request for " + endpoint);
+        }
+
+        return ResponseEntity.status(200).headers(RateLimitHeaders.of(decision)).body("Allowed");
+    }
+
+    /**
+     * Decides a batch of requests with a single Redis round trip.
+     *
+     * @param requests the requests, each with userId, endpoint and an optional cost (default 1)
+     * @return one decision per request, in the same order
+     */
+    @PostMapping("/limit/batch")
+    public ResponseEntity<?> checkLimits(@RequestBody List<RateLimitRequest> requests){
+        String error = validateBatch(requests, rateLimiterService::maxCost);
+        if(error != null){
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.ok(rateLimiterService.decideAll(requests));
+    }
+
+    /**
+     * Validates a request. Blank endpoints and user ids are rejected: the endpoint is the Redis Cluster
+     * hash tag of the endpoint and user keys, and an empty tag would put them in different slots.
+     *
+     * @param userId   unique identifier of the user making the request
+     * @param endpoint API endpoint being accessed
+     * @param cost     cost of the request
+     * @param maxCost  largest valid cost per endpoint
+     * @return the error message, or {@code null} if the request is valid
+     */
+    static String validateRequest(String userId, String endpoint, long cost, ToLongFunction<String> maxCost) {
+        if (userId == null || userId.isBlank() || endpoint == null || endpoint.isBlank()) {
+            return "Every request needs a userId and an endpoint";
+        }
+        if (cost < 1) {
+            return "cost must be at least 1";
+        }
+        long max = maxCost.applyAsLong(endpoint);
+        if (cost > max) {
+            return "cost must be at most " + max + " for " + endpoint;
+        }
+        return null;
+    }
+
+    /**
+     * Validates a batch of requests.
+     *
+     * @param requests the requests of the batch
+     * @param maxCost  largest valid cost per endpoint
+     * @return the error message, or {@code null} if the batch is valid
+     */
+    static String validateBatch(List<RateLimitRequest> requests, ToLongFunction<String> maxCost) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return "At most " + MAX_BATCH_SIZE + " requests per batch";
+        }
+        for (RateLimitRequest request : requests) {
+            if (request == null) {
+                return "A batch cannot contain null requests";
+            }
+            String error = validateRequest(request.userId(), request.endpoint(), request.cost(), maxCost);
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,7 @@
 package com.sanjay.ratelimiter.controller;
 
+import com.sanjay.ratelimiter.service.BlockedKeyCache;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
 import com.sanjay.ratelimiter.util.RateLimiterProperties;
 import com.sanjay.ratelimiter.util.RateLimiterProperties.RateLimitConfig;
 import lombok.RequiredArgsConstructor;
@@ -12,7 +14,7 @@ import java.util.Optional;
 /**
  * Admin controller for dynamically updating rate limiter configurations at runtime.
  *
- * This allows real-time tuning of rate limit parameters (window duration & request limit)
+ * This allows real-time tuning of rate limit parameters (window duration, request limit & algorithm)
  * for global, default, or endpoint-specific settings — without restarting the application.
  *
  * Examples:
@@ -22,6 +24,8 @@ import java.util.Optional;
  *       POST /api/admin/ratelimiter/update?type=default&window=60&limit=5
  *   - Update specific endpoint:
  *       POST /api/admin/ratelimiter/update?type=endpoint&name=/login&window=30&limit=3
+ *   - Switch an endpoint to the token bucket algorithm:
+ *       POST /api/admin/ratelimiter/update?type=endpoint&name=/data&algorithm=token-bucket
  */
 @RestController
 @RequiredArgsConstructor
@@ -31,6 +35,9 @@ public class RateLimiterConfigController {
     // Injects the central configuration bean that holds all rate limit settings
     private final RateLimiterProperties properties;
 
+    // Cached deny decisions were computed against the old limits
+    private final BlockedKeyCache blockedKeys;
+
     /**
      * Updates rate limiter configuration dynamically.
      *
@@ -38,6 +45,7 @@ public class RateLimiterConfigController {
      * @param name   Endpoint name (required only if type=endpoint)
      * @param window New window duration in seconds (optional)
      * @param limit  New request limit (optional)
+     * @param algorithm New rate limiting algorithm, "sliding-log", "token-bucket", "gcra" or "sliding-window-counter" (optional)
      * @return HTTP response indicating update status
      */
     @PostMapping("/update")
@@ -45,7 +53,18 @@ public class RateLimiterConfigController {
             @RequestParam String type,
             @RequestParam(required = false) String name,
             @RequestParam(required = false, defaultValue = "0") long window,
-            @RequestParam(required = false, defaultValue = "0") long limit) {
+            @RequestParam(required = false, defaultValue = "0") long limit,
+            @RequestParam(required = false) String algorithm) {
+
+        // Resolve the algorithm up front so an invalid value does not leave a half-applied update
+        RateLimitAlgorithm newAlgorithm = null;
+        if (algorithm != null && !algorithm.isBlank()) {
+            newAlgorithm = RateLimitAlgorithm.from(algorithm);
+            if (newAlgorithm == null) {
+                return ResponseEntity.badRequest()
+                        .body("Invalid algorithm: " + algorithm);
+            }
+        }
 
         RateLimitConfig configToUpdate;
 
@@ -53,7 +72,15 @@ public class RateLimiterConfigController {
         switch (type.toLowerCase()) {
 
             //Global configuration: system-wide limit for all traffic
-            case "global" -> configToUpdate = properties.getGlobal();
+            case "global" -> {
+                // Leases are taken from the global token bucket, other algorithms would not see them
+                if (properties.getLease().isEnabled() && newAlgorithm != null
+                        && newAlgorithm != RateLimitAlgorithm.TOKEN_BUCKET) {
+                    return ResponseEntity.badRequest()
+                            .body("Global algorithm must stay token-bucket while leasing is enabled");
+                }
+                configToUpdate = properties.getGlobal();
+            }
 
             //Default configuration: fallback for endpoints not explicitly defined
             case "default" -> configToUpdate = properties.getDefaultConfig();
@@ -85,14 +112,17 @@ public class RateLimiterConfigController {
         // Apply new values only if they are positive (0 means "no change")
         if (window > 0L) configToUpdate.setWindowDuration(window);
         if (limit > 0L) configToUpdate.setRequestLimit(limit);
+        if (newAlgorithm != null) configToUpdate.setAlgorithm(newAlgorithm);
+        blockedKeys.clear();
 
         // Construct readable response message
         String updated = String.format(
-                "Updated %s config%s → window=%d, limit=%d",
+                "Updated %s config%s → window=%d, limit=%d, algorithm=%s",
                 type.toUpperCase(),
                 (name != null ? " (" + name + ")" : ""),
                 configToUpdate.getWindowDuration(),
-                configToUpdate.getRequestLimit()
+                configToUpdate.getRequestLimit(),
+                configToUpdate.getAlgorithm()
         );
 
         // Return confirmation message
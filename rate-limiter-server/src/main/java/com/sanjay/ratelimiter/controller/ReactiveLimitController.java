@@ -0,0 +1,64 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.service.RateLimitRequest;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.web.RateLimitHeaders;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Rate limit checks for the reactive (WebFlux) stack, active with
+ * {@code spring.main.web-application-type=reactive}. Same API and responses as {@link LimitController},
+ * but no thread is held while a decision waits on Redis.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@RequestMapping("/api")
+public class ReactiveLimitController {
+
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    @GetMapping("/limit")
+    public Mono<ResponseEntity<String>> checkLimit(@RequestParam String userId, @RequestParam String endpoint,
+                                                   @RequestParam(defaultValue = "1") long cost){
+        String error = LimitController.validateRequest(userId, endpoint, cost, rateLimiterService::maxCost);
+        if(error != null){
+            return Mono.just(ResponseEntity.badRequest().body(error));
+        }
+        return rateLimiterService.decide(userId, endpoint, cost).map(decision -> {
+            if(! decision.allowed()){
+                return ResponseEntity
+                        .status(429)
+                        .headers(RateLimitHeaders.of(decision))
+                        .body("Too many request for " + endpoint);
+            }
+            return ResponseEntity.status(200).headers(RateLimitHeaders.of(decision)).body("Allowed");
+        });
+    }
+
+    /**
+     * Decides a batch of requests, see {@link LimitController#checkLimits(List)}.
+     *
+     * @param requests the requests, each with userId, endpoint and an optional cost (default 1)
+     * @return one decision per request, in the same order
+     */
+    @PostMapping("/limit/batch")
+    public Mono<ResponseEntity<?>> checkLimits(@RequestBody List<RateLimitRequest> requests){
+        String error = LimitController.validateBatch(requests, rateLimiterService::maxCost);
+        if(error != null){
+            return Mono.just(ResponseEntity.badRequest().body(error));
+        }
+        return rateLimiterService.decideAll(requests).collectList().map(ResponseEntity::ok);
+    }
+}
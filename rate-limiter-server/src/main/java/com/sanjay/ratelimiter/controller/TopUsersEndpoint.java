@@ -0,0 +1,30 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.TopKeys;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/topusers}: the heaviest users of every configured endpoint, and of
+ * all other endpoints together under {@code other}, with their estimated recent requests.
+ *
+ * <p>The Prometheus gauges {@code rate_limiter_top_user_requests} carry the same counts by rank only.
+ */
+@Component
+@Endpoint(id = "topusers")
+@RequiredArgsConstructor
+public class TopUsersEndpoint {
+
+    private final RateLimitMonitor monitor;
+
+    @ReadOperation
+    public Map<String, List<TopKeys.Entry>> topUsers() {
+        return monitor.topUsers();
+    }
+}
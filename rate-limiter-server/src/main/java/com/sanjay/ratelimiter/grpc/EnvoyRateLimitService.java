@@ -0,0 +1,173 @@
+package com.sanjay.ratelimiter.grpc;
+
+import com.google.protobuf.Duration;
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.RateLimiterServerProperties;
+import com.sanjay.ratelimiter.web.RateLimitHeaders;
+import io.envoyproxy.envoy.config.core.v3.HeaderValue;
+import io.envoyproxy.envoy.extensions.common.ratelimit.v3.RateLimitDescriptor;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitRequest;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitResponse;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitServiceGrpc;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+
+/**
+ * Implementation of Envoy's external rate limit service ({@code envoy.service.ratelimit.v3.RateLimitService}),
+ * so a mesh can ask for decisions directly instead of through {@code /api/limit}.
+ *
+ * <p>Envoy describes a request by descriptors, lists of key/value entries. The entries named by
+ * {@link RateLimiterServerProperties.EnvoyConfig} give the user and endpoint of the request, which is then
+ * decided once on the global, endpoint and user tiers with the rules of {@link RateLimiterProperties},
+ * and {@code hits_addend} as its cost. A request without a user entry is decided on the global and
+ * endpoint tiers only. As the request is decided once, descriptors naming two different users or endpoints
+ * are rejected rather than letting one of them win. Limit overrides carried in descriptors are ignored.
+ *
+ * <p>Envoy expects one status per descriptor. Descriptors naming the user or the endpoint report the
+ * decision, the others {@code OK}. The {@code RateLimit-*} and {@code Retry-After} headers of the decision
+ * are returned for Envoy to add to the response. A failing Redis fails the call with {@code UNAVAILABLE},
+ * which Envoy treats according to its {@code failure_mode_deny} setting.
+ */
+@Slf4j
+public class EnvoyRateLimitService extends RateLimitServiceGrpc.RateLimitServiceImplBase {
+
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private final RateLimiterProperties properties;
+
+    private final RateLimiterServerProperties.EnvoyConfig envoy;
+
+    public EnvoyRateLimitService(ReactiveRateLimiterService rateLimiterService, RateLimiterProperties properties,
+                                 RateLimiterServerProperties.EnvoyConfig envoy) {
+        this.rateLimiterService = rateLimiterService;
+        this.properties = properties;
+        this.envoy = envoy;
+    }
+
+    @Override
+    public void shouldRateLimit(RateLimitRequest request, StreamObserver<RateLimitResponse> responseObserver) {
+        String userId = null;
+        String endpoint = null;
+        boolean[] matched = new boolean[request.getDescriptorsCount()];
+        for (int i = 0; i < request.getDescriptorsCount(); i++) {
+            for (RateLimitDescriptor.Entry entry : request.getDescriptors(i).getEntriesList()) {
+                String key = entry.getKey();
+                if (key.equals(envoy.getUserKey()) || key.equals(envoy.getEndpointKey())) {
+                    String previous = key.equals(envoy.getUserKey()) ? userId : endpoint;
+                    if (previous != null && !previous.equals(entry.getValue())) {
+                        responseObserver.onError(Status.INVALID_ARGUMENT
+                                .withDescription("Descriptors name more than one '" + key + "'")
+                                .asRuntimeException());
+                        return;
+                    }
+                    if (key.equals(envoy.getUserKey())) {
+                        userId = entry.getValue();
+                    } else {
+                        endpoint = entry.getValue();
+                    }
+                    matched[i] = true;
+                }
+            }
+        }
+        if (userId != null && userId.isBlank()) {
+            // A blank user is no user: the request is limited by its endpoint and the global tier only
+            userId = null;
+        }
+        if (endpoint == null) {
+            endpoint = request.getDomain();
+        }
+        if (endpoint.isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Request needs a domain or a '" + envoy.getEndpointKey() + "' entry")
+                    .asRuntimeException());
+            return;
+        }
+
+        String decidedEndpoint = endpoint;
+        long cost = Math.max(1, Integer.toUnsignedLong(request.getHitsAddend()));
+        long maxCost = rateLimiterService.maxCost(endpoint);
+        if (cost > maxCost) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("hits_addend must be at most " + maxCost + " for " + endpoint)
+                    .asRuntimeException());
+            return;
+        }
+        rateLimiterService.decide(userId, endpoint, cost).subscribe(
+                decision -> {
+                    responseObserver.onNext(toResponse(decision, decidedEndpoint, matched));
+                    responseObserver.onCompleted();
+                },
+                error -> {
+                    log.warn("Decision for Envoy request on {} failed", decidedEndpoint, error);
+                    responseObserver.onError(Status.UNAVAILABLE.withDescription("Decision failed").withCause(error)
+                            .asRuntimeException());
+                });
+    }
+
+    RateLimitResponse toResponse(RateLimitDecision decision, String endpoint, boolean[] matched) {
+        RateLimitResponse.Code code = decision.allowed() ? RateLimitResponse.Code.OK : RateLimitResponse.Code.OVER_LIMIT;
+        RateLimitResponse.Builder response = RateLimitResponse.newBuilder().setOverallCode(code);
+
+        RateLimitResponse.DescriptorStatus.Builder status = RateLimitResponse.DescriptorStatus.newBuilder().setCode(code);
+        if (decision.tier() != null) {
+            status.setCurrentLimit(currentLimit(decision, endpoint))
+                    .setLimitRemaining((int) Math.min(Integer.MAX_VALUE, decision.remaining()))
+                    .setDurationUntilReset(toDuration(decision.resetMillis()));
+        }
+        RateLimitResponse.DescriptorStatus decided = status.build();
+        RateLimitResponse.DescriptorStatus ok = RateLimitResponse.DescriptorStatus.newBuilder()
+                .setCode(RateLimitResponse.Code.OK)
+                .build();
+        for (boolean descriptorMatched : matched) {
+            response.addStatuses(descriptorMatched ? decided : ok);
+        }
+
+        RateLimitHeaders.of(decision).forEach((name, values) -> values.forEach(value ->
+                response.addResponseHeadersToAdd(HeaderValue.newBuilder().setKey(name).setValue(value))));
+        return response.build();
+    }
+
+    /**
+     * Expresses the limit of the decision's tier per Envoy time unit. Windows that are not a whole unit
+     * are scaled to the smallest unit that covers them, rounding down.
+     */
+    private RateLimitResponse.RateLimit currentLimit(RateLimitDecision decision, String endpoint) {
+        long window = decision.tier() == RateLimitTier.GLOBAL
+                ? properties.getGlobal().getWindowDuration()
+                : properties.getConfigFor(endpoint).getWindowDuration();
+        RateLimitResponse.RateLimit.Unit unit;
+        long unitSeconds;
+        if (window <= 1) {
+            unit = RateLimitResponse.RateLimit.Unit.SECOND;
+            unitSeconds = 1;
+        } else if (window <= 60) {
+            unit = RateLimitResponse.RateLimit.Unit.MINUTE;
+            unitSeconds = 60;
+        } else if (window <= 3600) {
+            unit = RateLimitResponse.RateLimit.Unit.HOUR;
+            unitSeconds = 3600;
+        } else {
+            unit = RateLimitResponse.RateLimit.Unit.DAY;
+            unitSeconds = 86400;
+        }
+        long perUnit = window <= 0 ? decision.limit() : decision.limit() * unitSeconds / window;
+        return RateLimitResponse.RateLimit.newBuilder()
+                .setName(decision.tier().name().toLowerCase(Locale.ROOT))
+                .setUnit(unit)
+                .setRequestsPerUnit((int) Math.min(Integer.MAX_VALUE, perUnit))
+                .build();
+    }
+
+    private static Duration toDuration(long millis) {
+        return Duration.newBuilder()
+                .setSeconds(millis / 1000)
+                .setNanos((int) (millis % 1000) * 1_000_000)
+                .build();
+    }
+}
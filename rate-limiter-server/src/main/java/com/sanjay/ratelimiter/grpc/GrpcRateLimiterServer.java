@@ -0,0 +1,69 @@
+package com.sanjay.ratelimiter.grpc;
+
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.RateLimiterServerProperties;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the gRPC {@code RateLimiter} service next to the REST API, for gateways that keep one
+ * long-lived HTTP/2 connection and multiplex their decisions over {@code CheckStream}, and on the
+ * same port Envoy's rate limit service for meshes.
+ *
+ * @see RateLimiterGrpcService
+ * @see EnvoyRateLimitService
+ * @see RateLimiterServerProperties.GrpcConfig
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GrpcRateLimiterServer {
+
+    /** Centralized configuration that defines the port */
+    private final RateLimiterServerProperties properties;
+
+    /** Limits reported to Envoy */
+    private final RateLimiterProperties limits;
+
+    /** Non-blocking service deciding the requests */
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private Server server;
+
+    @PostConstruct
+    void start() throws IOException {
+        var grpc = properties.getGrpc();
+        if (!grpc.isEnabled()) {
+            return;
+        }
+        ServerBuilder<?> builder = Grpc.newServerBuilderForPort(grpc.getPort(), InsecureServerCredentials.create())
+                .addService(new RateLimiterGrpcService(rateLimiterService, grpc.getMaxInFlight()));
+        if (properties.getEnvoy().isEnabled()) {
+            builder.addService(new EnvoyRateLimitService(rateLimiterService, limits, properties.getEnvoy()));
+        }
+        server = builder.build().start();
+        log.info("gRPC RateLimiter service listening on port {}{}", server.getPort(),
+                properties.getEnvoy().isEnabled() ? ", with the Envoy rate limit service" : "");
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (server != null) {
+            server.shutdown();
+            if (!server.awaitTermination(5, TimeUnit.SECONDS)) {
+                server.shutdownNow();
+            }
+        }
+    }
+}
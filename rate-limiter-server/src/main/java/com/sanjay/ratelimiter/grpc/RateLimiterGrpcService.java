@@ -0,0 +1,168 @@
+package com.sanjay.ratelimiter.grpc;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Implementation of the gRPC {@code RateLimiter} service ({@code rate_limiter.proto}).
+ *
+ * <p>Both methods hand every request to the {@link ReactiveRateLimiterService} and respond when the
+ * decision completes, so no gRPC thread waits on Redis. On a {@code CheckStream} all received requests
+ * are decided concurrently; at most {@code maxInFlight} are undecided at a time, further requests are
+ * only asked from the client as responses go out.
+ *
+ * <p>An invalid request fails its call with {@code INVALID_ARGUMENT}, a failing Redis with {@code UNAVAILABLE}.
+ */
+@Slf4j
+public class RateLimiterGrpcService extends RateLimiterGrpc.RateLimiterImplBase {
+
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private final int maxInFlight;
+
+    public RateLimiterGrpcService(ReactiveRateLimiterService rateLimiterService, int maxInFlight) {
+        this.rateLimiterService = rateLimiterService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void check(CheckRequest request, StreamObserver<CheckResponse> responseObserver) {
+        Status invalid = validate(request);
+        if (invalid != null) {
+            responseObserver.onError(invalid.asRuntimeException());
+            return;
+        }
+        decide(request).subscribe(
+                response -> {
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                },
+                error -> responseObserver.onError(unavailable(request, error)));
+    }
+
+    @Override
+    public StreamObserver<CheckRequest> checkStream(StreamObserver<CheckResponse> responseObserver) {
+        return new DecisionStream((ServerCallStreamObserver<CheckResponse>) responseObserver);
+    }
+
+    private Mono<CheckResponse> decide(CheckRequest request) {
+        return rateLimiterService.decide(request.getUserId(), request.getEndpoint(), Math.max(1, cost(request)))
+                .map(decision -> toResponse(request.getId(), decision));
+    }
+
+    /** The cost is a {@code uint32}, which protobuf hands to Java as a signed {@code int} */
+    private static long cost(CheckRequest request) {
+        return Integer.toUnsignedLong(request.getCost());
+    }
+
+    private Status validate(CheckRequest request) {
+        // Blank ids are rejected as by the REST API; they would still make Redis keys of their own
+        if (request.getUserId().isBlank() || request.getEndpoint().isBlank()) {
+            return Status.INVALID_ARGUMENT.withDescription("Request " + request.getId() + " needs a user_id and an endpoint");
+        }
+        long maxCost = rateLimiterService.maxCost(request.getEndpoint());
+        if (cost(request) > maxCost) {
+            return Status.INVALID_ARGUMENT.withDescription("Request " + request.getId() + " has a cost above " + maxCost);
+        }
+        return null;
+    }
+
+    private static RuntimeException unavailable(CheckRequest request, Throwable error) {
+        log.warn("Decision for request {} failed", request.getId(), error);
+        return Status.UNAVAILABLE.withDescription("Decision failed").withCause(error).asRuntimeException();
+    }
+
+    static CheckResponse toResponse(long id, RateLimitDecision decision) {
+        return CheckResponse.newBuilder()
+                .setId(id)
+                .setAllowed(decision.allowed())
+                .setTier(decision.tier() == null ? Tier.TIER_UNSPECIFIED : Tier.forNumber(decision.tier().ordinal() + 1))
+                .setLimit(decision.limit())
+                .setRemaining(decision.remaining())
+                .setResetMillis(decision.resetMillis())
+                .setRetryAfterMillis(decision.retryAfterMillis())
+                .build();
+    }
+
+    /**
+     * One {@code CheckStream} call. Decisions complete on Redis threads, so the state and the response
+     * observer, which is not thread-safe, are guarded by this object's monitor.
+     */
+    private final class DecisionStream implements StreamObserver<CheckRequest> {
+
+        private final ServerCallStreamObserver<CheckResponse> responses;
+
+        /** Requests received but not yet answered */
+        private int pending;
+
+        /** Whether the client has sent its last request */
+        private boolean halfClosed;
+
+        /** Whether the call is over, completed, failed or cancelled */
+        private boolean finished;
+
+        DecisionStream(ServerCallStreamObserver<CheckResponse> responses) {
+            this.responses = responses;
+            responses.setOnCancelHandler(this::cancelled);
+            responses.disableAutoRequest();
+            responses.request(maxInFlight);
+        }
+
+        @Override
+        public void onNext(CheckRequest request) {
+            Status invalid = validate(request);
+            if (invalid != null) {
+                fail(invalid.asRuntimeException());
+                return;
+            }
+            synchronized (this) {
+                pending++;
+            }
+            decide(request).subscribe(this::respond, error -> fail(unavailable(request, error)));
+        }
+
+        private synchronized void respond(CheckResponse response) {
+            if (finished) {
+                return;
+            }
+            responses.onNext(response);
+            pending--;
+            responses.request(1);
+            completeIfDone();
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            halfClosed = true;
+            completeIfDone();
+        }
+
+        @Override
+        public synchronized void onError(Throwable error) {
+            finished = true;
+        }
+
+        private synchronized void cancelled() {
+            finished = true;
+        }
+
+        private synchronized void fail(RuntimeException error) {
+            if (!finished) {
+                finished = true;
+                responses.onError(error);
+            }
+        }
+
+        private void completeIfDone() {
+            if (halfClosed && pending == 0 && !finished) {
+                finished = true;
+                responses.onCompleted();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.sanjay.ratelimiter.resp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.ByteProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Decodes the commands a Redis client sends into arrays of their arguments.
+ *
+ * <p>Clients send a command as a RESP array of bulk strings ({@code *2\r\n$4\r\nPING\r\n$2\r\nhi\r\n});
+ * RESP2 and RESP3 do not differ here. Inline commands, a line of space separated words as typed into a
+ * telnet session, are accepted as well. A command that is not complete yet is decoded once the rest
+ * has arrived, so any number of commands may be pipelined in one write or split across writes.
+ *
+ * <p>Malformed input fails with a {@link DecoderException}, after which the connection is closed, as
+ * Redis does on a protocol error.
+ */
+class RespCommandDecoder extends ByteToMessageDecoder {
+
+    /** Most arguments accepted in one command; THROTTLE needs six */
+    static final int MAX_ARGUMENTS = 64;
+
+    /** Longest accepted argument or inline command */
+    static final int MAX_ARGUMENT_LENGTH = 8192;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        while (in.isReadable()) {
+            int start = in.readerIndex();
+            String[] command = in.getByte(start) == '*' ? decodeArray(in) : decodeInline(in);
+            if (command == null) {
+                in.readerIndex(start);
+                return;
+            }
+            if (command.length > 0) {
+                out.add(command);
+            }
+        }
+    }
+
+    /** Decodes {@code *<n>\r\n} followed by n bulk strings, or returns {@code null} if incomplete */
+    private static String[] decodeArray(ByteBuf in) {
+        in.skipBytes(1);
+        long count = readLength(in);
+        if (count == Long.MIN_VALUE) {
+            return null;
+        }
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            throw new DecoderException("invalid multibulk length");
+        }
+        String[] arguments = new String[(int) count];
+        for (int i = 0; i < arguments.length; i++) {
+            if (!in.isReadable()) {
+                return null;
+            }
+            if (in.readByte() != '$') {
+                throw new DecoderException("expected '$', got '" + (char) in.getByte(in.readerIndex() - 1) + "'");
+            }
+            long length = readLength(in);
+            if (length == Long.MIN_VALUE) {
+                return null;
+            }
+            if (length < 0 || length > MAX_ARGUMENT_LENGTH) {
+                throw new DecoderException("invalid bulk length");
+            }
+            if (in.readableBytes() < length + 2) {
+                return null;
+            }
+            arguments[i] = in.readCharSequence((int) length, StandardCharsets.UTF_8).toString();
+            if (in.readByte() != '\r' || in.readByte() != '\n') {
+                throw new DecoderException("bulk string not terminated by CRLF");
+            }
+        }
+        return arguments;
+    }
+
+    /** Decodes a line of space separated words, or returns {@code null} if incomplete */
+    private static String[] decodeInline(ByteBuf in) {
+        int end = in.forEachByte(ByteProcessor.FIND_LF);
+        if (end < 0) {
+            if (in.readableBytes() > MAX_ARGUMENT_LENGTH) {
+                throw new DecoderException("too big inline request");
+            }
+            return null;
+        }
+        String line = in.readCharSequence(end - in.readerIndex(), StandardCharsets.UTF_8).toString();
+        in.skipBytes(1);
+        line = line.strip();
+        return line.isEmpty() ? new String[0] : line.split("\\s+");
+    }
+
+    /**
+     * Reads a decimal length terminated by CRLF.
+     *
+     * @return the length, or {@link Long#MIN_VALUE} if the line is not complete yet
+     */
+    private static long readLength(ByteBuf in) {
+        int end = in.forEachByte(ByteProcessor.FIND_LF);
+        if (end < 0) {
+            if (in.readableBytes() > 20) {
+                throw new DecoderException("length line too long");
+            }
+            return Long.MIN_VALUE;
+        }
+        if (end - in.readerIndex() < 2 || in.getByte(end - 1) != '\r') {
+            throw new DecoderException("invalid length line");
+        }
+        String digits = in.readCharSequence(end - 1 - in.readerIndex(), StandardCharsets.US_ASCII).toString();
+        in.skipBytes(2);
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            throw new DecoderException("invalid length '" + digits + "'");
+        }
+    }
+}
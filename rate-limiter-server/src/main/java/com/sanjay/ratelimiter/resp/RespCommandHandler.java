@@ -0,0 +1,256 @@
+package com.sanjay.ratelimiter.resp;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DecoderException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Answers the commands of one connection of the RESP listener.
+ *
+ * <p>{@code THROTTLE} (alias {@code CL.THROTTLE}) decides a request, in the form of
+ * <a href="https://github.com/brandur/redis-cell">redis-cell</a>:
+ * <pre>
+ * THROTTLE key max_burst count period [quantity]
+ * </pre>
+ * allows {@code count} requests per {@code period} seconds to {@code key}, with bursts of up to
+ * {@code max_burst + 1} requests, and counts the request as {@code quantity} (default 1). The key is
+ * limited by the GCRA engine of the Lua script, with a limit of {@code max_burst + 1} requests per
+ * {@code (max_burst + 1) * period / count} seconds, which emits one request every {@code period / count}
+ * seconds. The reply is an array of five integers:
+ * <pre>
+ * 1. 1 if the request is limited, 0 if allowed
+ * 2. total limit of the key (max_burst + 1)
+ * 3. requests remaining
+ * 4. seconds until the request may be retried, -1 if allowed
+ * 5. seconds until the limit is fully reset
+ * </pre>
+ * Unlike redis-cell, a quantity of 0 (peeking at the limit) is rejected, as the engines only decide
+ * requests, and so is a quantity above {@code max_burst + 1} or the configured {@code max-cost}, which
+ * could never be allowed. Times are rounded up to whole seconds.
+ *
+ * <p>The handshake and housekeeping commands clients send on connect are answered too: {@code PING},
+ * {@code ECHO}, {@code HELLO} (protocol 2 or 3), {@code CLIENT SETNAME/SETINFO}, {@code SELECT},
+ * {@code COMMAND} and {@code QUIT}; anything else is an error.
+ *
+ * <p>Commands may be pipelined. Each {@code THROTTLE} is handed to the {@link ReactiveRateLimiterService}
+ * as soon as it is decoded, but as RESP has no request ids, replies are queued and written in command
+ * order. When {@code maxInFlight} replies of a connection are pending, the handler stops reading from it
+ * until half of them have been written.
+ */
+@Slf4j
+class RespCommandHandler extends SimpleChannelInboundHandler<String[]> {
+
+    /** Redis version reported by {@code HELLO}, which clients use to pick command variants */
+    static final String REDIS_VERSION = "7.0.0";
+
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private final int maxInFlight;
+
+    /** Replies in command order, the first ones possibly still undecided; only touched on the event loop */
+    private final ArrayDeque<Reply> replies = new ArrayDeque<>();
+
+    /** Protocol version chosen by the client with {@code HELLO} */
+    private int protocol = 2;
+
+    RespCommandHandler(ReactiveRateLimiterService rateLimiterService, int maxInFlight) {
+        this.rateLimiterService = rateLimiterService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /** A reply slot, filled when its command is answered */
+    private static final class Reply {
+        ByteBuf content;
+        boolean close;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, String[] command) {
+        Reply reply = new Reply();
+        replies.add(reply);
+        if (replies.size() >= maxInFlight) {
+            ctx.channel().config().setAutoRead(false);
+        }
+
+        String name = command[0].toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "THROTTLE", "CL.THROTTLE" -> throttle(ctx, reply, command);
+            case "PING" -> complete(ctx, reply, command.length > 1
+                    ? RespReplies.bulkString(ctx.alloc(), command[1])
+                    : RespReplies.simpleString(ctx.alloc(), "PONG"));
+            case "ECHO" -> complete(ctx, reply, command.length == 2
+                    ? RespReplies.bulkString(ctx.alloc(), command[1])
+                    : wrongArguments(ctx, command[0]));
+            case "HELLO" -> complete(ctx, reply, hello(ctx, command));
+            case "CLIENT" -> complete(ctx, reply, client(ctx, command));
+            case "SELECT" -> complete(ctx, reply, RespReplies.simpleString(ctx.alloc(), "OK"));
+            case "COMMAND" -> complete(ctx, reply, RespReplies.emptyArray(ctx.alloc()));
+            case "QUIT" -> {
+                reply.close = true;
+                complete(ctx, reply, RespReplies.simpleString(ctx.alloc(), "OK"));
+            }
+            default -> complete(ctx, reply, RespReplies.error(ctx.alloc(),
+                    "ERR unknown command '" + command[0] + "'"));
+        }
+    }
+
+    private void throttle(ChannelHandlerContext ctx, Reply reply, String[] command) {
+        if (command.length != 5 && command.length != 6) {
+            complete(ctx, reply, wrongArguments(ctx, command[0]));
+            return;
+        }
+        long maxBurst;
+        long count;
+        long period;
+        long quantity;
+        try {
+            maxBurst = Long.parseLong(command[2]);
+            count = Long.parseLong(command[3]);
+            period = Long.parseLong(command[4]);
+            quantity = command.length == 6 ? Long.parseLong(command[5]) : 1;
+        } catch (NumberFormatException e) {
+            complete(ctx, reply, RespReplies.error(ctx.alloc(), "ERR value is not an integer or out of range"));
+            return;
+        }
+        if (maxBurst < 0 || count < 1 || period < 1 || quantity < 1) {
+            complete(ctx, reply, RespReplies.error(ctx.alloc(),
+                    "ERR max_burst must be at least 0, count, period and quantity at least 1"));
+            return;
+        }
+
+        long limit;
+        long windowMillis;
+        try {
+            limit = Math.addExact(maxBurst, 1);
+            windowMillis = Math.max(1, Math.multiplyExact(Math.multiplyExact(limit, period), 1000L) / count);
+        } catch (ArithmeticException e) {
+            complete(ctx, reply, RespReplies.error(ctx.alloc(), "ERR value is not an integer or out of range"));
+            return;
+        }
+        long maxQuantity = rateLimiterService.maxThrottleCost(limit);
+        if (quantity > maxQuantity) {
+            complete(ctx, reply, RespReplies.error(ctx.alloc(), "ERR quantity must be at most " + maxQuantity));
+            return;
+        }
+
+        String key = command[1];
+        rateLimiterService.throttle(key, limit, windowMillis, quantity).subscribe(
+                decision -> complete(ctx, reply, throttleReply(ctx, decision, limit)),
+                error -> {
+                    log.warn("Throttle of {} failed", key, error);
+                    complete(ctx, reply, RespReplies.error(ctx.alloc(), "ERR decision failed"));
+                });
+    }
+
+    private static ByteBuf throttleReply(ChannelHandlerContext ctx, RateLimitDecision decision, long limit) {
+        return RespReplies.integers(ctx.alloc(),
+                decision.allowed() ? 0 : 1,
+                limit,
+                decision.remaining(),
+                decision.allowed() ? -1 : toSeconds(decision.retryAfterMillis()),
+                toSeconds(decision.resetMillis()));
+    }
+
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+
+    private ByteBuf hello(ChannelHandlerContext ctx, String[] command) {
+        if (command.length > 1) {
+            int requested;
+            try {
+                requested = Integer.parseInt(command[1]);
+            } catch (NumberFormatException e) {
+                return RespReplies.error(ctx.alloc(), "ERR Protocol version is not an integer or out of range");
+            }
+            if (requested != 2 && requested != 3) {
+                return RespReplies.error(ctx.alloc(), "NOPROTO unsupported protocol version");
+            }
+            protocol = requested;
+        }
+        return RespReplies.map(ctx.alloc(), protocol,
+                "server", "redis",
+                "version", REDIS_VERSION,
+                "proto", protocol,
+                "id", (long) ctx.channel().id().hashCode() & 0x7fffffffL,
+                "mode", "standalone",
+                "role", "master",
+                "modules", new Object[0]);
+    }
+
+    private static ByteBuf client(ChannelHandlerContext ctx, String[] command) {
+        String subcommand = command.length > 1 ? command[1].toUpperCase(Locale.ROOT) : "";
+        if (subcommand.equals("SETNAME") || subcommand.equals("SETINFO")) {
+            return RespReplies.simpleString(ctx.alloc(), "OK");
+        }
+        return RespReplies.error(ctx.alloc(), "ERR unknown subcommand '" + subcommand + "'");
+    }
+
+    private static ByteBuf wrongArguments(ChannelHandlerContext ctx, String command) {
+        return RespReplies.error(ctx.alloc(), "ERR wrong number of arguments for '" + command + "' command");
+    }
+
+    /**
+     * Fills a reply slot and writes all replies that are now ready in order. Decisions complete on Redis
+     * threads, the bookkeeping moves to the connection's event loop.
+     */
+    private void complete(ChannelHandlerContext ctx, Reply reply, ByteBuf content) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> complete(ctx, reply, content));
+            return;
+        }
+        if (!ctx.channel().isActive()) {
+            content.release();
+            return;
+        }
+        reply.content = content;
+
+        boolean written = false;
+        Reply head;
+        while ((head = replies.peek()) != null && head.content != null) {
+            replies.poll();
+            written = true;
+            if (head.close) {
+                ctx.writeAndFlush(head.content).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            ctx.write(head.content);
+        }
+        if (written) {
+            ctx.flush();
+        }
+        if (replies.size() <= maxInFlight / 2 && !ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (Reply reply : replies) {
+            if (reply.content != null) {
+                reply.content.release();
+            }
+        }
+        replies.clear();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof DecoderException) {
+            ctx.writeAndFlush(RespReplies.error(ctx.alloc(), "ERR Protocol error: " + cause.getMessage()))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        log.debug("Closing {}: {}", ctx.channel().remoteAddress(), cause.toString());
+        ctx.close();
+    }
+}
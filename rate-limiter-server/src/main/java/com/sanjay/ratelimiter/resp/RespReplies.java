@@ -0,0 +1,96 @@
+package com.sanjay.ratelimiter.resp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the RESP replies the listener sends.
+ *
+ * <p>Only the types the commands need are covered. All of them are encoded the same in RESP2 and
+ * RESP3, except the map replied to {@code HELLO 3}, which {@link #map} writes as a RESP3 map or, for
+ * RESP2, as a flat array of alternating keys and values.
+ */
+final class RespReplies {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private RespReplies() {
+    }
+
+    static ByteBuf simpleString(ByteBufAllocator alloc, String value) {
+        ByteBuf out = alloc.buffer(value.length() + 3);
+        out.writeByte('+').writeCharSequence(value, StandardCharsets.UTF_8);
+        return out.writeBytes(CRLF);
+    }
+
+    /**
+     * @param message error message, starting with its code (e.g. {@code ERR ...} or {@code NOPROTO ...})
+     */
+    static ByteBuf error(ByteBufAllocator alloc, String message) {
+        ByteBuf out = alloc.buffer(message.length() + 3);
+        out.writeByte('-').writeCharSequence(message.replace('\r', ' ').replace('\n', ' '), StandardCharsets.UTF_8);
+        return out.writeBytes(CRLF);
+    }
+
+    static ByteBuf bulkString(ByteBufAllocator alloc, String value) {
+        ByteBuf out = alloc.buffer(value.length() + 16);
+        writeBulkString(out, value);
+        return out;
+    }
+
+    /** Encodes an array of integers, the reply of {@code THROTTLE} */
+    static ByteBuf integers(ByteBufAllocator alloc, long... values) {
+        ByteBuf out = alloc.buffer(8 + values.length * 24);
+        writeHeader(out, '*', values.length);
+        for (long value : values) {
+            writeInteger(out, value);
+        }
+        return out;
+    }
+
+    static ByteBuf emptyArray(ByteBufAllocator alloc) {
+        return writeHeader(alloc.buffer(4), '*', 0);
+    }
+
+    /**
+     * Encodes a map whose values are bulk strings, integers or empty arrays (given as {@code Object[0]}).
+     *
+     * @param protocol  protocol version of the connection, 2 or 3
+     * @param keyValues alternating keys and values
+     */
+    static ByteBuf map(ByteBufAllocator alloc, int protocol, Object... keyValues) {
+        ByteBuf out = alloc.buffer(256);
+        if (protocol >= 3) {
+            writeHeader(out, '%', keyValues.length / 2);
+        } else {
+            writeHeader(out, '*', keyValues.length);
+        }
+        for (Object value : keyValues) {
+            if (value instanceof Number number) {
+                writeInteger(out, number.longValue());
+            } else if (value instanceof Object[] array) {
+                writeHeader(out, '*', array.length);
+            } else {
+                writeBulkString(out, value.toString());
+            }
+        }
+        return out;
+    }
+
+    private static ByteBuf writeHeader(ByteBuf out, char type, long length) {
+        out.writeByte(type).writeCharSequence(Long.toString(length), StandardCharsets.US_ASCII);
+        return out.writeBytes(CRLF);
+    }
+
+    private static void writeInteger(ByteBuf out, long value) {
+        writeHeader(out, ':', value);
+    }
+
+    private static void writeBulkString(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHeader(out, '$', bytes.length);
+        out.writeBytes(bytes).writeBytes(CRLF);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sanjay.ratelimiter.resp;
+
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.util.RateLimiterServerProperties;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Listener speaking the Redis protocol (RESP2 and RESP3), so any Redis client can ask for decisions
+ * with the redis-cell style {@code THROTTLE} command, e.g. {@code redis-cli -p 6380 THROTTLE user:42 15 30 60}.
+ *
+ * <p>This is not a Redis server: apart from {@code THROTTLE} it only answers the commands clients send
+ * while connecting. Limiter state is kept in the Redis the application is configured with.
+ *
+ * @see RespCommandHandler
+ * @see RateLimiterServerProperties.RespConfig
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RespServer {
+
+    /** Flushes coalesced into one while replies keep coming */
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
+    /** Centralized configuration that defines the port */
+    private final RateLimiterServerProperties properties;
+
+    /** Non-blocking service deciding the requests */
+    private final ReactiveRateLimiterService rateLimiterService;
+
+    private EventLoopGroup bossGroup;
+
+    private EventLoopGroup workerGroup;
+
+    private Channel channel;
+
+    @PostConstruct
+    void start() throws InterruptedException {
+        var resp = properties.getResp();
+        if (!resp.isEnabled()) {
+            return;
+        }
+
+        boolean epoll = Epoll.isAvailable();
+        bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+        workerGroup = epoll ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+
+        int maxInFlight = resp.getMaxInFlight();
+        channel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(
+                                new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true),
+                                new RespCommandDecoder(),
+                                new RespCommandHandler(rateLimiterService, maxInFlight));
+                    }
+                })
+                .bind(new InetSocketAddress(resp.getPort()))
+                .sync()
+                .channel();
+        log.info("RESP listener (THROTTLE) listening on {}", channel.localAddress());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (bossGroup == null) {
+            return;
+        }
+        channel.close();
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+    }
+}
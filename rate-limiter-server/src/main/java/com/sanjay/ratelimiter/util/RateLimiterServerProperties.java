@@ -0,0 +1,69 @@
+package com.sanjay.ratelimiter.util;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listeners of the server next to the REST API, bound from {@code rate-limiter.*} alongside the
+ * limits in {@link RateLimiterProperties}.
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limiter")
+@Data
+public class RateLimiterServerProperties {
+
+    private BinaryConfig binary = new BinaryConfig();
+    private GrpcConfig grpc = new GrpcConfig();
+    private EnvoyConfig envoy = new EnvoyConfig();
+    private RespConfig resp = new RespConfig();
+
+    /**
+     * Listener for the length-prefixed binary decision protocol, on a TCP port and optionally on a
+     * Unix domain socket ({@code unixSocket} is its path, empty for none). {@code maxInFlight} bounds
+     * the pipelined requests per connection before the listener stops reading from it.
+     */
+    @Data
+    public static class BinaryConfig{
+        private boolean enabled = false;
+        private int port = 9091;
+        private String unixSocket = "";
+        private int maxInFlight = 1024;
+    }
+
+    /**
+     * gRPC {@code RateLimiter} service. {@code maxInFlight} bounds the undecided requests of one
+     * {@code CheckStream} before no more are requested from the client.
+     */
+    @Data
+    public static class GrpcConfig{
+        private boolean enabled = false;
+        private int port = 9090;
+        private int maxInFlight = 1024;
+    }
+
+    /**
+     * Envoy {@code envoy.service.ratelimit.v3.RateLimitService}, served on the gRPC port. Descriptor
+     * entries with {@code userKey} and {@code endpointKey} name the user and endpoint of a request;
+     * without an endpoint entry the request's domain is used, without a user entry the user tier is skipped.
+     * Off by default, like the gRPC port it is served on.
+     */
+    @Data
+    public static class EnvoyConfig{
+        private boolean enabled = false;
+        private String userKey = "user_id";
+        private String endpointKey = "path";
+    }
+
+    /**
+     * Listener speaking the Redis protocol that answers the redis-cell style {@code THROTTLE} command.
+     * {@code maxInFlight} bounds the pipelined commands per connection before the listener stops
+     * reading from it.
+     */
+    @Data
+    public static class RespConfig{
+        private boolean enabled = false;
+        private int port = 6380;
+        private int maxInFlight = 1024;
+    }
+}
@@ -0,0 +1,192 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import com.sanjay.ratelimiter.binary.BinaryProtocol;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop throughput benchmark of the binary decision protocol against a running instance
+ * ({@code rate-limiter.binary.enabled=true}), to compare with {@link LimitEndpointBenchmark}.
+ *
+ * <p>Opens {@code connections} connections and keeps {@code depth} pipelined requests in flight on each.
+ * The target is {@code host:port} for TCP or {@code unix:/path} for a Unix domain socket. Linux only,
+ * it uses the native epoll transport.
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat classpath.txt) com.sanjay.ratelimiter.benchmark.BinaryProtocolBenchmark \
+ *     [target=localhost:9091] [connections=8] [depth=128] [seconds=30] [warmupSeconds=10] [users=1000000]
+ * </pre>
+ */
+public class BinaryProtocolBenchmark {
+
+    /** Latency histogram resolution: 1 bucket per 10µs up to 1s, the last bucket collects the rest */
+    private static final int BUCKETS = 100_000;
+
+    private static final long BUCKET_NANOS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String target = arg(args, 0, "localhost:9091");
+        int connections = Integer.parseInt(arg(args, 1, "8"));
+        int depth = Integer.parseInt(arg(args, 2, "128"));
+        int seconds = Integer.parseInt(arg(args, 3, "30"));
+        int warmupSeconds = Integer.parseInt(arg(args, 4, "10"));
+        int users = Integer.parseInt(arg(args, 5, "1000000"));
+
+        boolean unix = target.startsWith("unix:");
+        SocketAddress address = unix
+                ? new DomainSocketAddress(target.substring("unix:".length()))
+                : new InetSocketAddress(target.substring(0, target.lastIndexOf(':')),
+                        Integer.parseInt(target.substring(target.lastIndexOf(':') + 1)));
+
+        EventLoopGroup group = new EpollEventLoopGroup();
+        try {
+            Stats stats = new Stats();
+            List<Channel> channels = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                Client client = new Client(stats, users, i);
+                Channel channel = new Bootstrap()
+                        .group(group)
+                        .channel(unix ? EpollDomainSocketChannel.class : EpollSocketChannel.class)
+                        .handler(new ChannelInitializer<>() {
+                            @Override
+                            protected void initChannel(Channel channel) {
+                                channel.pipeline().addLast(
+                                        new LengthFieldBasedFrameDecoder(BinaryProtocol.MAX_FRAME_LENGTH, 0, 4, 0, 4),
+                                        client);
+                            }
+                        })
+                        .connect(address).sync().channel();
+                channels.add(channel);
+                channel.eventLoop().execute(() -> {
+                    for (int n = 0; n < depth; n++) {
+                        client.send(channel);
+                    }
+                    channel.flush();
+                });
+            }
+
+            Thread.sleep(warmupSeconds * 1000L);
+            stats.reset();
+            Thread.sleep(seconds * 1000L);
+            stats.running = false;
+            channels.forEach(Channel::close);
+
+            System.out.printf("%s, %d connections x %d in flight, %ds%n", target, connections, depth, seconds);
+            System.out.printf("throughput: %.0f decisions/s (%d allowed, %d denied, %d errors)%n",
+                    (stats.allowed.get() + stats.denied.get()) / (double) seconds,
+                    stats.allowed.get(), stats.denied.get(), stats.errors.get());
+            System.out.printf("latency ms: p50=%.2f p99=%.2f p99.9=%.2f%n",
+                    stats.percentile(50), stats.percentile(99), stats.percentile(99.9));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    /** Counters shared by all connections */
+    private static final class Stats {
+        private final AtomicLong allowed = new AtomicLong();
+        private final AtomicLong denied = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private volatile boolean running = true;
+
+        void reset() {
+            allowed.set(0);
+            denied.set(0);
+            errors.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+
+        void record(byte status, long nanos) {
+            switch (status) {
+                case BinaryProtocol.ALLOWED -> allowed.incrementAndGet();
+                case BinaryProtocol.DENIED -> denied.incrementAndGet();
+                default -> errors.incrementAndGet();
+            }
+            histogram.incrementAndGet((int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS));
+        }
+
+        double percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1e6;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** One connection: sends the next request whenever a response arrives, only used on its event loop */
+    private static final class Client extends SimpleChannelInboundHandler<ByteBuf> {
+        private final Stats stats;
+        private final int users;
+        private final Map<Long, Long> sentAt = new HashMap<>();
+        private long nextId;
+
+        Client(Stats stats, int users, int connection) {
+            this.stats = stats;
+            this.users = users;
+            this.nextId = (long) connection << 40;
+        }
+
+        void send(Channel channel) {
+            long id = nextId++;
+            ByteBuf request = channel.alloc().buffer(64);
+            BinaryProtocol.encodeRequest(request,
+                    new BinaryProtocol.Request(id, "bench-" + (id % users), "/bench", 1));
+            sentAt.put(id, System.nanoTime());
+            channel.write(request);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf response) {
+            long id = response.readLong();
+            byte status = response.readByte();
+            Long start = sentAt.remove(id);
+            if (start != null) {
+                stats.record(status, System.nanoTime() - start);
+            }
+            if (stats.running) {
+                send(ctx.channel());
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.sanjay.ratelimiter.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop throughput benchmark of {@code GET /api/limit} against a running instance, used to
+ * compare the servlet stack with the reactive one ({@code spring.main.web-application-type=reactive}).
+ *
+ * <p>Keeps {@code connections} requests in flight at all times, each on its own keep-alive connection,
+ * and reports throughput, error count and latency percentiles after a warm-up. User ids are spread over
+ * {@code users} so most requests reach Redis instead of being served by the deny cache.
+ *
+ * <pre>
+ * java -cp target/test-classes com.sanjay.ratelimiter.benchmark.LimitEndpointBenchmark \
+ *     [baseUrl=http://localhost:8081] [connections=10000] [seconds=30] [warmupSeconds=10] [users=1000000]
+ * </pre>
+ *
+ * <p>The client needs a file descriptor per connection ({@code ulimit -n}); so does the server, and
+ * Tomcat accepts at most {@code server.tomcat.max-connections} (8192 by default) at once.
+ */
+public class LimitEndpointBenchmark {
+
+    /** Latency histogram resolution: 1 bucket per 100µs up to 10s, the last bucket collects the rest */
+    private static final int BUCKETS = 100_000;
+
+    private static final long BUCKET_NANOS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = arg(args, 0, "http://localhost:8081");
+        int connections = Integer.parseInt(arg(args, 1, "10000"));
+        int seconds = Integer.parseInt(arg(args, 2, "30"));
+        int warmupSeconds = Integer.parseInt(arg(args, 3, "10"));
+        int users = Integer.parseInt(arg(args, 4, "1000000"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        Run warmup = new Run(client, baseUrl, users, connections);
+        warmup.execute(warmupSeconds);
+        Run run = new Run(client, baseUrl, users, connections);
+        run.execute(seconds);
+
+        System.out.printf("%s, %d connections, %ds%n", baseUrl, connections, seconds);
+        System.out.printf("throughput: %.0f req/s (%d ok, %d rate limited, %d errors)%n",
+                (run.ok.get() + run.limited.get()) / (double) seconds, run.ok.get(), run.limited.get(), run.errors.get());
+        System.out.printf("latency ms: p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                run.percentile(50), run.percentile(99), run.percentile(99.9), run.maxNanos.get() / 1e6);
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    /** One measurement: every connection sends its next request as soon as the previous one completes */
+    private static final class Run {
+
+        private final HttpClient client;
+        private final String baseUrl;
+        private final int users;
+        private final int connections;
+
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong limited = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sequence = new AtomicLong();
+
+        private volatile boolean running;
+        private CountDownLatch finished;
+
+        Run(HttpClient client, String baseUrl, int users, int connections) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.users = users;
+            this.connections = connections;
+        }
+
+        void execute(int seconds) throws InterruptedException {
+            running = true;
+            finished = new CountDownLatch(connections);
+            for (int i = 0; i < connections; i++) {
+                send();
+            }
+            Thread.sleep(seconds * 1000L);
+            running = false;
+            finished.await();
+        }
+
+        private void send() {
+            long user = sequence.getAndIncrement() % users;
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(baseUrl + "/api/limit?userId=bench-" + user + "&endpoint=/bench")).build();
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (!running) {
+                    finished.countDown();
+                    return;
+                }
+                long nanos = System.nanoTime() - start;
+                if (failure != null) {
+                    errors.incrementAndGet();
+                } else {
+                    (response.statusCode() == 429 ? limited : ok).incrementAndGet();
+                    histogram.incrementAndGet((int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS));
+                    maxNanos.accumulateAndGet(nanos, Math::max);
+                }
+                send();
+            });
+        }
+
+        double percentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            Arrays.setAll(counts, histogram::get);
+            long total = Arrays.stream(counts).sum();
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1e6;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sanjay.ratelimiter.binary;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BinaryDecisionHandlerTests {
+
+	private final ReactiveRateLimiterService service = mock(ReactiveRateLimiterService.class);
+
+	private EmbeddedChannel channel() {
+		when(service.maxCost(anyString())).thenReturn(100L);
+		return new EmbeddedChannel(
+				new LengthFieldBasedFrameDecoder(BinaryProtocol.MAX_FRAME_LENGTH, 0, 4, 0, 4),
+				new BinaryDecisionHandler(service, 16));
+	}
+
+	@Test
+	void pipelinedRequestsAreAnsweredWithTheirIds() {
+		when(service.decide("alice", "/login", 1))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.USER, 3, 2, 20_000, 0)));
+		when(service.decide("bob", "/login", 2))
+				.thenReturn(Mono.just(RateLimitDecision.denied(RateLimitTier.ENDPOINT, 3, 5_000)));
+		EmbeddedChannel channel = channel();
+
+		// Both requests in one write, split in the middle of the second frame
+		ByteBuf requests = Unpooled.buffer();
+		BinaryProtocol.encodeRequest(requests, new BinaryProtocol.Request(7, "alice", "/login", 1));
+		BinaryProtocol.encodeRequest(requests, new BinaryProtocol.Request(8, "bob", "/login", 2));
+		channel.writeInbound(requests.readRetainedSlice(requests.readableBytes() - 3));
+		channel.writeInbound(requests);
+
+		ByteBuf allowed = channel.readOutbound();
+		assertThat(allowed.readInt()).isEqualTo(BinaryProtocol.RESPONSE_LENGTH);
+		assertThat(allowed.readLong()).isEqualTo(7);
+		assertThat(allowed.readByte()).isEqualTo(BinaryProtocol.ALLOWED);
+		assertThat(allowed.readByte()).isEqualTo((byte) RateLimitTier.USER.ordinal());
+		assertThat(allowed.readLong()).isEqualTo(3);
+		assertThat(allowed.readLong()).isEqualTo(2);
+
+		ByteBuf denied = channel.readOutbound();
+		denied.skipBytes(4);
+		assertThat(denied.readLong()).isEqualTo(8);
+		assertThat(denied.readByte()).isEqualTo(BinaryProtocol.DENIED);
+		assertThat(denied.readByte()).isEqualTo((byte) RateLimitTier.ENDPOINT.ordinal());
+		denied.skipBytes(3 * 8);
+		assertThat(denied.readLong()).isEqualTo(5_000);
+	}
+
+	@Test
+	void malformedRequestIsRejectedWithItsId() {
+		EmbeddedChannel channel = channel();
+
+		ByteBuf request = Unpooled.buffer();
+		BinaryProtocol.encodeRequest(request, new BinaryProtocol.Request(9, "alice", "/login", 0));
+		channel.writeInbound(request);
+
+		ByteBuf response = channel.readOutbound();
+		response.skipBytes(4);
+		assertThat(response.readLong()).isEqualTo(9);
+		assertThat(response.readByte()).isEqualTo(BinaryProtocol.BAD_REQUEST);
+		assertThat(channel.isOpen()).isTrue();
+	}
+
+	@Test
+	void blankUserIdIsRejectedWithItsId() {
+		EmbeddedChannel channel = channel();
+
+		ByteBuf request = Unpooled.buffer();
+		BinaryProtocol.encodeRequest(request, new BinaryProtocol.Request(11, " ", "/login", 1));
+		channel.writeInbound(request);
+
+		ByteBuf response = channel.readOutbound();
+		response.skipBytes(4);
+		assertThat(response.readLong()).isEqualTo(11);
+		assertThat(response.readByte()).isEqualTo(BinaryProtocol.BAD_REQUEST);
+		verify(service, never()).decide(anyString(), anyString(), anyLong());
+	}
+
+	@Test
+	void costAboveTheMaximumIsRejected() {
+		EmbeddedChannel channel = channel();
+
+		ByteBuf request = Unpooled.buffer();
+		BinaryProtocol.encodeRequest(request, new BinaryProtocol.Request(10, "alice", "/login", 101));
+		channel.writeInbound(request);
+
+		ByteBuf response = channel.readOutbound();
+		response.skipBytes(4);
+		assertThat(response.readLong()).isEqualTo(10);
+		assertThat(response.readByte()).isEqualTo(BinaryProtocol.BAD_REQUEST);
+	}
+}
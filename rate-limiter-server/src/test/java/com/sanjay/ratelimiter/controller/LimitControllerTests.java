@@ -0,0 +1,46 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.service.RateLimitRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LimitControllerTests {
+
+	private static final ToLongFunction<String> MAX_COST = endpoint -> 10;
+
+	@Test
+	void rejectsBlankEndpointsAndUsers() {
+		assertThat(LimitController.validateRequest("alice", "", 1, MAX_COST)).contains("endpoint");
+		assertThat(LimitController.validateRequest("alice", " ", 1, MAX_COST)).contains("endpoint");
+		assertThat(LimitController.validateRequest("", "/data", 1, MAX_COST)).contains("userId");
+		assertThat(LimitController.validateRequest("alice", "/data", 1, MAX_COST)).isNull();
+	}
+
+	@Test
+	void rejectsBatchesWithABlankEndpoint() {
+		List<RateLimitRequest> requests = List.of(new RateLimitRequest("alice", "/data", null),
+				new RateLimitRequest("bob", "", 1L));
+
+		assertThat(LimitController.validateBatch(requests, MAX_COST)).contains("endpoint");
+		assertThat(LimitController.validateBatch(requests.subList(0, 1), MAX_COST)).isNull();
+	}
+
+	@Test
+	void rejectsBatchesWithANullRequest() {
+		List<RateLimitRequest> requests = Arrays.asList(new RateLimitRequest("alice", "/data", 1L), null);
+
+		assertThat(LimitController.validateBatch(requests, MAX_COST)).contains("null");
+	}
+
+	@Test
+	void rejectsCostsOutsideTheEndpointsRange() {
+		assertThat(LimitController.validateRequest("alice", "/data", 0, MAX_COST)).isEqualTo("cost must be at least 1");
+		assertThat(LimitController.validateRequest("alice", "/data", 11, MAX_COST))
+				.isEqualTo("cost must be at most 10 for /data");
+	}
+}
@@ -0,0 +1,78 @@
+package com.sanjay.ratelimiter.controller;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitRequest;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveLimitControllerTests {
+
+	private final ReactiveRateLimiterService service = mock(ReactiveRateLimiterService.class);
+
+	private final ReactiveLimitController controller = new ReactiveLimitController(service);
+
+	ReactiveLimitControllerTests() {
+		when(service.maxCost(anyString())).thenReturn(10L);
+	}
+
+	@Test
+	void answersDeniedRequestsWith429AndTheirHeaders() {
+		when(service.decide("alice", "/data", 1))
+				.thenReturn(Mono.just(RateLimitDecision.denied(RateLimitTier.USER, 5, 1_500)));
+
+		ResponseEntity<String> response = controller.checkLimit("alice", "/data", 1).block();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(429);
+		assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("2");
+	}
+
+	@Test
+	void answersAllowedRequestsWith200() {
+		when(service.decide("alice", "/data", 2))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.ENDPOINT, 5, 3, 60_000, 0)));
+
+		ResponseEntity<String> response = controller.checkLimit("alice", "/data", 2).block();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		assertThat(response.getHeaders().getFirst("RateLimit-Remaining")).isEqualTo("3");
+	}
+
+	@Test
+	void rejectsInvalidRequestsWithoutDecidingThem() {
+		assertThat(controller.checkLimit("alice", " ", 1).block().getStatusCode().value()).isEqualTo(400);
+		assertThat(controller.checkLimit("alice", "/data", 11).block().getStatusCode().value()).isEqualTo(400);
+		assertThat(controller.checkLimits(List.of(new RateLimitRequest("", "/data", 1L))).block()
+				.getStatusCode().value()).isEqualTo(400);
+		verify(service, never()).decide(anyString(), anyString(), anyLong());
+		verify(service, never()).decideAll(anyList());
+	}
+
+	@Test
+	void answersABatchWithItsDecisionsInOrder() {
+		List<RateLimitRequest> requests = List.of(new RateLimitRequest("alice", "/data", 1L),
+				new RateLimitRequest("bob", "/data", 1L));
+		List<RateLimitDecision> decisions = List.of(new RateLimitDecision(true, RateLimitTier.USER, 5, 4, 60_000, 0),
+				RateLimitDecision.denied(RateLimitTier.ENDPOINT, 5, 1_000));
+		when(service.decideAll(requests)).thenReturn(Flux.fromIterable(decisions));
+
+		ResponseEntity<?> response = controller.checkLimits(requests).block();
+
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		assertThat(response.getBody()).isEqualTo(decisions);
+	}
+}
@@ -0,0 +1,166 @@
+package com.sanjay.ratelimiter.grpc;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import com.sanjay.ratelimiter.util.RateLimiterServerProperties;
+import io.envoyproxy.envoy.config.core.v3.HeaderValue;
+import io.envoyproxy.envoy.extensions.common.ratelimit.v3.RateLimitDescriptor;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitRequest;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitResponse;
+import io.envoyproxy.envoy.service.ratelimit.v3.RateLimitServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EnvoyRateLimitServiceTests {
+
+	private final ReactiveRateLimiterService service = mock(ReactiveRateLimiterService.class);
+
+	private Server server;
+
+	private ManagedChannel channel;
+
+	@BeforeEach
+	void start() throws Exception {
+		when(service.maxCost(anyString())).thenReturn(100L);
+		RateLimiterProperties properties = new RateLimiterProperties();
+		RateLimiterProperties.RateLimitConfig login = new RateLimiterProperties.RateLimitConfig();
+		login.setWindowDuration(60);
+		login.setRequestLimit(3);
+		properties.getEndpoints().put("/login", login);
+
+		String name = InProcessServerBuilder.generateName();
+		server = InProcessServerBuilder.forName(name)
+				.addService(new EnvoyRateLimitService(service, properties, new RateLimiterServerProperties.EnvoyConfig()))
+				.build()
+				.start();
+		channel = InProcessChannelBuilder.forName(name).build();
+	}
+
+	@AfterEach
+	void stop() {
+		channel.shutdownNow();
+		server.shutdownNow();
+	}
+
+	private static RateLimitDescriptor descriptor(String key, String value) {
+		return RateLimitDescriptor.newBuilder()
+				.addEntries(RateLimitDescriptor.Entry.newBuilder().setKey(key).setValue(value))
+				.build();
+	}
+
+	@Test
+	void descriptorsMapToTheTiersWithHitsAddendAsCost() {
+		when(service.decide("alice", "/login", 2))
+				.thenReturn(Mono.just(RateLimitDecision.denied(RateLimitTier.USER, 3, 40_000)));
+
+		RateLimitResponse response = RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("path", "/login"))
+				.addDescriptors(descriptor("user_id", "alice"))
+				.addDescriptors(descriptor("remote_address", "10.0.0.1"))
+				.setHitsAddend(2)
+				.build());
+
+		assertThat(response.getOverallCode()).isEqualTo(RateLimitResponse.Code.OVER_LIMIT);
+		assertThat(response.getStatusesList()).extracting(RateLimitResponse.DescriptorStatus::getCode)
+				.containsExactly(RateLimitResponse.Code.OVER_LIMIT, RateLimitResponse.Code.OVER_LIMIT, RateLimitResponse.Code.OK);
+		RateLimitResponse.RateLimit limit = response.getStatuses(0).getCurrentLimit();
+		assertThat(limit.getRequestsPerUnit()).isEqualTo(3);
+		assertThat(limit.getUnit()).isEqualTo(RateLimitResponse.RateLimit.Unit.MINUTE);
+		assertThat(response.getStatuses(0).getDurationUntilReset().getSeconds()).isEqualTo(40);
+		assertThat(response.getResponseHeadersToAddList()).extracting(HeaderValue::getKey)
+				.contains("RateLimit-Limit", "Retry-After");
+	}
+
+	@Test
+	void descriptorsNamingTwoUsersAreRejected() {
+		assertThatThrownBy(() -> RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("user_id", "alice"))
+				.addDescriptors(descriptor("path", "/login"))
+				.addDescriptors(descriptor("user_id", "bob"))
+				.build()))
+				.isInstanceOfSatisfying(StatusRuntimeException.class,
+						e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+		verify(service, never()).decide(any(), any(), anyLong());
+	}
+
+	@Test
+	void theSameUserInSeveralDescriptorsIsDecidedOnce() {
+		when(service.decide("alice", "/login", 1))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.USER, 3, 2, 20_000, 0)));
+
+		RateLimitResponse response = RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("user_id", "alice"))
+				.addDescriptors(descriptor("path", "/login"))
+				.addDescriptors(descriptor("user_id", "alice"))
+				.build());
+
+		assertThat(response.getOverallCode()).isEqualTo(RateLimitResponse.Code.OK);
+		verify(service).decide("alice", "/login", 1);
+	}
+
+	@Test
+	void requestWithoutEntriesIsLimitedUnderItsDomainWithoutAUser() {
+		when(service.decide(isNull(), eq("edge"), eq(1L)))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.GLOBAL, 10000, 9999, 60_000, 0)));
+
+		RateLimitResponse response = RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("remote_address", "10.0.0.1"))
+				.build());
+
+		assertThat(response.getOverallCode()).isEqualTo(RateLimitResponse.Code.OK);
+		assertThat(response.getStatusesList()).hasSize(1);
+	}
+
+	@Test
+	void blankUserIsNoUser() {
+		when(service.decide(isNull(), eq("/login"), eq(1L)))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.ENDPOINT, 3, 2, 20_000, 0)));
+
+		RateLimitResponse response = RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("path", "/login"))
+				.addDescriptors(descriptor("user_id", " "))
+				.build());
+
+		assertThat(response.getOverallCode()).isEqualTo(RateLimitResponse.Code.OK);
+		verify(service).decide(isNull(), eq("/login"), eq(1L));
+	}
+
+	@Test
+	void blankEndpointIsRejected() {
+		assertThatThrownBy(() -> RateLimitServiceGrpc.newBlockingStub(channel).shouldRateLimit(RateLimitRequest.newBuilder()
+				.setDomain("edge")
+				.addDescriptors(descriptor("path", " "))
+				.addDescriptors(descriptor("user_id", "alice"))
+				.build()))
+				.isInstanceOfSatisfying(StatusRuntimeException.class,
+						e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+		verify(service, never()).decide(any(), any(), anyLong());
+	}
+}
@@ -0,0 +1,141 @@
+package com.sanjay.ratelimiter.grpc;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterGrpcServiceTests {
+
+	private final ReactiveRateLimiterService service = mock(ReactiveRateLimiterService.class);
+
+	private Server server;
+
+	private ManagedChannel channel;
+
+	@BeforeEach
+	void start() throws Exception {
+		when(service.maxCost(anyString())).thenReturn(100L);
+		String name = InProcessServerBuilder.generateName();
+		server = InProcessServerBuilder.forName(name)
+				.addService(new RateLimiterGrpcService(service, 2))
+				.build()
+				.start();
+		channel = InProcessChannelBuilder.forName(name).build();
+	}
+
+	@AfterEach
+	void stop() {
+		channel.shutdownNow();
+		server.shutdownNow();
+	}
+
+	@Test
+	void checkReturnsTheDecision() {
+		when(service.decide("alice", "/login", 1))
+				.thenReturn(Mono.just(new RateLimitDecision(true, RateLimitTier.USER, 3, 2, 20_000, 0)));
+
+		CheckResponse response = RateLimiterGrpc.newBlockingStub(channel).check(
+				CheckRequest.newBuilder().setId(7).setUserId("alice").setEndpoint("/login").build());
+
+		assertThat(response.getId()).isEqualTo(7);
+		assertThat(response.getAllowed()).isTrue();
+		assertThat(response.getTier()).isEqualTo(Tier.USER);
+		assertThat(response.getRemaining()).isEqualTo(2);
+	}
+
+	@Test
+	void checkRejectsARequestWithoutUser() {
+		assertThatThrownBy(() -> RateLimiterGrpc.newBlockingStub(channel).check(
+				CheckRequest.newBuilder().setEndpoint("/login").build()))
+				.isInstanceOfSatisfying(StatusRuntimeException.class,
+						e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+	}
+
+	@Test
+	void checkRejectsBlankUsersAndEndpoints() {
+		for (CheckRequest request : List.of(CheckRequest.newBuilder().setUserId(" ").setEndpoint("/login").build(),
+				CheckRequest.newBuilder().setUserId("alice").setEndpoint("\t").build())) {
+			assertThatThrownBy(() -> RateLimiterGrpc.newBlockingStub(channel).check(request))
+					.isInstanceOfSatisfying(StatusRuntimeException.class,
+							e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+		}
+	}
+
+	@Test
+	void checkRejectsACostAboveTheMaximum() {
+		assertThatThrownBy(() -> RateLimiterGrpc.newBlockingStub(channel).check(
+				CheckRequest.newBuilder().setUserId("alice").setEndpoint("/login").setCost(101).build()))
+				.isInstanceOfSatisfying(StatusRuntimeException.class,
+						e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+	}
+
+	@Test
+	void checkRejectsACostThatOnlyFitsUnsigned() {
+		// 0xFFFFFFFF, the largest uint32 cost, reads as -1 in Java
+		assertThatThrownBy(() -> RateLimiterGrpc.newBlockingStub(channel).check(
+				CheckRequest.newBuilder().setUserId("alice").setEndpoint("/login").setCost(-1).build()))
+				.isInstanceOfSatisfying(StatusRuntimeException.class,
+						e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+	}
+
+	@Test
+	void checkStreamAnswersEveryRequestBeyondTheInFlightLimit() throws Exception {
+		when(service.decide(anyString(), eq("/data"), anyLong()))
+				.thenReturn(Mono.just(RateLimitDecision.denied(RateLimitTier.ENDPOINT, 10, 5_000)));
+
+		List<CheckResponse> responses = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		StreamObserver<CheckRequest> requests = RateLimiterGrpc.newStub(channel).checkStream(new StreamObserver<>() {
+			@Override
+			public void onNext(CheckResponse response) {
+				responses.add(response);
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				done.completeExceptionally(error);
+			}
+
+			@Override
+			public void onCompleted() {
+				done.complete(null);
+			}
+		});
+		for (int id = 0; id < 5; id++) {
+			requests.onNext(CheckRequest.newBuilder().setId(id).setUserId("u" + id).setEndpoint("/data").setCost(2).build());
+		}
+		requests.onCompleted();
+
+		done.get(5, TimeUnit.SECONDS);
+		assertThat(responses).extracting(CheckResponse::getId).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L);
+		assertThat(responses).allSatisfy(response -> {
+			assertThat(response.getAllowed()).isFalse();
+			assertThat(response.getTier()).isEqualTo(Tier.ENDPOINT);
+			assertThat(response.getRetryAfterMillis()).isEqualTo(5_000);
+		});
+	}
+}
@@ -0,0 +1,113 @@
+package com.sanjay.ratelimiter.resp;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RespCommandHandlerTests {
+
+	private final ReactiveRateLimiterService service = mock(ReactiveRateLimiterService.class);
+
+	private EmbeddedChannel channel() {
+		return new EmbeddedChannel(new RespCommandDecoder(), new RespCommandHandler(service, 16));
+	}
+
+	private static ByteBuf command(String... arguments) {
+		StringBuilder command = new StringBuilder("*").append(arguments.length).append("\r\n");
+		for (String argument : arguments) {
+			command.append('$').append(argument.length()).append("\r\n").append(argument).append("\r\n");
+		}
+		return Unpooled.copiedBuffer(command, StandardCharsets.UTF_8);
+	}
+
+	private static String readReply(EmbeddedChannel channel) {
+		ByteBuf reply = channel.readOutbound();
+		try {
+			return reply.toString(StandardCharsets.UTF_8);
+		} finally {
+			reply.release();
+		}
+	}
+
+	@Test
+	void pipelinedThrottlesAreAnsweredInCommandOrder() {
+		Sinks.One<RateLimitDecision> slow = Sinks.one();
+		when(service.maxThrottleCost(16)).thenReturn(16L);
+		// 15 + 1 requests per 16 * 60 / 30 = 32 seconds, one every 2 seconds
+		when(service.throttle("user:1", 16, 32_000, 1)).thenReturn(slow.asMono());
+		when(service.throttle("user:2", 16, 32_000, 3))
+				.thenReturn(Mono.just(RateLimitDecision.denied(RateLimitTier.USER, 16, 1_500)));
+		EmbeddedChannel channel = channel();
+
+		ByteBuf commands = Unpooled.wrappedBuffer(
+				command("THROTTLE", "user:1", "15", "30", "60"),
+				command("CL.THROTTLE", "user:2", "15", "30", "60", "3"));
+		channel.writeInbound(commands.readRetainedSlice(commands.readableBytes() - 5));
+		channel.writeInbound(commands);
+		assertThat((Object) channel.readOutbound()).isNull();
+
+		slow.tryEmitValue(new RateLimitDecision(true, RateLimitTier.USER, 16, 15, 2_000, 0));
+		channel.runPendingTasks();
+
+		assertThat(readReply(channel)).isEqualTo("*5\r\n:0\r\n:16\r\n:15\r\n:-1\r\n:2\r\n");
+		assertThat(readReply(channel)).isEqualTo("*5\r\n:1\r\n:16\r\n:0\r\n:2\r\n:2\r\n");
+	}
+
+	@Test
+	void helloSwitchesToResp3AndInvalidArgumentsAreErrors() {
+		EmbeddedChannel channel = channel();
+
+		channel.writeInbound(command("HELLO", "3"));
+		assertThat(readReply(channel)).startsWith("%7\r\n$6\r\nserver\r\n");
+
+		channel.writeInbound(command("THROTTLE", "user:1", "15", "0", "60"));
+		assertThat(readReply(channel)).startsWith("-ERR ");
+
+		channel.writeInbound(Unpooled.copiedBuffer("PING\r\n", StandardCharsets.UTF_8));
+		assertThat(readReply(channel)).isEqualTo("+PONG\r\n");
+		assertThat(channel.isOpen()).isTrue();
+	}
+
+	@Test
+	void quantitiesOutOfRangeAreErrors() {
+		when(service.maxThrottleCost(1)).thenReturn(1L);
+		when(service.maxThrottleCost(16)).thenReturn(16L);
+		EmbeddedChannel channel = channel();
+
+		channel.writeInbound(command("THROTTLE", "user:1", "0", "1", "60", "9223372036854775807"));
+		assertThat(readReply(channel)).isEqualTo("-ERR quantity must be at most 1\r\n");
+
+		channel.writeInbound(command("THROTTLE", "user:1", "15", "30", "60", "17"));
+		assertThat(readReply(channel)).isEqualTo("-ERR quantity must be at most 16\r\n");
+
+		channel.writeInbound(command("THROTTLE", "user:1", "15", "30", "60", "0"));
+		assertThat(readReply(channel)).startsWith("-ERR ");
+		verify(service, never()).throttle(anyString(), anyLong(), anyLong(), anyLong());
+	}
+
+	@Test
+	void protocolErrorClosesTheConnection() {
+		EmbeddedChannel channel = channel();
+
+		channel.writeInbound(Unpooled.copiedBuffer("*1\r\n+PING\r\n", StandardCharsets.UTF_8));
+
+		assertThat(readReply(channel)).startsWith("-ERR Protocol error");
+		assertThat(channel.isOpen()).isFalse();
+	}
+}
@@ -0,0 +1,121 @@
+package com.sanjay.ratelimiter.autoconfigure;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.DirectStateStore;
+import com.sanjay.ratelimiter.local.LocalScriptExecutor;
+import com.sanjay.ratelimiter.service.BlockedKeyCache;
+import com.sanjay.ratelimiter.service.GlobalQuotaLease;
+import com.sanjay.ratelimiter.service.GlobalShardRouter;
+import com.sanjay.ratelimiter.service.HeavyHitterDetector;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.service.ReactiveRateLimiterService;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Wires the rate limiter core to the application's Redis connection.
+ *
+ * <p>Limits are bound from {@code rate-limiter.*}. Every bean backs off when the application defines
+ * its own, e.g. a {@link RedisScriptExecutor} on another Redis client. The reactive service is only
+ * created when Reactor and a {@link ReactiveStringRedisTemplate} are available. With
+ * {@code rate-limiter.local.enabled=true} decisions are made in-process by a {@link LocalScriptExecutor}.
+ */
+@AutoConfiguration(after = {RedisAutoConfiguration.class, RedisReactiveAutoConfiguration.class})
+@ConditionalOnClass(StringRedisTemplate.class)
+public class RateLimiterAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConfigurationProperties(prefix = "rate-limiter")
+    public RateLimiterProperties rateLimiterProperties() {
+        return new RateLimiterProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "rate-limiter.local", name = "enabled", havingValue = "true")
+    public RedisScriptExecutor localScriptExecutor(RateLimiterProperties properties) {
+        RateLimiterProperties.LocalConfig local = properties.getLocal();
+        return new LocalScriptExecutor(local.isOffHeap()
+                ? new DirectStateStore(local.getCapacity())
+                : new AtomicStateStore(local.getCapacity()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisScriptExecutor redisScriptExecutor(StringRedisTemplate redisTemplate) {
+        return new RedisTemplateScriptExecutor(redisTemplate);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimitMonitor rateLimitMonitor(ObjectProvider<MeterRegistry> meterRegistry,
+                                             RateLimiterProperties properties) {
+        return new RateLimitMonitor(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public BlockedKeyCache blockedKeyCache(RateLimiterProperties properties) {
+        return new BlockedKeyCache(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HeavyHitterDetector heavyHitterDetector(RateLimiterProperties properties) {
+        return new HeavyHitterDetector(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public GlobalShardRouter globalShardRouter(RateLimiterProperties properties) {
+        return new GlobalShardRouter(properties);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public GlobalQuotaLease globalQuotaLease(RateLimiterProperties properties, RedisScriptExecutor scriptExecutor) {
+        return new GlobalQuotaLease(properties, scriptExecutor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimiterService rateLimiterService(RateLimitMonitor monitor, RateLimiterProperties properties,
+                                                 RedisScriptExecutor scriptExecutor, GlobalQuotaLease globalQuotaLease,
+                                                 GlobalShardRouter globalShardRouter, BlockedKeyCache blockedKeys,
+                                                 HeavyHitterDetector heavyHitters) {
+        return new RateLimiterService(monitor, properties, scriptExecutor, globalQuotaLease, globalShardRouter, blockedKeys,
+                heavyHitters);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    static class ReactiveConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnBean(ReactiveStringRedisTemplate.class)
+        public ReactiveRateLimiterService reactiveRateLimiterService(RateLimiterService rateLimiterService,
+                                                                     RateLimiterProperties properties,
+                                                                     ReactiveStringRedisTemplate reactiveRedisTemplate,
+                                                                     GlobalQuotaLease globalQuotaLease) {
+            return new ReactiveRateLimiterService(rateLimiterService, properties, reactiveRedisTemplate, globalQuotaLease);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.sanjay.ratelimiter.autoconfigure;
+
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import com.sanjay.ratelimiter.web.RateLimitFilter;
+import com.sanjay.ratelimiter.web.RateLimitedInterceptor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * In-process limiting for Spring MVC applications: {@link com.sanjay.ratelimiter.web.RateLimited}
+ * handlers, and optionally every request through a {@link RateLimitFilter}.
+ *
+ * @see RateLimiterWebProperties
+ */
+@AutoConfiguration(after = RateLimiterAutoConfiguration.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnClass(HandlerInterceptor.class)
+@ConditionalOnBean(RateLimiterService.class)
+@EnableConfigurationProperties(RateLimiterWebProperties.class)
+public class RateLimiterWebMvcAutoConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "rate-limiter.web.filter", name = "enabled", havingValue = "true")
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiterService rateLimiterService,
+                                                                   RateLimiterWebProperties properties) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiterService, properties.getFilter()));
+        registration.setOrder(properties.getFilter().getOrder());
+        return registration;
+    }
+
+    /**
+     * Registers the {@link RateLimitedInterceptor} and, once every bean exists, validates the
+     * {@link com.sanjay.ratelimiter.web.RateLimited} annotations of all request mappings, so an invalid
+     * one fails startup rather than its requests.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "rate-limiter.web", name = "annotations", havingValue = "true", matchIfMissing = true)
+    static class RateLimitedConfiguration implements WebMvcConfigurer, SmartInitializingSingleton {
+
+        private final RateLimitedInterceptor interceptor;
+
+        private final BeanFactory beanFactory;
+
+        RateLimitedConfiguration(RateLimiterService rateLimiterService, BeanFactory beanFactory) {
+            this.interceptor = new RateLimitedInterceptor(rateLimiterService, beanFactory);
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(interceptor);
+        }
+
+        @Override
+        public void afterSingletonsInstantiated() {
+            if (beanFactory instanceof ListableBeanFactory listableBeanFactory) {
+                for (RequestMappingHandlerMapping mapping
+                        : listableBeanFactory.getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+                    interceptor.validate(mapping.getHandlerMethods().values());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.sanjay.ratelimiter.autoconfigure;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process limiting of a servlet application, bound from {@code rate-limiter.web.*}.
+ */
+@ConfigurationProperties(prefix = "rate-limiter.web")
+@Data
+public class RateLimiterWebProperties {
+
+    /** Whether handlers annotated with {@code @RateLimited} are limited */
+    private boolean annotations = true;
+
+    private FilterConfig filter = new FilterConfig();
+
+    /**
+     * Filter limiting every request. {@code userHeader} names the user, the client address is used
+     * without it; paths matching {@code excludePaths} (Ant patterns) are not limited. A path matching
+     * one of {@code endpointPatterns} (e.g. {@code /orders/{id}}) is limited as the first pattern it
+     * matches, any other path as itself. {@code order} places the filter in the servlet filter chain.
+     */
+    @Data
+    public static class FilterConfig{
+        private boolean enabled = false;
+        private String userHeader = "X-User-Id";
+        private List<String> excludePaths = new ArrayList<>(List.of("/actuator/**"));
+        private List<String> endpointPatterns = new ArrayList<>();
+        private int order = 0;
+    }
+}
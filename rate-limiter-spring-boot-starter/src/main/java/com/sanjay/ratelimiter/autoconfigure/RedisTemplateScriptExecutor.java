@@ -0,0 +1,163 @@
+package com.sanjay.ratelimiter.autoconfigure;
+
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.service.RedisScriptExecutor;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the limiter scripts through a {@link StringRedisTemplate}.
+ *
+ * <p>Keys and arguments given as strings use the template's script support, which sends EVALSHA and
+ * falls back to EVAL. Encoded ones are sent as they are with EVALSHA on the template's connection,
+ * bypassing its string serializers, and batches of either as EVALSHA commands in one pipeline.
+ */
+public class RedisTemplateScriptExecutor implements RedisScriptExecutor {
+
+    private final StringRedisTemplate redisTemplate;
+
+    /** Template scripts per core script, so that the digest is computed once */
+    private final Map<LuaScript, RedisScript<List>> scripts = new ConcurrentHashMap<>();
+
+    /** Encoded digests per core script */
+    private final Map<LuaScript, byte[]> digests = new ConcurrentHashMap<>();
+
+    public RedisTemplateScriptExecutor(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public List<?> execute(LuaScript script, List<String> keys, List<String> args) {
+        return redisTemplate.execute(redisScript(script), keys, args.toArray());
+    }
+
+    /**
+     * Sends EVALSHA with the encoded keys and arguments, or EVAL if Redis does not know the script.
+     */
+    @Override
+    public List<?> execute(LuaScript script, int keyCount, byte[][] keysAndArgs) {
+        byte[] sha = digest(script);
+        return redisTemplate.execute((RedisCallback<List<?>>) connection -> {
+            try {
+                return connection.scriptingCommands().evalSha(sha, ReturnType.MULTI, keyCount, keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!isNoScript(e)) {
+                    throw e;
+                }
+                return connection.scriptingCommands()
+                        .eval(RedisBytes.of(script.source()), ReturnType.MULTI, keyCount, keysAndArgs);
+            }
+        });
+    }
+
+    @Override
+    public List<List<?>> executeAll(LuaScript script, List<List<String>> keys, List<List<String>> args) {
+        int[] keyCounts = new int[keys.size()];
+        List<byte[][]> keysAndArgs = new ArrayList<>(keys.size());
+        for (int e = 0; e < keys.size(); e++) {
+            List<String> executionKeys = keys.get(e);
+            List<String> executionArgs = args.get(e);
+            byte[][] encoded = new byte[executionKeys.size() + executionArgs.size()][];
+            int i = 0;
+            for (String key : executionKeys) {
+                encoded[i++] = RedisBytes.of(key);
+            }
+            for (String arg : executionArgs) {
+                encoded[i++] = RedisBytes.of(arg);
+            }
+            keyCounts[e] = executionKeys.size();
+            keysAndArgs.add(encoded);
+        }
+        return executeAll(script, keyCounts, keysAndArgs);
+    }
+
+    /**
+     * Sends the executions in one Redis pipeline.
+     *
+     * <p>Pipelined commands use EVALSHA directly. Redis forgets loaded scripts on restart or failover;
+     * in that case the commands sent to a node without the script fail with NOSCRIPT. On Redis Cluster,
+     * or after only some commands reached the failed-over node, the others have already been executed
+     * and recorded their cost, so the script is loaded and only the commands that failed with NOSCRIPT
+     * are sent again, once.
+     *
+     * @throws RedisPipelineException if a command failed otherwise, or NOSCRIPT cannot be told apart per command
+     */
+    @Override
+    public List<List<?>> executeAll(LuaScript script, int[] keyCounts, List<byte[][]> keysAndArgs) {
+        byte[] sha = digest(script);
+
+        List<Object> results;
+        try {
+            results = pipeline(sha, keyCounts, keysAndArgs);
+        } catch (RedisPipelineException e) {
+            if (!isNoScript(e) || e.getResults().size() != keysAndArgs.size()) {
+                throw e;
+            }
+            results = new ArrayList<>(e.getResults());
+            List<Integer> failed = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) instanceof Throwable failure) {
+                    if (!isNoScript(failure)) {
+                        throw e;
+                    }
+                    failed.add(i);
+                }
+            }
+
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                    .scriptLoad(RedisBytes.of(script.source())));
+            int[] retryKeyCounts = new int[failed.size()];
+            List<byte[][]> retryKeysAndArgs = new ArrayList<>(failed.size());
+            for (int i = 0; i < failed.size(); i++) {
+                retryKeyCounts[i] = keyCounts[failed.get(i)];
+                retryKeysAndArgs.add(keysAndArgs.get(failed.get(i)));
+            }
+            List<Object> retried = pipeline(sha, retryKeyCounts, retryKeysAndArgs);
+            for (int i = 0; i < failed.size(); i++) {
+                results.set(failed.get(i), retried.get(i));
+            }
+        }
+
+        List<List<?>> lists = new ArrayList<>(results.size());
+        for (Object result : results) {
+            lists.add((List<?>) result);
+        }
+        return lists;
+    }
+
+    private List<Object> pipeline(byte[] sha, int[] keyCounts, List<byte[][]> keysAndArgs) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int e = 0; e < keysAndArgs.size(); e++) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.MULTI, keyCounts[e], keysAndArgs.get(e));
+            }
+            return null;
+        });
+    }
+
+    private RedisScript<List> redisScript(LuaScript script) {
+        return scripts.computeIfAbsent(script, s -> RedisScript.of(s.source(), List.class));
+    }
+
+    private byte[] digest(LuaScript script) {
+        return digests.computeIfAbsent(script, s -> RedisBytes.of(s.sha1()));
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking variant of {@link RateLimiterService} for the reactive (WebFlux) stack.
+ *
+ * <p>Decisions are made exactly as by {@link RateLimiterService}: the same deny cache, global lease,
+ * sharding, keys and Lua script. Only the script execution differs, it runs on the connection of a
+ * {@link ReactiveStringRedisTemplate}, so no thread waits while a decision is in flight in Redis and
+ * the number of concurrent decisions is no longer bounded by a worker pool. The encoded keys and
+ * arguments are passed through as they are, without string serialization.
+ *
+ * <p>With the local engine ({@code rate-limiter.local.enabled}) there is no Redis to wait for, and
+ * decisions are made by {@link RateLimiterService} on the subscribing thread.
+ *
+ * <p>The only blocking step left is a synchronous renewal of the global lease. When
+ * {@link GlobalQuotaLease#wouldBlock(long)} reports one, that decision runs on a bounded elastic
+ * worker instead of the event loop.
+ */
+public class ReactiveRateLimiterService {
+
+    /** Blocking service the local part of every decision is shared with */
+    private final RateLimiterService rateLimiterService;
+
+    /** Centralized configuration, used to check whether the global tier is leased */
+    private final RateLimiterProperties properties;
+
+    /** Reactive Redis template on raw bytes for executing the Lua script */
+    private final ReactiveRedisTemplate<ByteBuffer, ByteBuffer> reactiveRedisTemplate;
+
+    /** This node's lease of global quota, checked for renewals that would block */
+    private final GlobalQuotaLease globalQuotaLease;
+
+    /** The decision script of {@link RateLimiterService}, as the reactive template runs it */
+    private final RedisScript<List> script;
+
+    public ReactiveRateLimiterService(RateLimiterService rateLimiterService, RateLimiterProperties properties,
+                                      ReactiveStringRedisTemplate reactiveRedisTemplate, GlobalQuotaLease globalQuotaLease) {
+        this(rateLimiterService, properties, new ReactiveRedisTemplate<>(reactiveRedisTemplate.getConnectionFactory(),
+                RedisSerializationContext.byteBuffer()), globalQuotaLease);
+    }
+
+    /** Runs the script on a template of raw bytes, e.g. a stub in tests */
+    ReactiveRateLimiterService(RateLimiterService rateLimiterService, RateLimiterProperties properties,
+                               ReactiveRedisTemplate<ByteBuffer, ByteBuffer> reactiveRedisTemplate,
+                               GlobalQuotaLease globalQuotaLease) {
+        this.rateLimiterService = rateLimiterService;
+        this.properties = properties;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.globalQuotaLease = globalQuotaLease;
+        this.script = RedisScript.of(rateLimiterService.getScript().source(), List.class);
+    }
+
+    /**
+     * Decides whether a request from a user to a specific endpoint is allowed.
+     *
+     * @param userId   unique identifier of the user making the request
+     * @param endpoint API endpoint being accessed (e.g., "/login", "/data")
+     * @param cost     number of requests this request counts as, at least 1
+     * @return the decision, emitted once the script has run
+     * @see RateLimiterService#decide(String, String, long)
+     */
+    public Mono<RateLimitDecision> decide(String userId, String endpoint, long cost) {
+        if (properties.getLocal().isEnabled()) {
+            return Mono.fromSupplier(() -> rateLimiterService.decide(userId, endpoint, cost));
+        }
+        if (properties.getLease().isEnabled() && globalQuotaLease.wouldBlock(cost)) {
+            return Mono.fromCallable(() -> rateLimiterService.decide(userId, endpoint, cost))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return Mono.defer(() -> execute(rateLimiterService.prepare(userId, endpoint, cost)));
+    }
+
+    /**
+     * @param endpoint API endpoint being accessed
+     * @return the largest valid cost of a request to the endpoint
+     * @see RateLimiterService#maxCost(String)
+     */
+    public long maxCost(String endpoint) {
+        return rateLimiterService.maxCost(endpoint);
+    }
+
+    /**
+     * @param limit burst size of the throttle
+     * @return the largest valid cost of a throttle against the limit
+     * @see RateLimiterService#maxThrottleCost(long)
+     */
+    public long maxThrottleCost(long limit) {
+        return rateLimiterService.maxThrottleCost(limit);
+    }
+
+    /**
+     * Decides a request against an ad-hoc limit given by the caller.
+     *
+     * @param key          caller-chosen key to limit
+     * @param limit        burst size, at least 1
+     * @param windowMillis time (ms) in which the full burst is restored, at least 1
+     * @param cost         number of requests this request counts as, at least 1
+     * @return the decision, emitted once the script has run
+     * @see RateLimiterService#throttle(String, long, long, long)
+     */
+    public Mono<RateLimitDecision> throttle(String key, long limit, long windowMillis, long cost) {
+        if (properties.getLocal().isEnabled()) {
+            return Mono.fromSupplier(() -> rateLimiterService.throttle(key, limit, windowMillis, cost));
+        }
+        return Mono.defer(() -> execute(rateLimiterService.prepareThrottle(key, limit, windowMillis, cost)));
+    }
+
+    private Mono<RateLimitDecision> execute(RateLimiterService.Evaluation evaluation) {
+        if (evaluation.decision() != null) {
+            return Mono.just(evaluation.decision());
+        }
+        byte[][] keysAndArgs = evaluation.keysAndArgs();
+        List<ByteBuffer> keys = new ArrayList<>(evaluation.keyCount());
+        List<ByteBuffer> args = new ArrayList<>(keysAndArgs.length - evaluation.keyCount());
+        for (int i = 0; i < keysAndArgs.length; i++) {
+            (i < evaluation.keyCount() ? keys : args).add(ByteBuffer.wrap(keysAndArgs[i]));
+        }
+        return reactiveRedisTemplate.execute(script, keys, args)
+                .next()
+                .flatMap(result -> complete(evaluation, (List<?>) result))
+                .switchIfEmpty(Mono.defer(() -> complete(evaluation, null)))
+                .doOnError(e -> rateLimiterService.abandon(evaluation));
+    }
+
+    /**
+     * Completes an evaluation with a script result, running the script again if it needs another execution.
+     */
+    private Mono<RateLimitDecision> complete(RateLimiterService.Evaluation evaluation, List<?> result) {
+        RateLimitDecision decision = rateLimiterService.complete(evaluation, result);
+        return decision != null ? Mono.just(decision) : execute(evaluation);
+    }
+
+    /**
+     * Decides a batch of requests, in order.
+     *
+     * <p>All script executions are issued at once on the shared connection, which sends them back to
+     * back in one pipeline, and the decisions are emitted in request order.
+     *
+     * @param requests the requests to decide
+     * @return one decision per request, in the same order
+     * @see RateLimiterService#decideAll(List)
+     */
+    public Flux<RateLimitDecision> decideAll(List<RateLimitRequest> requests) {
+        return Flux.fromIterable(requests)
+                .flatMapSequential(request -> decide(request.userId(), request.endpoint(), request.cost()),
+                        Math.max(1, requests.size()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.sanjay.ratelimiter.web;
+
+import com.sanjay.ratelimiter.autoconfigure.RateLimiterWebProperties;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Limits every request of a servlet application in-process, before it reaches any handler.
+ *
+ * <p>The user is taken from a request header (by default {@code X-User-Id}), or the client address
+ * when it is missing. The filter runs before any handler is chosen, so the endpoint is the first of the
+ * configured endpoint patterns the path matches, e.g. {@code /orders/{id}}, and otherwise the path itself.
+ * Without a pattern, every value of a path variable would be an endpoint of its own, with its own endpoint
+ * limit. Paths matching one of the excluded patterns pass untouched. For limits per handler, use
+ * {@link RateLimited} instead.
+ *
+ * @see RateLimiterWebProperties.FilterConfig
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiterService rateLimiterService;
+
+    private final RateLimiterWebProperties.FilterConfig config;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public RateLimitFilter(RateLimiterService rateLimiterService, RateLimiterWebProperties.FilterConfig config) {
+        this.rateLimiterService = rateLimiterService;
+        this.config = config;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        for (String pattern : config.getExcludePaths()) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String userId = request.getHeader(config.getUserHeader());
+        if (userId == null || userId.isEmpty()) {
+            userId = request.getRemoteAddr();
+        }
+        if (RateLimitedInterceptor.enforce(response, rateLimiterService.decide(userId, endpoint(request.getServletPath()), 1))) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * @return the first endpoint pattern matching the path, the path itself if none does
+     */
+    private String endpoint(String path) {
+        for (String pattern : config.getEndpointPatterns()) {
+            if (pathMatcher.match(pattern, path)) {
+                return pattern;
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sanjay.ratelimiter.web;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Response headers describing a decision.
+ */
+public final class RateLimitHeaders {
+
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * Builds the IETF {@code RateLimit-*} headers for the most restrictive tier of a decision,
+     * plus {@code Retry-After} when the request was denied. Times are rounded up to whole seconds
+     * so that a client waiting that long is never denied again for the same reason.
+     *
+     * @param decision the rate limit decision
+     * @return response headers
+     */
+    public static HttpHeaders of(RateLimitDecision decision) {
+        HttpHeaders headers = new HttpHeaders();
+        if (decision.tier() == null) {
+            return headers;
+        }
+        headers.set("RateLimit-Limit", String.valueOf(decision.limit()));
+        headers.set("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        headers.set("RateLimit-Reset", String.valueOf(toSeconds(decision.resetMillis())));
+        if (!decision.allowed()) {
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(toSeconds(decision.retryAfterMillis())));
+        }
+        return headers;
+    }
+
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+}
@@ -0,0 +1,49 @@
+package com.sanjay.ratelimiter.web;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits a Spring MVC handler in-process, with the same tiers and Redis state as the rate limiter
+ * server, but without a call to {@code /api/limit}.
+ *
+ * <pre>
+ * &#64;RateLimited(key = "request.getHeader('X-User-Id')")
+ * &#64;GetMapping("/orders/{id}")
+ * public Order order(&#64;PathVariable String id) { ... }
+ * </pre>
+ *
+ * <p>The request is decided before the handler runs. A denied request is answered with 429 and the
+ * {@code RateLimit-*} and {@code Retry-After} headers; an allowed one gets the {@code RateLimit-*}
+ * headers. On a class, the annotation applies to every handler method that is not annotated itself.
+ *
+ * @see RateLimitedInterceptor
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimited {
+
+    /**
+     * SpEL expression for the user the request counts against. It is evaluated against
+     * {@link RateLimitedInterceptor.KeyContext}, so {@code request}, {@code pathVariables} and
+     * {@code principal} are available, and {@code @name} refers to a bean. A {@code null} or empty
+     * result counts the request against the client address.
+     */
+    String key() default "request.remoteAddr";
+
+    /**
+     * Endpoint whose limits apply, as configured under {@code rate-limiter.endpoints}. Defaults to the
+     * URL pattern of the handler (e.g. {@code /orders/{id}}), so path variables do not create new endpoints.
+     */
+    String endpoint() default "";
+
+    /**
+     * Number of requests the request counts as, at least 1 and at most the endpoint's
+     * {@link com.sanjay.ratelimiter.service.RateLimiterService#maxCost(String) largest cost}.
+     */
+    long cost() default 1;
+}
@@ -0,0 +1,175 @@
+package com.sanjay.ratelimiter.web;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.expression.BeanFactoryResolver;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides requests to handlers annotated with {@link RateLimited} before they run.
+ *
+ * <p>The annotation of a handler method is looked up and its key expression parsed once and kept per
+ * method: at startup for the handlers passed to {@link #validate(Collection)}, otherwise on the first
+ * request. An invalid annotation fails startup, or, if found later, every request to its handler, without
+ * being looked up again. The cost is checked on every request against the largest cost the endpoint
+ * currently admits, which changes with the configuration; a request whose cost would be denied forever
+ * fails instead. Expressions are parsed in SpEL's mixed compiler mode, so a key evaluated often is
+ * compiled to bytecode. Requests to handlers without the annotation pass untouched.
+ */
+public class RateLimitedInterceptor implements HandlerInterceptor {
+
+    /** Marks handler methods without {@link RateLimited} */
+    private static final Limit NONE = new Limit(null, null, 0, null);
+
+    private final RateLimiterService rateLimiterService;
+
+    private final SpelExpressionParser parser;
+
+    /** Shared by all evaluations, which only read it; the per-request state is the root object */
+    private final StandardEvaluationContext context = new StandardEvaluationContext();
+
+    /** Parsed annotation per handler method */
+    private final Map<Method, Limit> limits = new ConcurrentHashMap<>();
+
+    public RateLimitedInterceptor(RateLimiterService rateLimiterService, BeanFactory beanFactory) {
+        this.rateLimiterService = rateLimiterService;
+        this.parser = new SpelExpressionParser(
+                new SpelParserConfiguration(SpelCompilerMode.MIXED, getClass().getClassLoader()));
+        if (beanFactory != null) {
+            context.setBeanResolver(new BeanFactoryResolver(beanFactory));
+        }
+    }
+
+    /**
+     * A parsed {@link RateLimited}; {@code endpoint} is {@code null} for the handler's URL pattern,
+     * {@code error} is the reason an invalid annotation fails its requests
+     */
+    private record Limit(Expression key, String endpoint, long cost, String error) {}
+
+    /**
+     * Root object of {@link RateLimited#key()} expressions.
+     */
+    public static final class KeyContext {
+        private final HttpServletRequest request;
+
+        KeyContext(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        /** @return the request */
+        public HttpServletRequest getRequest() {
+            return request;
+        }
+
+        /** @return the URI template variables of the handler's mapping, e.g. {@code id} of {@code /orders/{id}} */
+        @SuppressWarnings("unchecked")
+        public Map<String, String> getPathVariables() {
+            Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            return variables != null ? (Map<String, String>) variables : Map.of();
+        }
+
+        /** @return the authenticated user, {@code null} if none */
+        public Principal getPrincipal() {
+            return request.getUserPrincipal();
+        }
+    }
+
+    /**
+     * Parses the {@link RateLimited} annotations of handler methods ahead of their first request.
+     *
+     * @param handlerMethods the handler methods, e.g. of every request mapping
+     * @throws IllegalStateException if an annotation is invalid
+     */
+    public void validate(Collection<HandlerMethod> handlerMethods) {
+        for (HandlerMethod handlerMethod : handlerMethods) {
+            Limit limit = limits.computeIfAbsent(handlerMethod.getMethod(), method -> parse(handlerMethod));
+            if (limit.error() != null) {
+                throw new IllegalStateException(limit.error());
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Limit limit = limits.computeIfAbsent(handlerMethod.getMethod(), method -> parse(handlerMethod));
+        if (limit == NONE) {
+            return true;
+        }
+        if (limit.error() != null) {
+            throw new IllegalStateException(limit.error());
+        }
+
+        String endpoint = limit.endpoint() != null ? limit.endpoint() : handlerPattern(request);
+        long maxCost = rateLimiterService.maxCost(endpoint);
+        if (limit.cost() > maxCost) {
+            throw new IllegalStateException("@RateLimited cost must be at most " + maxCost + " for " + endpoint
+                    + " on " + handlerMethod);
+        }
+        Object key = limit.key().getValue(context, new KeyContext(request));
+        String userId = key == null || key.toString().isEmpty() ? request.getRemoteAddr() : key.toString();
+        return enforce(response, rateLimiterService.decide(userId, endpoint, limit.cost()));
+    }
+
+    /** @return the URL pattern of the handler's mapping, the request URI if there is none */
+    private static String handlerPattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : request.getRequestURI();
+    }
+
+    private Limit parse(HandlerMethod handlerMethod) {
+        RateLimited annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RateLimited.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RateLimited.class);
+        }
+        if (annotation == null) {
+            return NONE;
+        }
+        if (annotation.cost() < 1) {
+            return new Limit(null, null, 0, "@RateLimited cost must be at least 1 on " + handlerMethod);
+        }
+        String endpoint = annotation.endpoint().isEmpty() ? null : annotation.endpoint();
+        try {
+            return new Limit(parser.parseExpression(annotation.key()), endpoint, annotation.cost(), null);
+        } catch (ParseException e) {
+            return new Limit(null, null, 0, "@RateLimited key cannot be parsed on " + handlerMethod + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the headers of a decision and, if it denies the request, answers it with 429.
+     *
+     * @return whether the request may proceed
+     */
+    static boolean enforce(HttpServletResponse response, RateLimitDecision decision) throws IOException {
+        RateLimitHeaders.of(decision).forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (decision.allowed()) {
+            return true;
+        }
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+        return false;
+    }
+}
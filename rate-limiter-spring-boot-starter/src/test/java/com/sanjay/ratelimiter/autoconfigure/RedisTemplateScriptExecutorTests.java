@@ -0,0 +1,86 @@
+package com.sanjay.ratelimiter.autoconfigure;
+
+import com.sanjay.ratelimiter.service.LuaScript;
+import com.sanjay.ratelimiter.util.RedisBytes;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisTemplateScriptExecutorTests {
+
+	private final StringRedisTemplate template = mock(StringRedisTemplate.class);
+
+	/** Keys and arguments of every EVALSHA sent, in order */
+	private final List<byte[][]> sent = new ArrayList<>();
+
+	private final RedisConnection connection = mock(RedisConnection.class);
+
+	private final RedisTemplateScriptExecutor executor = new RedisTemplateScriptExecutor(template);
+
+	private final List<byte[][]> executions = List.of(execution("a"), execution("b"), execution("c"));
+
+	RedisTemplateScriptExecutorTests() {
+		RedisScriptingCommands scripting = mock(RedisScriptingCommands.class, invocation -> {
+			if (invocation.getMethod().getName().equals("evalSha")) {
+				sent.add((byte[][]) invocation.getRawArguments()[3]);
+			}
+			return null;
+		});
+		when(connection.scriptingCommands()).thenReturn(scripting);
+	}
+
+	private static byte[][] execution(String key) {
+		return new byte[][] {RedisBytes.of(key), RedisBytes.of("1")};
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void sendsOnlyTheExecutionsThatFailedWithNoScriptAgain() {
+		Exception noScript = new InvalidDataAccessApiUsageException("NOSCRIPT No matching script");
+		when(template.executePipelined(any(RedisCallback.class)))
+				.thenAnswer(invocation -> {
+					invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+					// Another cluster node still had the script and executed the first and the last
+					throw new RedisPipelineException(noScript, Arrays.<Object>asList(List.of(1L), noScript, List.of(3L)));
+				})
+				.thenAnswer(invocation -> {
+					invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+					return List.of(List.of(2L));
+				});
+
+		List<List<?>> results = executor.executeAll(LuaScript.RATE_LIMITER, new int[] {1, 1, 1}, executions);
+
+		assertThat(results).containsExactly(List.of(1L), List.of(2L), List.of(3L));
+		assertThat(sent).containsExactly(executions.get(0), executions.get(1), executions.get(2), executions.get(1));
+		verify(template).execute(any(RedisCallback.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void doesNotSendAnythingAgainWhenAnotherExecutionFailedOtherwise() {
+		Exception noScript = new InvalidDataAccessApiUsageException("NOSCRIPT No matching script");
+		Exception outOfMemory = new InvalidDataAccessApiUsageException("OOM command not allowed");
+		when(template.executePipelined(any(RedisCallback.class))).thenThrow(
+				new RedisPipelineException(noScript, Arrays.<Object>asList(List.of(1L), noScript, outOfMemory)));
+
+		assertThatExceptionOfType(RedisPipelineException.class)
+				.isThrownBy(() -> executor.executeAll(LuaScript.RATE_LIMITER, new int[] {1, 1, 1}, executions));
+		verify(template, never()).execute(any(RedisCallback.class));
+	}
+}
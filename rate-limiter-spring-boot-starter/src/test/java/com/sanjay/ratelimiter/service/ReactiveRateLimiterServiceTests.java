@@ -0,0 +1,162 @@
+package com.sanjay.ratelimiter.service;
+
+import com.sanjay.ratelimiter.local.AtomicStateStore;
+import com.sanjay.ratelimiter.local.LocalScriptExecutor;
+import com.sanjay.ratelimiter.util.RateLimitAlgorithm;
+import com.sanjay.ratelimiter.util.RateLimitMonitor;
+import com.sanjay.ratelimiter.util.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveRateLimiterServiceTests {
+
+	private final RateLimiterProperties properties = new RateLimiterProperties();
+
+	/** Decides the script executions the template is given */
+	private final LocalScriptExecutor local = new LocalScriptExecutor(new AtomicStateStore(1024));
+
+	@SuppressWarnings("unchecked")
+	private final ReactiveRedisTemplate<ByteBuffer, ByteBuffer> template = mock(ReactiveRedisTemplate.class);
+
+	/** Script executions sent through the template */
+	private final AtomicInteger executions = new AtomicInteger();
+
+	private ReactiveRateLimiterService service(RedisScriptExecutor blockingExecutor, GlobalQuotaLease lease) {
+		RateLimiterService rateLimiterService = new RateLimiterService(new RateLimitMonitor(new SimpleMeterRegistry()),
+				properties, blockingExecutor, lease, new GlobalShardRouter(properties), new BlockedKeyCache(properties),
+				new HeavyHitterDetector(properties));
+		return new ReactiveRateLimiterService(rateLimiterService, properties, template, lease);
+	}
+
+	private ReactiveRateLimiterService service() {
+		return service(local, null);
+	}
+
+	/** Runs a script execution given to the template on {@link #local} */
+	private List<?> runLocally(InvocationOnMock invocation) {
+		List<ByteBuffer> keys = invocation.getArgument(1);
+		List<ByteBuffer> args = invocation.getArgument(2);
+		List<ByteBuffer> keysAndArgs = new ArrayList<>(keys);
+		keysAndArgs.addAll(args);
+		byte[][] encoded = new byte[keysAndArgs.size()][];
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = new byte[keysAndArgs.get(i).remaining()];
+			keysAndArgs.get(i).duplicate().get(encoded[i]);
+		}
+		executions.incrementAndGet();
+		return local.execute(LuaScript.RATE_LIMITER, keys.size(), encoded);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void checksTheGlobalShardAndGivesADeniedRequestBack() {
+		properties.getSharding().setEnabled(true);
+		properties.getSharding().setShards(1);
+		properties.getDenyCache().setEnabled(false);
+		properties.getGlobal().setRequestLimit(2);
+		properties.getDefaultConfig().setRequestLimit(3);
+		when(template.execute(any(RedisScript.class), anyList(), anyList()))
+				.thenAnswer(invocation -> Flux.just(runLocally(invocation)));
+		ReactiveRateLimiterService service = service();
+
+		// Endpoint and user tiers, then the global shard
+		assertThat(service.decide("alice", "/data", 1).block().allowed()).isTrue();
+		assertThat(service.decide("alice", "/data", 1).block().allowed()).isTrue();
+		assertThat(executions).hasValue(4);
+		// The shard denies, and a third execution gives the request back
+		assertThat(service.decide("alice", "/data", 1).block().tier()).isEqualTo(RateLimitTier.GLOBAL);
+		assertThat(executions).hasValue(7);
+
+		// Only the two allowed requests count against the endpoint's and alice's limit of 3
+		properties.getSharding().setEnabled(false);
+		RateLimitDecision decision = service.decide("alice", "/data", 1).block();
+		assertThat(decision.allowed()).isTrue();
+		assertThat(decision.remaining()).isZero();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void deniesARequestTheScriptAnsweredNothingFor() {
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.empty());
+
+		RateLimitDecision decision = service().decide("alice", "/data", 1).block();
+
+		assertThat(decision.allowed()).isFalse();
+		assertThat(decision.tier()).isNull();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void renewsAnEmptyLeaseOffTheSubscribingThread() {
+		properties.getLease().setEnabled(true);
+		properties.getLease().setChunkPercent(10);
+		properties.getLease().setRenewAtPercent(0);
+		properties.getGlobal().setAlgorithm(RateLimitAlgorithm.TOKEN_BUCKET);
+		properties.getGlobal().setRequestLimit(1000);
+		List<String> renewers = new CopyOnWriteArrayList<>();
+		GlobalQuotaLease lease = new GlobalQuotaLease(properties, (script, keys, args) -> {
+			renewers.add(Thread.currentThread().getName());
+			return List.of(Long.parseLong(args.get(4)), 0L);
+		});
+		List<String> blockingDecisions = new CopyOnWriteArrayList<>();
+		RedisScriptExecutor blocking = (script, keys, args) -> {
+			blockingDecisions.add(Thread.currentThread().getName());
+			return local.execute(script, keys, args);
+		};
+		when(template.execute(any(RedisScript.class), anyList(), anyList()))
+				.thenAnswer(invocation -> Flux.just(runLocally(invocation)));
+		ReactiveRateLimiterService service = service(blocking, lease);
+
+		// The lease is empty: the renewal and the whole decision run on a bounded elastic worker
+		assertThat(service.decide("alice", "/data", 1).block().allowed()).isTrue();
+		assertThat(renewers).hasSize(1).allMatch(name -> name.startsWith("boundedElastic"));
+		assertThat(blockingDecisions).hasSize(1).allMatch(name -> name.startsWith("boundedElastic"));
+		assertThat(executions).hasValue(0);
+
+		// Now the lease has tokens, and the script goes through the reactive template
+		assertThat(service.decide("alice", "/data", 1).block().allowed()).isTrue();
+		assertThat(renewers).hasSize(1);
+		assertThat(blockingDecisions).hasSize(1);
+		assertThat(executions).hasValue(1);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void decidesABatchInRequestOrder() {
+		properties.getGlobal().setRequestLimit(1000);
+		List<RateLimitRequest> requests = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			RateLimiterProperties.RateLimitConfig config = new RateLimiterProperties.RateLimitConfig();
+			config.setRequestLimit(i);
+			properties.getEndpoints().put("/endpoint-" + i, config);
+			requests.add(new RateLimitRequest("alice", "/endpoint-" + i, null));
+		}
+		// Later executions answer first
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenAnswer(invocation -> {
+			List<?> result = runLocally(invocation);
+			return Flux.just(result).delayElements(Duration.ofMillis(100 - 20L * executions.get()));
+		});
+
+		List<RateLimitDecision> decisions = service().decideAll(requests).collectList().block();
+
+		assertThat(decisions).extracting(RateLimitDecision::limit).containsExactly(1L, 2L, 3L, 4L, 5L);
+		assertThat(decisions).allMatch(RateLimitDecision::allowed);
+	}
+}
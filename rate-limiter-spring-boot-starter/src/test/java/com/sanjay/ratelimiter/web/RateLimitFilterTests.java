@@ -0,0 +1,54 @@
+package com.sanjay.ratelimiter.web;
+
+import com.sanjay.ratelimiter.autoconfigure.RateLimiterWebProperties;
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTests {
+
+	private final RateLimiterService service = mock(RateLimiterService.class);
+
+	private final RateLimiterWebProperties.FilterConfig config = new RateLimiterWebProperties.FilterConfig();
+
+	RateLimitFilterTests() {
+		config.setEndpointPatterns(List.of("/orders/{id}"));
+		when(service.decide(anyString(), anyString(), eq(1L)))
+				.thenReturn(new RateLimitDecision(true, RateLimitTier.ENDPOINT, 5, 4, 60_000, 0));
+	}
+
+	private void filter(String path) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		request.setServletPath(path);
+		request.addHeader("X-User-Id", "alice");
+		new RateLimitFilter(service, config).doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+	}
+
+	@Test
+	void pathsMatchingAnEndpointPatternShareItsLimit() throws Exception {
+		filter("/orders/41");
+		filter("/orders/42");
+
+		verify(service, times(2)).decide("alice", "/orders/{id}", 1);
+	}
+
+	@Test
+	void otherPathsAreTheirOwnEndpoint() throws Exception {
+		filter("/search");
+
+		verify(service).decide("alice", "/search", 1);
+	}
+}
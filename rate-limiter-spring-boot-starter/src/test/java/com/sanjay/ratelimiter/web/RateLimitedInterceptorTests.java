@@ -0,0 +1,131 @@
+package com.sanjay.ratelimiter.web;
+
+import com.sanjay.ratelimiter.service.RateLimitDecision;
+import com.sanjay.ratelimiter.service.RateLimitTier;
+import com.sanjay.ratelimiter.service.RateLimiterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RateLimitedInterceptorTests {
+
+	private final RateLimiterService service = mock(RateLimiterService.class);
+
+	private final RateLimitedInterceptor interceptor = new RateLimitedInterceptor(service, null);
+
+	RateLimitedInterceptorTests() {
+		when(service.maxCost(anyString())).thenReturn(100L);
+	}
+
+	static class OrderController {
+
+		@RateLimited(key = "request.getHeader('X-User-Id') + ':' + pathVariables['id']", cost = 2)
+		public void order() {
+		}
+
+		@RateLimited(endpoint = "/search")
+		public void search() {
+		}
+
+		@RateLimited(key = "request.getHeader(", cost = 1)
+		public void broken() {
+		}
+
+		public void health() {
+		}
+	}
+
+	private static HandlerMethod handler(String name) throws NoSuchMethodException {
+		return new HandlerMethod(new OrderController(), OrderController.class.getMethod(name));
+	}
+
+	@Test
+	void keyExpressionAndUrlPatternNameTheLimit() throws Exception {
+		when(service.decide("alice:42", "/orders/{id}", 2))
+				.thenReturn(RateLimitDecision.denied(RateLimitTier.USER, 10, 1_500));
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/42");
+		request.addHeader("X-User-Id", "alice");
+		request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", "42"));
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/orders/{id}");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertThat(interceptor.preHandle(request, response, handler("order"))).isFalse();
+		assertThat(response.getStatus()).isEqualTo(429);
+		assertThat(response.getHeader("Retry-After")).isEqualTo("2");
+	}
+
+	@Test
+	void defaultKeyIsTheClientAddress() throws Exception {
+		when(service.decide("10.0.0.7", "/search", 1))
+				.thenReturn(new RateLimitDecision(true, RateLimitTier.ENDPOINT, 5, 4, 60_000, 0));
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/search");
+		request.setRemoteAddr("10.0.0.7");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertThat(interceptor.preHandle(request, response, handler("search"))).isTrue();
+		assertThat(response.getHeader("RateLimit-Remaining")).isEqualTo("4");
+	}
+
+	@Test
+	void costAboveTheEndpointsMaximumFailsTheHandler() throws Exception {
+		when(service.maxCost("/orders/{id}")).thenReturn(1L);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/42");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/orders/{id}");
+
+		assertThatIllegalStateException()
+				.isThrownBy(() -> interceptor.preHandle(request, new MockHttpServletResponse(), handler("order")))
+				.withMessageContaining("at most 1");
+		verify(service, never()).decide(anyString(), anyString(), anyLong());
+	}
+
+	@Test
+	void costIsCheckedAgainstTheMaximumOfEveryRequest() throws Exception {
+		when(service.maxCost("/orders/{id}")).thenReturn(2L, 1L);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/42");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/orders/{id}");
+		when(service.decide(anyString(), anyString(), anyLong()))
+				.thenReturn(new RateLimitDecision(true, RateLimitTier.USER, 10, 8, 60_000, 0));
+
+		assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), handler("order"))).isTrue();
+		// The endpoint's limit was lowered at runtime
+		assertThatIllegalStateException()
+				.isThrownBy(() -> interceptor.preHandle(request, new MockHttpServletResponse(), handler("order")))
+				.withMessageContaining("at most 1");
+	}
+
+	@Test
+	void invalidAnnotationsFailValidationAndEveryRequest() throws Exception {
+		assertThatIllegalStateException().isThrownBy(() -> interceptor.validate(List.of(handler("search"), handler("broken"))))
+				.withMessageContaining("cannot be parsed");
+
+		for (int i = 0; i < 2; i++) {
+			assertThatIllegalStateException()
+					.isThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(),
+							handler("broken")))
+					.withMessageContaining("cannot be parsed");
+		}
+		verifyNoInteractions(service);
+	}
+
+	@Test
+	void handlersWithoutAnnotationPass() throws Exception {
+		assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("health")))
+				.isTrue();
+		verifyNoInteractions(service);
+	}
+}